@@ -0,0 +1,44 @@
+package pl.droidsonroids.casty;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of recording into {@link CastyFlightRecorder}, which is always on and must stay
+ * allocation-free, also when several threads record at once
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CastyFlightRecorderBenchmark {
+  private final CastyFlightRecorder flightRecorder = CastyFlightRecorder.getInstance();
+  private long value;
+
+  @Benchmark public void recordStatus() {
+    flightRecorder.record(CastyFlightRecorder.STATUS, 2, value++);
+  }
+
+  @Benchmark public void recordCommandCompleted() {
+    flightRecorder.recordCommandCompleted("seek", 0, value++ & 0xfff);
+  }
+
+  @Benchmark @Threads(4) public void recordStatusContended() {
+    flightRecorder.record(CastyFlightRecorder.STATUS, 2, value++);
+  }
+
+  @Benchmark public String dump() {
+    return flightRecorder.dump();
+  }
+}
@@ -0,0 +1,38 @@
+package pl.droidsonroids.casty;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of recording into {@link CastyMetrics}, which must stay allocation-free
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CastyMetricsBenchmark {
+  private final CastyMetrics metrics = CastyMetrics.getInstance();
+  private long value;
+
+  @Benchmark public void recordCommandRoundTrip() {
+    metrics.recordCommandRoundTrip("seek", value++ & 0xfff);
+  }
+
+  @Benchmark public void recordLoadToPlaying() {
+    metrics.recordLoadToPlaying(value++ & 0xffff);
+  }
+
+  @Benchmark public CastyMetrics.Snapshot snapshot() {
+    return metrics.snapshot();
+  }
+}
@@ -0,0 +1,112 @@
+package pl.droidsonroids.casty;
+
+import com.google.android.gms.cast.MediaTrack;
+import com.google.android.gms.cast.framework.media.RemoteMediaClient;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Client-side cost of the {@link CastyPlayer} command paths, from the public call to the
+ * completed {@link CastyCommand}, against a receiver which responds immediately.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CastyPlayerBenchmark {
+  private CastyPlayer castyPlayer;
+  private RemoteMediaClient remoteMediaClient;
+  private MediaData mediaData;
+
+  @Setup(Level.Trial) public void setUp() {
+    castyPlayer = new CastyPlayer(new CastyPlayer.OnMediaLoadedListener() {
+      @Override public void onMediaLoaded() {
+        //no-op
+      }
+    });
+    castyPlayer.setCoalescingInterval(0L);
+    mediaData = createMediaData(0);
+  }
+
+  /**
+   * A fresh client per iteration, so that the media status of the fake client does not carry
+   * over between iterations. Every invocation leaves the client in a steady state: foreground
+   * load callbacks unregister themselves on the first status update.
+   */
+  @Setup(Level.Iteration) public void connect() {
+    remoteMediaClient = new RemoteMediaClient();
+    castyPlayer.setRemoteMediaClient(remoteMediaClient);
+  }
+
+  @TearDown(Level.Iteration) public void checkSteadyState() {
+    //only the player state callback stays registered
+    if (remoteMediaClient.getCallbackCount() != 1) {
+      throw new IllegalStateException(
+          remoteMediaClient.getCallbackCount() + " callbacks registered after the iteration");
+    }
+  }
+
+  @Benchmark public CastyCommand loadMedia() {
+    return castyPlayer.loadMedia(mediaData);
+  }
+
+  @Benchmark public CastyCommand loadMediaInBackground() {
+    return castyPlayer.loadMediaInBackground(mediaData.createMediaInfo(), true, 0L);
+  }
+
+  @Benchmark public CastyCommand loadQueue(Queue queue) {
+    return castyPlayer.loadQueue(queue.mediaDataList);
+  }
+
+  @Benchmark public CastyCommand togglePlayPause() {
+    castyPlayer.loadMediaInBackground(mediaData.createMediaInfo(), true, 0L);
+    return castyPlayer.togglePlayPause();
+  }
+
+  @Benchmark public CastyCommand seek() {
+    return castyPlayer.seek(1000L);
+  }
+
+  private static MediaData createMediaData(int index) {
+    return new MediaData.Builder("https://example.com/video" + index + ".mp4")
+        .setStreamType(MediaData.STREAM_TYPE_BUFFERED)
+        .setContentType("video/mp4")
+        .setMediaType(MediaData.MEDIA_TYPE_MOVIE)
+        .setTitle("Title " + index)
+        .setSubtitle("Subtitle")
+        .addPhotoUrl("https://example.com/image" + index + ".jpg")
+        .addTextTrack("https://example.com/subtitles" + index + ".vtt", "en", "English",
+            MediaTrack.SUBTYPE_SUBTITLES)
+        .build();
+  }
+
+  @State(Scope.Thread)
+  public static class Queue {
+    @Param({ "1", "20" }) int size;
+
+    List<MediaData> mediaDataList;
+
+    @Setup public void setUp() {
+      mediaDataList = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        mediaDataList.add(createMediaData(i));
+      }
+    }
+  }
+}
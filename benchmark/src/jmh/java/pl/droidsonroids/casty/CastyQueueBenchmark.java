@@ -0,0 +1,82 @@
+package pl.droidsonroids.casty;
+
+import com.google.android.gms.cast.framework.media.MediaQueue;
+import com.google.android.gms.cast.framework.media.RemoteMediaClient;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cost of scrolling a long receiver queue by one item and of moving a single item, as seen by
+ * {@link CastyQueue}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CastyQueueBenchmark {
+  private static final int VISIBLE_ITEMS = 12;
+
+  @Param({ "1000", "10000" }) int size;
+
+  private final CastyQueue queue = new CastyQueue();
+  private MediaQueue mediaQueue;
+  private int firstVisibleIndex;
+
+  @Setup public void setUp(final Blackhole blackhole) {
+    RemoteMediaClient remoteMediaClient = new RemoteMediaClient();
+    mediaQueue = remoteMediaClient.getMediaQueue();
+    int[] itemIds = new int[size];
+    for (int i = 0; i < size; i++) {
+      itemIds[i] = i + 1;
+    }
+    mediaQueue.setItemIds(itemIds);
+    queue.attach(remoteMediaClient);
+    queue.setListener(new CastyQueue.Listener() {
+      @Override public void onItemsInserted(int index, int count) {
+        blackhole.consume(index);
+      }
+
+      @Override public void onItemsRemoved(int index, int count) {
+        blackhole.consume(index);
+      }
+
+      @Override public void onItemMoved(int fromIndex, int toIndex) {
+        blackhole.consume(toIndex);
+      }
+
+      @Override public void onItemsChanged(int index, int count) {
+        blackhole.consume(index);
+      }
+
+      @Override public void onQueueReloaded() {
+        blackhole.consume(size);
+      }
+    });
+  }
+
+  @Benchmark public Object scroll() {
+    firstVisibleIndex = (firstVisibleIndex + 1) % (size - VISIBLE_ITEMS);
+    queue.setVisibleRange(firstVisibleIndex, firstVisibleIndex + VISIBLE_ITEMS - 1);
+    mediaQueue.deliverFetchedItems();
+    return queue.getItem(firstVisibleIndex + VISIBLE_ITEMS - 1);
+  }
+
+  @Benchmark public void moveItem() {
+    //to the end and back, so the queue stays the same
+    mediaQueue.moveItem(0, size - 1);
+    mediaQueue.moveItem(size - 1, 0);
+  }
+}
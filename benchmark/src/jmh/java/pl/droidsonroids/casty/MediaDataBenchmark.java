@@ -0,0 +1,80 @@
+package pl.droidsonroids.casty;
+
+import com.google.android.gms.cast.MediaInfo;
+import com.google.android.gms.cast.MediaTrack;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of describing a media with {@link MediaData.Builder} and converting it to
+ * {@link MediaInfo}, which happens on every load and for every queued item.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MediaDataBenchmark {
+  @Param({ "1", "10" }) int images;
+  @Param({ "0", "8" }) int tracks;
+  @Param({ "0", "32" }) int customDataKeys;
+
+  private JSONObject customData;
+  private MediaData mediaData;
+
+  @Setup public void setUp() throws JSONException {
+    customData = new JSONObject();
+    for (int i = 0; i < customDataKeys; i++) {
+      customData.put("key" + i, "value" + i);
+    }
+    mediaData = build();
+  }
+
+  @Benchmark public MediaData build() {
+    MediaData.Builder builder = new MediaData.Builder("https://example.com/video.mp4")
+        .setStreamType(MediaData.STREAM_TYPE_BUFFERED)
+        .setContentType("video/mp4")
+        .setMediaType(MediaData.MEDIA_TYPE_MOVIE)
+        .setTitle("Title")
+        .setSubtitle("Subtitle")
+        .setStreamDuration(3600000L);
+    for (int i = 0; i < images; i++) {
+      builder.addPhotoUrl("https://example.com/image" + i + ".jpg");
+    }
+    for (int i = 0; i < tracks; i++) {
+      builder.addTextTrack("https://example.com/subtitles" + i + ".vtt", "en", "Language " + i,
+          MediaTrack.SUBTYPE_SUBTITLES);
+    }
+    if (customDataKeys > 0) builder.setCustomData(customData);
+    return builder.build();
+  }
+
+  @Benchmark public MediaInfo createMediaInfo() {
+    return mediaData.createMediaInfo();
+  }
+
+  @Benchmark public MediaInfo buildAndCreateMediaInfo() {
+    return build().createMediaInfo();
+  }
+
+  /**
+   * Another item of the same series, which shares the artwork, tracks and metadata
+   */
+  @Benchmark public MediaInfo buildFromTemplateAndCreateMediaInfo() {
+    return new MediaData.Builder("https://example.com/video2.mp4", mediaData).build()
+        .createMediaInfo();
+  }
+}
@@ -0,0 +1,64 @@
+package pl.droidsonroids.casty;
+
+import android.os.SystemClock;
+import com.google.android.gms.cast.framework.media.RemoteMediaClient;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cost of a single progress tick fanned out by {@link ProgressListenerHub} to its subscribers
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProgressListenerHubBenchmark {
+  private static final long PERIOD = 1000L;
+
+  @Param({ "1", "8", "64" }) int subscribers;
+
+  private final ProgressListenerHub progressListenerHub = new ProgressListenerHub();
+  private RemoteMediaClient remoteMediaClient;
+  private long progress;
+
+  @Setup public void setUp(final Blackhole blackhole) {
+    remoteMediaClient = new RemoteMediaClient();
+    progressListenerHub.attach(remoteMediaClient);
+    for (int i = 0; i < subscribers; i++) {
+      progressListenerHub.add(new RemoteMediaClient.ProgressListener() {
+        @Override public void onProgressUpdated(long progressMs, long durationMs) {
+          blackhole.consume(progressMs);
+        }
+      }, PERIOD);
+    }
+  }
+
+  @Benchmark public void tick() {
+    //a whole period passes between ticks, so each tick reaches every subscriber
+    SystemClock.advance(PERIOD);
+    remoteMediaClient.notifyProgressUpdated(progress++, 3600000L);
+  }
+
+  @Benchmark public void subscribeAndUnsubscribe() {
+    RemoteMediaClient.ProgressListener listener = new RemoteMediaClient.ProgressListener() {
+      @Override public void onProgressUpdated(long progressMs, long durationMs) {
+        //no-op
+      }
+    };
+    progressListenerHub.add(listener, PERIOD);
+    progressListenerHub.remove(listener);
+  }
+}
@@ -0,0 +1,47 @@
+package pl.droidsonroids.casty;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sender-side CPU and allocation cost of whole {@link ReceiverScenarios} against
+ * {@link SimulatedReceiver}. Network and receiver delays pass in virtual time, so the score is
+ * the work done by Casty and the simulator. The virtual-time latencies are reported by
+ * {@link ReceiverScenarios#main(String[])}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ReceiverScenarioBenchmark {
+  private long seed;
+
+  @Benchmark public ReceiverScenarios.Stats loadToPlaying() {
+    ReceiverScenarios.Stats stats = new ReceiverScenarios.Stats("load to playing");
+    ReceiverScenarios.loadToPlaying(ReceiverScenarios.network(seed++), stats);
+    return stats;
+  }
+
+  @Benchmark public ReceiverScenarios.Stats seekDrag() {
+    ReceiverScenarios.Stats stats = new ReceiverScenarios.Stats("seek drag settle");
+    ReceiverScenarios.seekDrag(ReceiverScenarios.network(seed++), stats,
+        new ReceiverScenarios.Stats("seek drag requests"));
+    return stats;
+  }
+
+  @Benchmark public ReceiverScenarios.Stats toggle() {
+    ReceiverScenarios.Stats stats = new ReceiverScenarios.Stats("toggle round trip");
+    ReceiverScenarios.toggle(ReceiverScenarios.network(seed++), stats);
+    return stats;
+  }
+}
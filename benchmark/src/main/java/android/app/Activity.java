@@ -0,0 +1,22 @@
+package android.app;
+
+import android.content.Context;
+
+/**
+ * JVM stand-in for {@code android.app.Activity}
+ */
+public class Activity extends Context {
+  private final Application application;
+
+  public Activity(Application application) {
+    this.application = application;
+  }
+
+  public final Application getApplication() {
+    return application;
+  }
+
+  @Override public Context getApplicationContext() {
+    return application;
+  }
+}
@@ -0,0 +1,70 @@
+package android.app;
+
+import android.content.Context;
+import android.os.Bundle;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JVM stand-in for {@code android.app.Application}. Lifecycle events of the activities are
+ * delivered to the registered callbacks by the {@code dispatch} methods, as the framework would.
+ */
+public class Application extends Context {
+  private final List<ActivityLifecycleCallbacks> callbacks = new ArrayList<>();
+
+  public void registerActivityLifecycleCallbacks(ActivityLifecycleCallbacks callback) {
+    callbacks.add(callback);
+  }
+
+  public void unregisterActivityLifecycleCallbacks(ActivityLifecycleCallbacks callback) {
+    callbacks.remove(callback);
+  }
+
+  public int getActivityLifecycleCallbackCount() {
+    return callbacks.size();
+  }
+
+  public void dispatchActivityCreated(Activity activity) {
+    for (ActivityLifecycleCallbacks callback : snapshot()) {
+      callback.onActivityCreated(activity, null);
+    }
+  }
+
+  public void dispatchActivityResumed(Activity activity) {
+    for (ActivityLifecycleCallbacks callback : snapshot()) {
+      callback.onActivityResumed(activity);
+    }
+  }
+
+  public void dispatchActivityPaused(Activity activity) {
+    for (ActivityLifecycleCallbacks callback : snapshot()) {
+      callback.onActivityPaused(activity);
+    }
+  }
+
+  public void dispatchActivityDestroyed(Activity activity) {
+    for (ActivityLifecycleCallbacks callback : snapshot()) {
+      callback.onActivityDestroyed(activity);
+    }
+  }
+
+  private ActivityLifecycleCallbacks[] snapshot() {
+    return callbacks.toArray(new ActivityLifecycleCallbacks[0]);
+  }
+
+  public interface ActivityLifecycleCallbacks {
+    void onActivityCreated(Activity activity, Bundle savedInstanceState);
+
+    void onActivityStarted(Activity activity);
+
+    void onActivityResumed(Activity activity);
+
+    void onActivityPaused(Activity activity);
+
+    void onActivityStopped(Activity activity);
+
+    void onActivitySaveInstanceState(Activity activity, Bundle outState);
+
+    void onActivityDestroyed(Activity activity);
+  }
+}
@@ -0,0 +1,28 @@
+package android.content;
+
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import java.io.FileNotFoundException;
+
+/**
+ * JVM stand-in for {@code android.content.ContentResolver} without any content providers
+ */
+public class ContentResolver {
+  public static final String SCHEME_CONTENT = "content";
+  public static final String SCHEME_FILE = "file";
+
+  public final String getType(Uri uri) {
+    return null;
+  }
+
+  public final Cursor query(Uri uri, String[] projection, String selection,
+      String[] selectionArgs, String sortOrder) {
+    return null;
+  }
+
+  public final ParcelFileDescriptor openFileDescriptor(Uri uri, String mode)
+      throws FileNotFoundException {
+    throw new FileNotFoundException("No content provider: " + uri);
+  }
+}
@@ -0,0 +1,42 @@
+package android.content;
+
+import android.content.res.Resources;
+import java.io.File;
+
+/**
+ * JVM stand-in for {@code android.content.Context}. Files and cache live in a temporary
+ * directory of the process.
+ */
+public abstract class Context {
+  private static final File dataDirectory =
+      new File(System.getProperty("java.io.tmpdir"), "casty-benchmark-" + System.nanoTime());
+  private static final Resources resources = new Resources();
+  private static final ContentResolver contentResolver = new ContentResolver();
+
+  public Context getApplicationContext() {
+    return this;
+  }
+
+  public File getFilesDir() {
+    return getDirectory("files");
+  }
+
+  public File getCacheDir() {
+    return getDirectory("cache");
+  }
+
+  public ContentResolver getContentResolver() {
+    return contentResolver;
+  }
+
+  public Resources getResources() {
+    return resources;
+  }
+
+  private static File getDirectory(String name) {
+    File directory = new File(dataDirectory, name);
+    //noinspection ResultOfMethodCallIgnored
+    directory.mkdirs();
+    return directory;
+  }
+}
@@ -0,0 +1,14 @@
+package android.content.res;
+
+import android.util.DisplayMetrics;
+
+/**
+ * JVM stand-in for {@code android.content.res.Resources}
+ */
+public class Resources {
+  private final DisplayMetrics displayMetrics = new DisplayMetrics();
+
+  public DisplayMetrics getDisplayMetrics() {
+    return displayMetrics;
+  }
+}
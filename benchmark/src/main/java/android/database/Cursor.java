@@ -0,0 +1,16 @@
+package android.database;
+
+import java.io.Closeable;
+
+/**
+ * JVM stand-in for the {@code android.database.Cursor} interface
+ */
+public interface Cursor extends Closeable {
+  boolean moveToFirst();
+
+  boolean isNull(int columnIndex);
+
+  String getString(int columnIndex);
+
+  @Override void close();
+}
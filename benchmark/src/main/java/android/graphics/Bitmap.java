@@ -0,0 +1,49 @@
+package android.graphics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * JVM stand-in for {@code android.graphics.Bitmap}, which holds only the dimensions
+ */
+public final class Bitmap {
+  final int width;
+  final int height;
+
+  Bitmap(int width, int height) {
+    this.width = width;
+    this.height = height;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  public int getByteCount() {
+    return width * height * 4;
+  }
+
+  public boolean hasAlpha() {
+    return false;
+  }
+
+  /**
+   * Writes the dimensions in the format read by {@link BitmapFactory}
+   */
+  public boolean compress(CompressFormat format, int quality, OutputStream stream) {
+    try {
+      stream.write(BitmapFactory.encode(width, height));
+      return true;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  public enum CompressFormat {
+    JPEG, PNG, WEBP
+  }
+}
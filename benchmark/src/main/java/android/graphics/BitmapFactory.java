@@ -0,0 +1,50 @@
+package android.graphics;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * JVM stand-in for {@code android.graphics.BitmapFactory}. An image file is the text
+ * {@code "<width>x<height>"}, anything else fails to decode.
+ */
+public class BitmapFactory {
+  public static Bitmap decodeFile(String pathName) {
+    return decodeFile(pathName, null);
+  }
+
+  public static Bitmap decodeFile(String pathName, Options options) {
+    int width;
+    int height;
+    try (FileInputStream inputStream = new FileInputStream(pathName)) {
+      byte[] bytes = new byte[64];
+      int length = inputStream.read(bytes);
+      if (length <= 0) return null;
+      String[] size = new String(bytes, 0, length, StandardCharsets.US_ASCII).trim().split("x");
+      width = Integer.parseInt(size[0]);
+      height = Integer.parseInt(size[1]);
+    } catch (IOException | RuntimeException e) {
+      return null;
+    }
+    if (options != null) {
+      options.outWidth = width;
+      options.outHeight = height;
+      if (options.inJustDecodeBounds) return null;
+      int sampleSize = Math.max(1, options.inSampleSize);
+      width /= sampleSize;
+      height /= sampleSize;
+    }
+    return new Bitmap(width, height);
+  }
+
+  static byte[] encode(int width, int height) {
+    return (width + "x" + height).getBytes(StandardCharsets.US_ASCII);
+  }
+
+  public static class Options {
+    public boolean inJustDecodeBounds;
+    public int inSampleSize;
+    public int outWidth;
+    public int outHeight;
+  }
+}
@@ -0,0 +1,60 @@
+package android.net;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URLEncoder;
+
+/**
+ * JVM stand-in for {@code android.net.Uri}
+ */
+public final class Uri {
+  private final String uriString;
+
+  private Uri(String uriString) {
+    this.uriString = uriString;
+  }
+
+  public static Uri parse(String uriString) {
+    return new Uri(uriString);
+  }
+
+  public static String encode(String s) {
+    try {
+      return URLEncoder.encode(s, "UTF-8").replace("+", "%20");
+    } catch (UnsupportedEncodingException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  public String getScheme() {
+    int colon = uriString.indexOf(':');
+    return colon < 0 ? null : uriString.substring(0, colon);
+  }
+
+  public String getPath() {
+    try {
+      return URI.create(uriString).getPath();
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  public String getLastPathSegment() {
+    String path = getPath();
+    if (path == null) return null;
+    String trimmed = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    return trimmed.isEmpty() ? null : trimmed.substring(trimmed.lastIndexOf('/') + 1);
+  }
+
+  @Override public boolean equals(Object o) {
+    return o instanceof Uri && ((Uri) o).uriString.equals(uriString);
+  }
+
+  @Override public int hashCode() {
+    return uriString.hashCode();
+  }
+
+  @Override public String toString() {
+    return uriString;
+  }
+}
@@ -0,0 +1,24 @@
+package android.os;
+
+/**
+ * JVM stand-in for {@code android.os.Build}, reporting API 29
+ */
+public final class Build {
+  private Build() {
+  }
+
+  public static final class VERSION {
+    public static final int SDK_INT = VERSION_CODES.Q;
+
+    private VERSION() {
+    }
+  }
+
+  public static final class VERSION_CODES {
+    public static final int JELLY_BEAN_MR2 = 18;
+    public static final int Q = 29;
+
+    private VERSION_CODES() {
+    }
+  }
+}
@@ -0,0 +1,7 @@
+package android.os;
+
+/**
+ * JVM stand-in for {@code android.os.Bundle}
+ */
+public final class Bundle {
+}
@@ -0,0 +1,97 @@
+package android.os;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * JVM stand-in for {@code android.os.Handler}. Posted runnables run immediately, delayed ones are
+ * kept until {@link #runDue()} finds them due.
+ */
+public class Handler {
+  private static final List<Delayed> delayed = new ArrayList<>();
+
+  public Handler() {
+  }
+
+  public Handler(Looper looper) {
+  }
+
+  public final boolean post(Runnable runnable) {
+    runnable.run();
+    return true;
+  }
+
+  public final boolean postDelayed(Runnable runnable, long delayMillis) {
+    if (delayMillis <= 0) return post(runnable);
+    synchronized (delayed) {
+      delayed.add(new Delayed(this, runnable, SystemClock.uptimeMillis() + delayMillis));
+    }
+    return true;
+  }
+
+  public final void removeCallbacks(Runnable runnable) {
+    synchronized (delayed) {
+      Iterator<Delayed> iterator = delayed.iterator();
+      while (iterator.hasNext()) {
+        Delayed message = iterator.next();
+        if (message.handler == this && message.runnable == runnable) iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * @return the time of the earliest delayed runnable or {@link Long#MAX_VALUE} if there is none
+   */
+  public static long nextDueTime() {
+    long time = Long.MAX_VALUE;
+    synchronized (delayed) {
+      for (Delayed message : delayed) {
+        time = Math.min(time, message.time);
+      }
+    }
+    return time;
+  }
+
+  /**
+   * Drops all delayed runnables
+   */
+  public static void clearDelayed() {
+    synchronized (delayed) {
+      delayed.clear();
+    }
+  }
+
+  /**
+   * Runs delayed runnables which are due
+   */
+  public static void runDue() {
+    long now = SystemClock.uptimeMillis();
+    List<Runnable> due = new ArrayList<>();
+    synchronized (delayed) {
+      Iterator<Delayed> iterator = delayed.iterator();
+      while (iterator.hasNext()) {
+        Delayed message = iterator.next();
+        if (message.time <= now) {
+          due.add(message.runnable);
+          iterator.remove();
+        }
+      }
+    }
+    for (Runnable runnable : due) {
+      runnable.run();
+    }
+  }
+
+  private static final class Delayed {
+    final Handler handler;
+    final Runnable runnable;
+    final long time;
+
+    Delayed(Handler handler, Runnable runnable, long time) {
+      this.handler = handler;
+      this.runnable = runnable;
+      this.time = time;
+    }
+  }
+}
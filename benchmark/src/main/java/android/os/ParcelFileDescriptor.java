@@ -0,0 +1,30 @@
+package android.os;
+
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.IOException;
+
+/**
+ * JVM stand-in for {@code android.os.ParcelFileDescriptor}
+ */
+public class ParcelFileDescriptor implements Closeable {
+  private final FileDescriptor fileDescriptor;
+  private final long statSize;
+
+  public ParcelFileDescriptor(FileDescriptor fileDescriptor, long statSize) {
+    this.fileDescriptor = fileDescriptor;
+    this.statSize = statSize;
+  }
+
+  public FileDescriptor getFileDescriptor() {
+    return fileDescriptor;
+  }
+
+  public long getStatSize() {
+    return statSize;
+  }
+
+  @Override public void close() throws IOException {
+    //owned by the stream opened on the descriptor
+  }
+}
@@ -0,0 +1,45 @@
+package android.os;
+
+/**
+ * JVM stand-in for {@code android.os.SystemClock}. The clock follows {@link System#nanoTime()}
+ * until {@link #setManualTime(long)} freezes it, e.g. for a simulation running in virtual time.
+ * Both clocks can be moved forward with {@link #advance(long)}.
+ */
+public final class SystemClock {
+  private static volatile boolean manual;
+  private static volatile long time;
+
+  private SystemClock() {
+  }
+
+  public static long elapsedRealtime() {
+    return manual ? time : System.nanoTime() / 1000000L + time;
+  }
+
+  public static long uptimeMillis() {
+    return elapsedRealtime();
+  }
+
+  /**
+   * Moves the clock forward, as if the time had passed
+   */
+  public static synchronized void advance(long millis) {
+    time += millis;
+  }
+
+  /**
+   * Stops the clock at the given time, it moves only on {@link #advance(long)} afterwards
+   */
+  public static synchronized void setManualTime(long millis) {
+    time = millis;
+    manual = true;
+  }
+
+  /**
+   * Makes the clock follow {@link System#nanoTime()} again
+   */
+  public static synchronized void useRealTime() {
+    time = 0L;
+    manual = false;
+  }
+}
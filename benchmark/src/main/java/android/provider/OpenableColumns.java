@@ -0,0 +1,9 @@
+package android.provider;
+
+/**
+ * JVM stand-in for the {@code android.provider.OpenableColumns} interface
+ */
+public interface OpenableColumns {
+  String DISPLAY_NAME = "_display_name";
+  String SIZE = "_size";
+}
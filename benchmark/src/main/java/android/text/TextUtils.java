@@ -0,0 +1,13 @@
+package android.text;
+
+/**
+ * JVM stand-in for {@code android.text.TextUtils}
+ */
+public final class TextUtils {
+  private TextUtils() {
+  }
+
+  public static boolean isEmpty(CharSequence text) {
+    return text == null || text.length() == 0;
+  }
+}
@@ -0,0 +1,10 @@
+package android.util;
+
+/**
+ * JVM stand-in for {@code android.util.DisplayMetrics}, a 1080p xxhdpi phone
+ */
+public class DisplayMetrics {
+  public float density = 3f;
+  public int widthPixels = 1080;
+  public int heightPixels = 1920;
+}
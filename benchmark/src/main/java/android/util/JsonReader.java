@@ -0,0 +1,273 @@
+package android.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * JVM stand-in for {@code android.util.JsonReader}, a strict streaming reader of RFC 7159 JSON
+ */
+public final class JsonReader implements Closeable {
+  private static final int EMPTY_DOCUMENT = 0;
+  private static final int NONEMPTY_DOCUMENT = 1;
+  private static final int EMPTY_ARRAY = 2;
+  private static final int NONEMPTY_ARRAY = 3;
+  private static final int EMPTY_OBJECT = 4;
+  private static final int DANGLING_NAME = 5;
+  private static final int NONEMPTY_OBJECT = 6;
+
+  private final Reader in;
+  private final Deque<Integer> scopes = new ArrayDeque<>();
+  private int pushedBack = -2;
+  private JsonToken peeked;
+  private String peekedValue;
+
+  public JsonReader(Reader in) {
+    this.in = in;
+    scopes.push(EMPTY_DOCUMENT);
+  }
+
+  public JsonToken peek() throws IOException {
+    if (peeked != null) return peeked;
+    int scope = scopes.pop();
+    int c;
+    switch (scope) {
+      case EMPTY_DOCUMENT:
+        scopes.push(NONEMPTY_DOCUMENT);
+        return readValue(nextNonWhitespace());
+      case NONEMPTY_DOCUMENT:
+        scopes.push(NONEMPTY_DOCUMENT);
+        if (nextNonWhitespace() != -1) throw new IOException("Multiple top-level values");
+        return peeked = JsonToken.END_DOCUMENT;
+      case EMPTY_ARRAY:
+      case NONEMPTY_ARRAY:
+        scopes.push(NONEMPTY_ARRAY);
+        c = nextNonWhitespace();
+        if (c == ']') return peeked = JsonToken.END_ARRAY;
+        if (scope == NONEMPTY_ARRAY) {
+          if (c != ',') throw syntaxError("Expected , or ]", c);
+          c = nextNonWhitespace();
+        }
+        return readValue(c);
+      case EMPTY_OBJECT:
+      case NONEMPTY_OBJECT:
+        c = nextNonWhitespace();
+        if (c == '}') {
+          scopes.push(scope);
+          return peeked = JsonToken.END_OBJECT;
+        }
+        if (scope == NONEMPTY_OBJECT) {
+          if (c != ',') throw syntaxError("Expected , or }", c);
+          c = nextNonWhitespace();
+        }
+        if (c != '"') throw syntaxError("Expected a name", c);
+        scopes.push(DANGLING_NAME);
+        peekedValue = readString();
+        return peeked = JsonToken.NAME;
+      case DANGLING_NAME:
+        scopes.push(NONEMPTY_OBJECT);
+        c = nextNonWhitespace();
+        if (c != ':') throw syntaxError("Expected :", c);
+        return readValue(nextNonWhitespace());
+      default:
+        throw new IllegalStateException();
+    }
+  }
+
+  public void beginArray() throws IOException {
+    consume(JsonToken.BEGIN_ARRAY);
+    scopes.push(EMPTY_ARRAY);
+  }
+
+  public void endArray() throws IOException {
+    consume(JsonToken.END_ARRAY);
+    scopes.pop();
+  }
+
+  public void beginObject() throws IOException {
+    consume(JsonToken.BEGIN_OBJECT);
+    scopes.push(EMPTY_OBJECT);
+  }
+
+  public void endObject() throws IOException {
+    consume(JsonToken.END_OBJECT);
+    scopes.pop();
+  }
+
+  public boolean hasNext() throws IOException {
+    JsonToken token = peek();
+    return token != JsonToken.END_ARRAY && token != JsonToken.END_OBJECT
+        && token != JsonToken.END_DOCUMENT;
+  }
+
+  public String nextName() throws IOException {
+    String name = peekedValue;
+    consume(JsonToken.NAME);
+    return name;
+  }
+
+  public String nextString() throws IOException {
+    JsonToken token = peek();
+    if (token != JsonToken.STRING && token != JsonToken.NUMBER) {
+      throw new IllegalStateException("Expected a string but was " + token);
+    }
+    String value = peekedValue;
+    peeked = null;
+    return value;
+  }
+
+  public long nextLong() throws IOException {
+    String value = nextString();
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      double doubleValue = Double.parseDouble(value);
+      long longValue = (long) doubleValue;
+      if (longValue != doubleValue) throw new NumberFormatException(value);
+      return longValue;
+    }
+  }
+
+  public boolean nextBoolean() throws IOException {
+    String value = peekedValue;
+    consume(JsonToken.BOOLEAN);
+    return Boolean.parseBoolean(value);
+  }
+
+  public void nextNull() throws IOException {
+    consume(JsonToken.NULL);
+  }
+
+  public void skipValue() throws IOException {
+    int depth = 0;
+    do {
+      switch (peek()) {
+        case BEGIN_ARRAY:
+          beginArray();
+          depth++;
+          break;
+        case BEGIN_OBJECT:
+          beginObject();
+          depth++;
+          break;
+        case END_ARRAY:
+          endArray();
+          depth--;
+          break;
+        case END_OBJECT:
+          endObject();
+          depth--;
+          break;
+        default:
+          peeked = null;
+      }
+    } while (depth > 0);
+  }
+
+  @Override public void close() throws IOException {
+    in.close();
+  }
+
+  private void consume(JsonToken expected) throws IOException {
+    JsonToken token = peek();
+    if (token != expected) {
+      throw new IllegalStateException("Expected " + expected + " but was " + token);
+    }
+    peeked = null;
+  }
+
+  private JsonToken readValue(int c) throws IOException {
+    switch (c) {
+      case '[':
+        return peeked = JsonToken.BEGIN_ARRAY;
+      case '{':
+        return peeked = JsonToken.BEGIN_OBJECT;
+      case '"':
+        peekedValue = readString();
+        return peeked = JsonToken.STRING;
+      case -1:
+        throw new IOException("End of input");
+      default:
+        StringBuilder literal = new StringBuilder();
+        while (c != -1 && c != ',' && c != ']' && c != '}' && !Character.isWhitespace(c)) {
+          literal.append((char) c);
+          c = read();
+        }
+        pushedBack = c;
+        peekedValue = literal.toString();
+        if (peekedValue.equals("true") || peekedValue.equals("false")) {
+          return peeked = JsonToken.BOOLEAN;
+        }
+        if (peekedValue.equals("null")) return peeked = JsonToken.NULL;
+        if (peekedValue.isEmpty()) throw syntaxError("Expected a value", c);
+        return peeked = JsonToken.NUMBER;
+    }
+  }
+
+  private String readString() throws IOException {
+    StringBuilder value = new StringBuilder();
+    while (true) {
+      int c = read();
+      if (c == -1) throw new IOException("Unterminated string");
+      if (c == '"') return value.toString();
+      if (c != '\\') {
+        value.append((char) c);
+        continue;
+      }
+      c = read();
+      switch (c) {
+        case 'b':
+          value.append('\b');
+          break;
+        case 'f':
+          value.append('\f');
+          break;
+        case 'n':
+          value.append('\n');
+          break;
+        case 'r':
+          value.append('\r');
+          break;
+        case 't':
+          value.append('\t');
+          break;
+        case 'u':
+          char[] hex = new char[4];
+          for (int i = 0; i < hex.length; i++) {
+            int digit = read();
+            if (digit == -1) throw new IOException("Unterminated escape sequence");
+            hex[i] = (char) digit;
+          }
+          value.append((char) Integer.parseInt(new String(hex), 16));
+          break;
+        case -1:
+          throw new IOException("Unterminated escape sequence");
+        default:
+          value.append((char) c);
+      }
+    }
+  }
+
+  private int nextNonWhitespace() throws IOException {
+    int c;
+    do {
+      c = read();
+    } while (c != -1 && Character.isWhitespace(c));
+    return c;
+  }
+
+  private int read() throws IOException {
+    if (pushedBack != -2) {
+      int c = pushedBack;
+      pushedBack = -2;
+      return c;
+    }
+    return in.read();
+  }
+
+  private static IOException syntaxError(String message, int c) {
+    return new IOException(message + (c == -1 ? " at end of input" : " at '" + (char) c + "'"));
+  }
+}
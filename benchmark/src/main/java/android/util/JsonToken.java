@@ -0,0 +1,9 @@
+package android.util;
+
+/**
+ * JVM stand-in for {@code android.util.JsonToken}
+ */
+public enum JsonToken {
+  BEGIN_ARRAY, END_ARRAY, BEGIN_OBJECT, END_OBJECT, NAME, STRING, NUMBER, BOOLEAN, NULL,
+  END_DOCUMENT
+}
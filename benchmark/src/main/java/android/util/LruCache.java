@@ -0,0 +1,43 @@
+package android.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * JVM stand-in for {@code android.util.LruCache}
+ */
+public class LruCache<K, V> {
+  private final LinkedHashMap<K, V> map = new LinkedHashMap<>(16, 0.75f, true);
+  private final int maxSize;
+  private int size;
+
+  public LruCache(int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  public final synchronized V get(K key) {
+    return map.get(key);
+  }
+
+  public final synchronized V put(K key, V value) {
+    V previous = map.put(key, value);
+    size += sizeOf(key, value);
+    if (previous != null) size -= sizeOf(key, previous);
+    Iterator<Map.Entry<K, V>> iterator = map.entrySet().iterator();
+    while (size > maxSize && iterator.hasNext()) {
+      Map.Entry<K, V> eldest = iterator.next();
+      size -= sizeOf(eldest.getKey(), eldest.getValue());
+      iterator.remove();
+    }
+    return previous;
+  }
+
+  public final synchronized int size() {
+    return size;
+  }
+
+  protected int sizeOf(K key, V value) {
+    return 1;
+  }
+}
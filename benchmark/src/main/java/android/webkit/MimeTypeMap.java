@@ -0,0 +1,16 @@
+package android.webkit;
+
+/**
+ * JVM stand-in for {@code android.webkit.MimeTypeMap}, which knows no extensions
+ */
+public class MimeTypeMap {
+  private static final MimeTypeMap singleton = new MimeTypeMap();
+
+  public static MimeTypeMap getSingleton() {
+    return singleton;
+  }
+
+  public String getMimeTypeFromExtension(String extension) {
+    return null;
+  }
+}
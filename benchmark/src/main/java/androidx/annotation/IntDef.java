@@ -0,0 +1,14 @@
+package androidx.annotation;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * JVM stand-in for the AndroidX annotation
+ */
+@Retention(RetentionPolicy.SOURCE)
+public @interface IntDef {
+  int[] value() default {};
+
+  boolean flag() default false;
+}
@@ -0,0 +1,11 @@
+package androidx.annotation;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * JVM stand-in for the AndroidX annotation
+ */
+@Retention(RetentionPolicy.CLASS)
+public @interface MainThread {
+}
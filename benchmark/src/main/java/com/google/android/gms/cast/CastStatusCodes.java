@@ -0,0 +1,16 @@
+package com.google.android.gms.cast;
+
+import com.google.android.gms.common.api.CommonStatusCodes;
+
+/**
+ * JVM stand-in for the Play Services class with the codes Casty uses
+ */
+public final class CastStatusCodes extends CommonStatusCodes {
+  public static final int INVALID_REQUEST = 2001;
+  public static final int CANCELED = 2002;
+  public static final int MEDIA_ERROR = 2100;
+  public static final int REPLACED = 2103;
+
+  private CastStatusCodes() {
+  }
+}
@@ -0,0 +1,121 @@
+package com.google.android.gms.cast;
+
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * JVM stand-in for the Play Services class
+ */
+public class MediaInfo {
+  public static final int STREAM_TYPE_INVALID = -1;
+  public static final int STREAM_TYPE_NONE = 0;
+  public static final int STREAM_TYPE_BUFFERED = 1;
+  public static final int STREAM_TYPE_LIVE = 2;
+  public static final long UNKNOWN_DURATION = -1L;
+
+  private final String contentId;
+  private int streamType = STREAM_TYPE_NONE;
+  private String contentType;
+  private long streamDuration = UNKNOWN_DURATION;
+  private MediaMetadata metadata;
+  private List<MediaTrack> mediaTracks;
+  private JSONObject customData;
+
+  MediaInfo(String contentId) {
+    this.contentId = contentId;
+  }
+
+  public String getContentId() {
+    return contentId;
+  }
+
+  public int getStreamType() {
+    return streamType;
+  }
+
+  public String getContentType() {
+    return contentType;
+  }
+
+  public long getStreamDuration() {
+    return streamDuration;
+  }
+
+  public MediaMetadata getMetadata() {
+    return metadata;
+  }
+
+  public List<MediaTrack> getMediaTracks() {
+    return mediaTracks;
+  }
+
+  public JSONObject getCustomData() {
+    return customData;
+  }
+
+  public JSONObject toJson() {
+    JSONObject json = new JSONObject();
+    try {
+      json.put("contentId", contentId)
+          .put("streamType", streamType)
+          .put("contentType", contentType)
+          .put("duration", streamDuration / 1000d);
+      if (metadata != null) json.put("metadata", metadata.toJson());
+      if (mediaTracks != null) {
+        JSONArray tracksJson = new JSONArray();
+        for (MediaTrack track : mediaTracks) {
+          tracksJson.put(track.toJson());
+        }
+        json.put("tracks", tracksJson);
+      }
+      if (customData != null) json.put("customData", customData);
+    } catch (JSONException ignored) {
+      //no-op
+    }
+    return json;
+  }
+
+  public static class Builder {
+    private final MediaInfo mediaInfo;
+
+    public Builder(String contentId) {
+      mediaInfo = new MediaInfo(contentId);
+    }
+
+    public Builder setStreamType(int streamType) {
+      mediaInfo.streamType = streamType;
+      return this;
+    }
+
+    public Builder setContentType(String contentType) {
+      mediaInfo.contentType = contentType;
+      return this;
+    }
+
+    public Builder setStreamDuration(long streamDuration) {
+      mediaInfo.streamDuration = streamDuration;
+      return this;
+    }
+
+    public Builder setMetadata(MediaMetadata metadata) {
+      mediaInfo.metadata = metadata;
+      return this;
+    }
+
+    public Builder setMediaTracks(List<MediaTrack> mediaTracks) {
+      mediaInfo.mediaTracks = mediaTracks;
+      return this;
+    }
+
+    public Builder setCustomData(JSONObject customData) {
+      mediaInfo.customData = customData;
+      return this;
+    }
+
+    public MediaInfo build() {
+      return mediaInfo;
+    }
+  }
+}
@@ -0,0 +1,35 @@
+package com.google.android.gms.cast;
+
+/**
+ * JVM stand-in for the Play Services class
+ */
+public class MediaLoadOptions {
+  private boolean autoplay = true;
+  private long playPosition;
+
+  public boolean getAutoplay() {
+    return autoplay;
+  }
+
+  public long getPlayPosition() {
+    return playPosition;
+  }
+
+  public static class Builder {
+    private final MediaLoadOptions options = new MediaLoadOptions();
+
+    public Builder setAutoplay(boolean autoplay) {
+      options.autoplay = autoplay;
+      return this;
+    }
+
+    public Builder setPlayPosition(long playPosition) {
+      options.playPosition = playPosition;
+      return this;
+    }
+
+    public MediaLoadOptions build() {
+      return options;
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package com.google.android.gms.cast;
+
+import com.google.android.gms.common.images.WebImage;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * JVM stand-in for the Play Services class. Values are kept in a map, like the Bundle of the
+ * original.
+ */
+public class MediaMetadata {
+  public static final int MEDIA_TYPE_GENERIC = 0;
+  public static final String KEY_TITLE = "com.google.android.gms.cast.metadata.TITLE";
+  public static final String KEY_SUBTITLE = "com.google.android.gms.cast.metadata.SUBTITLE";
+  public static final String KEY_STUDIO = "com.google.android.gms.cast.metadata.STUDIO";
+  public static final String KEY_RELEASE_DATE = "com.google.android.gms.cast.metadata.RELEASE_DATE";
+  public static final String KEY_SERIES_TITLE = "com.google.android.gms.cast.metadata.SERIES_TITLE";
+  public static final String KEY_SEASON_NUMBER =
+      "com.google.android.gms.cast.metadata.SEASON_NUMBER";
+  public static final String KEY_EPISODE_NUMBER =
+      "com.google.android.gms.cast.metadata.EPISODE_NUMBER";
+  public static final String KEY_BROADCAST_DATE =
+      "com.google.android.gms.cast.metadata.BROADCAST_DATE";
+  public static final String KEY_ARTIST = "com.google.android.gms.cast.metadata.ARTIST";
+  public static final String KEY_ALBUM_TITLE = "com.google.android.gms.cast.metadata.ALBUM_TITLE";
+  public static final String KEY_ALBUM_ARTIST =
+      "com.google.android.gms.cast.metadata.ALBUM_ARTIST";
+  public static final String KEY_COMPOSER = "com.google.android.gms.cast.metadata.COMPOSER";
+  public static final String KEY_TRACK_NUMBER = "com.google.android.gms.cast.metadata.TRACK_NUMBER";
+  public static final String KEY_DISC_NUMBER = "com.google.android.gms.cast.metadata.DISC_NUMBER";
+
+  private final int mediaType;
+  private final Map<String, Object> values = new LinkedHashMap<>();
+  private final List<WebImage> images = new ArrayList<>();
+
+  public MediaMetadata() {
+    this(MEDIA_TYPE_GENERIC);
+  }
+
+  public MediaMetadata(int mediaType) {
+    this.mediaType = mediaType;
+  }
+
+  public int getMediaType() {
+    return mediaType;
+  }
+
+  public void putString(String key, String value) {
+    values.put(key, value);
+  }
+
+  public String getString(String key) {
+    Object value = values.get(key);
+    return value instanceof String ? (String) value : null;
+  }
+
+  public void putInt(String key, int value) {
+    values.put(key, value);
+  }
+
+  public void putDouble(String key, double value) {
+    values.put(key, value);
+  }
+
+  public void putDate(String key, Calendar value) {
+    //the original stores dates as ISO-8601 strings
+    values.put(key, String.format("%tFT%<tT%<tz", value));
+  }
+
+  public boolean containsKey(String key) {
+    return values.containsKey(key);
+  }
+
+  public void addImage(WebImage image) {
+    images.add(image);
+  }
+
+  public List<WebImage> getImages() {
+    return images;
+  }
+
+  JSONObject toJson() {
+    JSONObject json = new JSONObject();
+    try {
+      json.put("metadataType", mediaType);
+      for (Map.Entry<String, Object> entry : values.entrySet()) {
+        json.put(entry.getKey(), entry.getValue());
+      }
+      JSONArray imagesJson = new JSONArray();
+      for (WebImage image : images) {
+        imagesJson.put(new JSONObject().put("url", String.valueOf(image.getUrl())));
+      }
+      json.put("images", imagesJson);
+    } catch (JSONException ignored) {
+      //no-op
+    }
+    return json;
+  }
+}
@@ -0,0 +1,78 @@
+package com.google.android.gms.cast;
+
+/**
+ * JVM stand-in for the Play Services class
+ */
+public class MediaQueueItem {
+  public static final int INVALID_ITEM_ID = 0;
+
+  private final MediaInfo media;
+  private int itemId = INVALID_ITEM_ID;
+  private boolean autoplay = true;
+  private double startTime;
+  private double preloadTime;
+
+  MediaQueueItem(MediaInfo media) {
+    this.media = media;
+  }
+
+  public MediaInfo getMedia() {
+    return media;
+  }
+
+  public int getItemId() {
+    return itemId;
+  }
+
+  public boolean getAutoplay() {
+    return autoplay;
+  }
+
+  public double getStartTime() {
+    return startTime;
+  }
+
+  public double getPreloadTime() {
+    return preloadTime;
+  }
+
+  public static class Builder {
+    private final MediaQueueItem item;
+
+    public Builder(MediaInfo media) {
+      item = new MediaQueueItem(media);
+    }
+
+    public Builder(MediaQueueItem item) {
+      this.item = new MediaQueueItem(item.media);
+      this.item.itemId = item.itemId;
+      this.item.autoplay = item.autoplay;
+      this.item.startTime = item.startTime;
+      this.item.preloadTime = item.preloadTime;
+    }
+
+    public Builder setItemId(int itemId) {
+      item.itemId = itemId;
+      return this;
+    }
+
+    public Builder setAutoplay(boolean autoplay) {
+      item.autoplay = autoplay;
+      return this;
+    }
+
+    public Builder setStartTime(double startTime) {
+      item.startTime = startTime;
+      return this;
+    }
+
+    public Builder setPreloadTime(double preloadTime) {
+      item.preloadTime = preloadTime;
+      return this;
+    }
+
+    public MediaQueueItem build() {
+      return item;
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package com.google.android.gms.cast;
+
+/**
+ * JVM stand-in for the Play Services class. Fields are public, so fake receivers can update them.
+ */
+public class MediaStatus {
+  public static final int PLAYER_STATE_UNKNOWN = 0;
+  public static final int PLAYER_STATE_IDLE = 1;
+  public static final int PLAYER_STATE_PLAYING = 2;
+  public static final int PLAYER_STATE_PAUSED = 3;
+  public static final int PLAYER_STATE_BUFFERING = 4;
+  public static final int PLAYER_STATE_LOADING = 5;
+  public static final int IDLE_REASON_NONE = 0;
+  public static final int IDLE_REASON_FINISHED = 1;
+  public static final int IDLE_REASON_CANCELED = 2;
+  public static final int IDLE_REASON_INTERRUPTED = 3;
+  public static final int IDLE_REASON_ERROR = 4;
+  public static final int REPEAT_MODE_REPEAT_OFF = 0;
+  public static final int REPEAT_MODE_REPEAT_ALL = 1;
+  public static final int REPEAT_MODE_REPEAT_SINGLE = 2;
+  public static final int REPEAT_MODE_REPEAT_ALL_AND_SHUFFLE = 3;
+
+  public MediaInfo mediaInfo;
+  public int playerState = PLAYER_STATE_IDLE;
+  public int idleReason = IDLE_REASON_NONE;
+  public long streamPosition;
+  public double playbackRate = 1d;
+  public long[] activeTrackIds;
+  public double streamVolume = 1d;
+  public boolean mute;
+  public int currentItemId = MediaQueueItem.INVALID_ITEM_ID;
+  public int queueRepeatMode = REPEAT_MODE_REPEAT_OFF;
+
+  public MediaInfo getMediaInfo() {
+    return mediaInfo;
+  }
+
+  public int getPlayerState() {
+    return playerState;
+  }
+
+  public int getIdleReason() {
+    return idleReason;
+  }
+
+  public long getStreamPosition() {
+    return streamPosition;
+  }
+
+  public double getPlaybackRate() {
+    return playbackRate;
+  }
+
+  public long[] getActiveTrackIds() {
+    return activeTrackIds;
+  }
+
+  public double getStreamVolume() {
+    return streamVolume;
+  }
+
+  public boolean isMute() {
+    return mute;
+  }
+
+  public int getCurrentItemId() {
+    return currentItemId;
+  }
+
+  public int getQueueRepeatMode() {
+    return queueRepeatMode;
+  }
+}
@@ -0,0 +1,112 @@
+package com.google.android.gms.cast;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * JVM stand-in for the Play Services class
+ */
+public final class MediaTrack {
+  public static final int TYPE_UNKNOWN = 0;
+  public static final int TYPE_TEXT = 1;
+  public static final int TYPE_AUDIO = 2;
+  public static final int TYPE_VIDEO = 3;
+  public static final int SUBTYPE_UNKNOWN = -1;
+  public static final int SUBTYPE_NONE = 0;
+  public static final int SUBTYPE_SUBTITLES = 1;
+  public static final int SUBTYPE_CAPTIONS = 2;
+
+  private final long id;
+  private final int type;
+  private String contentId;
+  private String contentType;
+  private String name;
+  private String language;
+  private int subtype = SUBTYPE_NONE;
+
+  private MediaTrack(long id, int type) {
+    this.id = id;
+    this.type = type;
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  public int getType() {
+    return type;
+  }
+
+  public int getSubtype() {
+    return subtype;
+  }
+
+  public String getContentId() {
+    return contentId;
+  }
+
+  public String getContentType() {
+    return contentType;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getLanguage() {
+    return language;
+  }
+
+  JSONObject toJson() {
+    JSONObject json = new JSONObject();
+    try {
+      json.put("trackId", id)
+          .put("type", type)
+          .put("subtype", subtype)
+          .put("trackContentId", contentId)
+          .put("trackContentType", contentType)
+          .put("name", name)
+          .put("language", language);
+    } catch (JSONException ignored) {
+      //no-op
+    }
+    return json;
+  }
+
+  public static class Builder {
+    private final MediaTrack track;
+
+    public Builder(long id, int type) {
+      track = new MediaTrack(id, type);
+    }
+
+    public Builder setContentId(String contentId) {
+      track.contentId = contentId;
+      return this;
+    }
+
+    public Builder setContentType(String contentType) {
+      track.contentType = contentType;
+      return this;
+    }
+
+    public Builder setName(String name) {
+      track.name = name;
+      return this;
+    }
+
+    public Builder setLanguage(String language) {
+      track.language = language;
+      return this;
+    }
+
+    public Builder setSubtype(int subtype) {
+      track.subtype = subtype;
+      return this;
+    }
+
+    public MediaTrack build() {
+      return track;
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package com.google.android.gms.cast.framework;
+
+import android.content.Context;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JVM stand-in for the Play Services class, a single instance shared by the whole process
+ */
+public class CastContext {
+  private static final CastContext instance = new CastContext();
+
+  private final SessionManager sessionManager = new SessionManager();
+  private final List<CastStateListener> castStateListeners = new ArrayList<>();
+  private int castState = CastState.NOT_CONNECTED;
+
+  public static CastContext getSharedInstance(Context context) {
+    return instance;
+  }
+
+  public SessionManager getSessionManager() {
+    return sessionManager;
+  }
+
+  public int getCastState() {
+    return castState;
+  }
+
+  public void addCastStateListener(CastStateListener listener) {
+    castStateListeners.add(listener);
+  }
+
+  public void removeCastStateListener(CastStateListener listener) {
+    castStateListeners.remove(listener);
+  }
+
+  public int getCastStateListenerCount() {
+    return castStateListeners.size();
+  }
+
+  /**
+   * Changes the cast state and notifies the listeners
+   */
+  public void setCastState(int castState) {
+    this.castState = castState;
+    for (CastStateListener listener : new ArrayList<>(castStateListeners)) {
+      listener.onCastStateChanged(castState);
+    }
+  }
+}
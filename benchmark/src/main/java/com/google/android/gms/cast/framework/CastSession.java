@@ -0,0 +1,18 @@
+package com.google.android.gms.cast.framework;
+
+import com.google.android.gms.cast.framework.media.RemoteMediaClient;
+
+/**
+ * JVM stand-in for the Play Services class
+ */
+public class CastSession {
+  private final RemoteMediaClient remoteMediaClient;
+
+  public CastSession(RemoteMediaClient remoteMediaClient) {
+    this.remoteMediaClient = remoteMediaClient;
+  }
+
+  public RemoteMediaClient getRemoteMediaClient() {
+    return remoteMediaClient;
+  }
+}
@@ -0,0 +1,14 @@
+package com.google.android.gms.cast.framework;
+
+/**
+ * JVM stand-in for the Play Services class
+ */
+public final class CastState {
+  public static final int NO_DEVICES_AVAILABLE = 1;
+  public static final int NOT_CONNECTED = 2;
+  public static final int CONNECTING = 3;
+  public static final int CONNECTED = 4;
+
+  private CastState() {
+  }
+}
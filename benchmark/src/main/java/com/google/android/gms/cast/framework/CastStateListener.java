@@ -0,0 +1,8 @@
+package com.google.android.gms.cast.framework;
+
+/**
+ * JVM stand-in for the Play Services interface
+ */
+public interface CastStateListener {
+  void onCastStateChanged(int newState);
+}
@@ -0,0 +1,41 @@
+package com.google.android.gms.cast.framework;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JVM stand-in for the Play Services class
+ */
+public class SessionManager {
+  private final List<SessionManagerListener<CastSession>> listeners = new ArrayList<>();
+  private CastSession currentCastSession;
+
+  public void addSessionManagerListener(SessionManagerListener<CastSession> listener,
+      Class<CastSession> sessionClass) {
+    listeners.add(listener);
+  }
+
+  public void removeSessionManagerListener(SessionManagerListener<CastSession> listener,
+      Class<CastSession> sessionClass) {
+    listeners.remove(listener);
+  }
+
+  public int getSessionManagerListenerCount() {
+    return listeners.size();
+  }
+
+  public CastSession getCurrentCastSession() {
+    return currentCastSession;
+  }
+
+  /**
+   * Makes the session current and notifies the listeners that it has started
+   */
+  public void startSession(CastSession castSession) {
+    currentCastSession = castSession;
+    for (SessionManagerListener<CastSession> listener : new ArrayList<>(listeners)) {
+      listener.onSessionStarting(castSession);
+      listener.onSessionStarted(castSession, "session");
+    }
+  }
+}
@@ -0,0 +1,24 @@
+package com.google.android.gms.cast.framework;
+
+/**
+ * JVM stand-in for the Play Services interface
+ */
+public interface SessionManagerListener<T> {
+  void onSessionStarting(T session);
+
+  void onSessionStarted(T session, String sessionId);
+
+  void onSessionStartFailed(T session, int error);
+
+  void onSessionEnding(T session);
+
+  void onSessionEnded(T session, int error);
+
+  void onSessionResuming(T session, String sessionId);
+
+  void onSessionResumed(T session, boolean wasSuspended);
+
+  void onSessionResumeFailed(T session, int error);
+
+  void onSessionSuspended(T session, int reason);
+}
@@ -0,0 +1,192 @@
+package com.google.android.gms.cast.framework.media;
+
+import com.google.android.gms.cast.MediaInfo;
+import com.google.android.gms.cast.MediaQueueItem;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory JVM stand-in for the Play Services class. The receiver queue is changed by the
+ * methods below, which notify the callbacks like the queue change messages. Items requested with
+ * {@code getItemAtIndex(index, true)} arrive only on {@link #deliverFetchedItems()}, in batches
+ * like the paged fetch from the receiver.
+ */
+public class MediaQueue {
+  private static final int CACHE_CAPACITY = 20;
+  private static final int MAX_BATCH_SIZE = 20;
+
+  private final List<Callback> callbacks = new ArrayList<>();
+  private final Map<Integer, MediaQueueItem> cache =
+      new LinkedHashMap<Integer, MediaQueueItem>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<Integer, MediaQueueItem> eldest) {
+          return size() > CACHE_CAPACITY;
+        }
+      };
+  //indexes of the requested items by item id
+  private final Map<Integer, Integer> fetchedItemIds = new LinkedHashMap<>();
+  private int[] itemIds = new int[0];
+  private int fetchCount;
+
+  public int getItemCount() {
+    return itemIds.length;
+  }
+
+  public int[] getItemIds() {
+    return itemIds.clone();
+  }
+
+  public int itemIdAtIndex(int index) {
+    return itemIds[index];
+  }
+
+  public MediaQueueItem getItemAtIndex(int index) {
+    return getItemAtIndex(index, true);
+  }
+
+  public MediaQueueItem getItemAtIndex(int index, boolean fetchIfNeeded) {
+    int itemId = itemIds[index];
+    MediaQueueItem item = cache.get(itemId);
+    if (item == null && fetchIfNeeded) fetchedItemIds.put(itemId, index);
+    return item;
+  }
+
+  public void registerCallback(Callback callback) {
+    callbacks.add(callback);
+  }
+
+  public void unregisterCallback(Callback callback) {
+    callbacks.remove(callback);
+  }
+
+  public int getCallbackCount() {
+    return callbacks.size();
+  }
+
+  /**
+   * Answers the pending fetches
+   */
+  public void deliverFetchedItems() {
+    while (!fetchedItemIds.isEmpty()) {
+      int[] updatedIndexes = new int[Math.min(MAX_BATCH_SIZE, fetchedItemIds.size())];
+      int count = 0;
+      Iterator<Map.Entry<Integer, Integer>> iterator = fetchedItemIds.entrySet().iterator();
+      while (iterator.hasNext() && count < updatedIndexes.length) {
+        Map.Entry<Integer, Integer> fetched = iterator.next();
+        iterator.remove();
+        int itemId = fetched.getKey();
+        int index = fetched.getValue();
+        //the queue may have changed since the request
+        if (index >= itemIds.length || itemIds[index] != itemId) index = indexOf(itemId);
+        if (index < 0) continue;
+        cache.put(itemId, new MediaQueueItem.Builder(
+            new MediaInfo.Builder("https://example.com/" + itemId).build()).setItemId(itemId)
+            .build());
+        updatedIndexes[count++] = index;
+      }
+      fetchCount++;
+      if (count == 0) continue;
+      for (Callback callback : callbacks.toArray(new Callback[0])) {
+        callback.itemsUpdatedAtIndexes(Arrays.copyOf(updatedIndexes, count));
+      }
+    }
+  }
+
+  /**
+   * @return number of the fetch requests sent to the receiver so far
+   */
+  public int getFetchCount() {
+    return fetchCount;
+  }
+
+  public void setItemIds(int[] itemIds) {
+    this.itemIds = itemIds.clone();
+    cache.clear();
+    fetchedItemIds.clear();
+    for (Callback callback : callbacks.toArray(new Callback[0])) {
+      callback.itemsReloaded();
+    }
+  }
+
+  public void insertItems(int index, int... insertedItemIds) {
+    int[] newItemIds = new int[itemIds.length + insertedItemIds.length];
+    System.arraycopy(itemIds, 0, newItemIds, 0, index);
+    System.arraycopy(insertedItemIds, 0, newItemIds, index, insertedItemIds.length);
+    System.arraycopy(itemIds, index, newItemIds, index + insertedItemIds.length,
+        itemIds.length - index);
+    itemIds = newItemIds;
+    for (Callback callback : callbacks.toArray(new Callback[0])) {
+      callback.itemsInsertedInRange(index, insertedItemIds.length);
+    }
+  }
+
+  public void removeItemsAtIndexes(int... indexes) {
+    int[] sortedIndexes = indexes.clone();
+    Arrays.sort(sortedIndexes);
+    int[] newItemIds = new int[itemIds.length - sortedIndexes.length];
+    int removed = 0;
+    for (int i = 0; i < itemIds.length; i++) {
+      if (removed < sortedIndexes.length && sortedIndexes[removed] == i) {
+        cache.remove(itemIds[i]);
+        removed++;
+      } else {
+        newItemIds[i - removed] = itemIds[i];
+      }
+    }
+    itemIds = newItemIds;
+    for (Callback callback : callbacks.toArray(new Callback[0])) {
+      callback.itemsRemovedAtIndexes(indexes.clone());
+    }
+  }
+
+  /**
+   * Moves a single item, so that it ends up at the given index
+   */
+  public void moveItem(int fromIndex, int toIndex) {
+    int itemId = itemIds[fromIndex];
+    if (fromIndex < toIndex) {
+      System.arraycopy(itemIds, fromIndex + 1, itemIds, fromIndex, toIndex - fromIndex);
+    } else {
+      System.arraycopy(itemIds, toIndex, itemIds, toIndex + 1, fromIndex - toIndex);
+    }
+    itemIds[toIndex] = itemId;
+    int insertBefore = fromIndex < toIndex ? toIndex + 1 : toIndex;
+    for (Callback callback : callbacks.toArray(new Callback[0])) {
+      callback.itemsReorderedAtIndexes(Collections.singletonList(fromIndex), insertBefore);
+    }
+  }
+
+  private int indexOf(int itemId) {
+    for (int i = 0; i < itemIds.length; i++) {
+      if (itemIds[i] == itemId) return i;
+    }
+    return -1;
+  }
+
+  public abstract static class Callback {
+    public void mediaQueueWillChange() {
+    }
+
+    public void itemsReloaded() {
+    }
+
+    public void itemsInsertedInRange(int insertIndex, int insertCount) {
+    }
+
+    public void itemsUpdatedAtIndexes(int[] indexes) {
+    }
+
+    public void itemsRemovedAtIndexes(int[] indexes) {
+    }
+
+    public void itemsReorderedAtIndexes(List<Integer> indexes, int insertBefore) {
+    }
+
+    public void mediaQueueChanged() {
+    }
+  }
+}
@@ -0,0 +1,290 @@
+package com.google.android.gms.cast.framework.media;
+
+import android.os.Handler;
+import com.google.android.gms.cast.MediaInfo;
+import com.google.android.gms.cast.MediaLoadOptions;
+import com.google.android.gms.cast.MediaQueueItem;
+import com.google.android.gms.cast.MediaStatus;
+import com.google.android.gms.common.api.CommonStatusCodes;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.common.api.Status;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONObject;
+
+/**
+ * In-memory JVM stand-in for the Play Services class. Every request is applied to
+ * {@link #getMediaStatus()} and completes with success before it returns. Subclasses change how
+ * requests are delivered by overriding {@link #execute(Request)}.
+ */
+public class RemoteMediaClient {
+  private final List<Callback> callbacks = new ArrayList<>();
+  private final List<ProgressListener> progressListeners = new ArrayList<>();
+  private final MediaStatus mediaStatus = new MediaStatus();
+  private final MediaQueue mediaQueue = new MediaQueue();
+  private MediaQueueItem[] queueItems = new MediaQueueItem[0];
+
+  public PendingResult<MediaChannelResult> load(final MediaInfo mediaInfo,
+      final MediaLoadOptions options) {
+    return execute(new Request() {
+      @Override public void apply(MediaStatus mediaStatus) {
+        mediaStatus.mediaInfo = mediaInfo;
+        mediaStatus.streamPosition = options.getPlayPosition();
+        mediaStatus.playerState = options.getAutoplay() ? MediaStatus.PLAYER_STATE_PLAYING
+            : MediaStatus.PLAYER_STATE_PAUSED;
+      }
+    });
+  }
+
+  public PendingResult<MediaChannelResult> queueLoad(final MediaQueueItem[] items,
+      final int startIndex, final int repeatMode, JSONObject customData) {
+    return execute(new Request() {
+      @Override public void apply(MediaStatus mediaStatus) {
+        queueItems = items.clone();
+        mediaStatus.queueRepeatMode = repeatMode;
+        mediaStatus.currentItemId = startIndex + 1;
+        mediaStatus.mediaInfo = items[startIndex].getMedia();
+        mediaStatus.streamPosition = (long) (items[startIndex].getStartTime() * 1000);
+        mediaStatus.playerState = MediaStatus.PLAYER_STATE_PLAYING;
+      }
+    });
+  }
+
+  public PendingResult<MediaChannelResult> queueAppendItem(final MediaQueueItem item,
+      JSONObject customData) {
+    return queueInsertItems(new MediaQueueItem[] { item }, MediaQueueItem.INVALID_ITEM_ID,
+        customData);
+  }
+
+  public PendingResult<MediaChannelResult> queueInsertItems(final MediaQueueItem[] items,
+      int insertBeforeItemId, JSONObject customData) {
+    return execute(new Request() {
+      @Override public void apply(MediaStatus mediaStatus) {
+        int size = queueItems.length;
+        queueItems = Arrays.copyOf(queueItems, size + items.length);
+        System.arraycopy(items, 0, queueItems, size, items.length);
+      }
+    });
+  }
+
+  public PendingResult<MediaChannelResult> play() {
+    return setPlayerState(MediaStatus.PLAYER_STATE_PLAYING);
+  }
+
+  public PendingResult<MediaChannelResult> pause() {
+    return setPlayerState(MediaStatus.PLAYER_STATE_PAUSED);
+  }
+
+  public PendingResult<MediaChannelResult> stop() {
+    return setPlayerState(MediaStatus.PLAYER_STATE_IDLE);
+  }
+
+  public PendingResult<MediaChannelResult> seek(final long position) {
+    return execute(new Request() {
+      @Override public void apply(MediaStatus mediaStatus) {
+        mediaStatus.streamPosition = position;
+      }
+    });
+  }
+
+  public PendingResult<MediaChannelResult> setStreamVolume(final double volume) {
+    return execute(new Request() {
+      @Override public void apply(MediaStatus mediaStatus) {
+        mediaStatus.streamVolume = volume;
+      }
+    });
+  }
+
+  public PendingResult<MediaChannelResult> setActiveMediaTracks(final long[] trackIds) {
+    return execute(new Request() {
+      @Override public void apply(MediaStatus mediaStatus) {
+        mediaStatus.activeTrackIds = trackIds.clone();
+      }
+    });
+  }
+
+  private PendingResult<MediaChannelResult> setPlayerState(final int playerState) {
+    return execute(new Request() {
+      @Override public void apply(MediaStatus mediaStatus) {
+        mediaStatus.playerState = playerState;
+      }
+    });
+  }
+
+  /**
+   * Applies the request to the media status, notifies the callbacks and completes the result
+   */
+  protected PendingResult<MediaChannelResult> execute(Request request) {
+    request.apply(mediaStatus);
+    notifyStatusUpdated();
+    return new FakePendingResult(CommonStatusCodes.SUCCESS);
+  }
+
+  protected final void notifyStatusUpdated() {
+    for (Callback callback : callbacks.toArray(new Callback[0])) {
+      callback.onStatusUpdated();
+    }
+  }
+
+  /**
+   * Delivers a progress tick to the registered progress listeners
+   */
+  public final void notifyProgressUpdated(long progress, long duration) {
+    for (int i = 0; i < progressListeners.size(); i++) {
+      progressListeners.get(i).onProgressUpdated(progress, duration);
+    }
+  }
+
+  public MediaStatus getMediaStatus() {
+    return mediaStatus;
+  }
+
+  public MediaInfo getMediaInfo() {
+    return mediaStatus.mediaInfo;
+  }
+
+  public MediaQueue getMediaQueue() {
+    return mediaQueue;
+  }
+
+  public MediaQueueItem[] getQueueItems() {
+    return queueItems;
+  }
+
+  public boolean isPlaying() {
+    return mediaStatus.playerState == MediaStatus.PLAYER_STATE_PLAYING;
+  }
+
+  public boolean isPaused() {
+    return mediaStatus.playerState == MediaStatus.PLAYER_STATE_PAUSED;
+  }
+
+  public boolean isBuffering() {
+    return mediaStatus.playerState == MediaStatus.PLAYER_STATE_BUFFERING;
+  }
+
+  public void registerCallback(Callback callback) {
+    callbacks.add(callback);
+  }
+
+  public void unregisterCallback(Callback callback) {
+    callbacks.remove(callback);
+  }
+
+  public int getCallbackCount() {
+    return callbacks.size();
+  }
+
+  public boolean addProgressListener(ProgressListener listener, long period) {
+    progressListeners.add(listener);
+    return true;
+  }
+
+  public void removeProgressListener(ProgressListener listener) {
+    progressListeners.remove(listener);
+  }
+
+  public int getProgressListenerCount() {
+    return progressListeners.size();
+  }
+
+  /**
+   * Change of the media status requested by the sender
+   */
+  protected interface Request {
+    void apply(MediaStatus mediaStatus);
+  }
+
+  public interface MediaChannelResult extends com.google.android.gms.common.api.Result {
+    JSONObject getCustomData();
+  }
+
+  public interface ProgressListener {
+    void onProgressUpdated(long progressMs, long durationMs);
+  }
+
+  public abstract static class Callback {
+    public void onStatusUpdated() {
+    }
+
+    public void onMetadataUpdated() {
+    }
+
+    public void onQueueStatusUpdated() {
+    }
+
+    public void onPreloadStatusUpdated() {
+    }
+
+    public void onSendingRemoteMediaRequest() {
+    }
+
+    public void onAdBreakStatusUpdated() {
+    }
+  }
+
+  /**
+   * Pending result, which is completed at construction or later by {@link #setResult(int)}. A
+   * result which is not completed within the callback timeout completes with
+   * {@link CommonStatusCodes#TIMEOUT}, timeouts are run by {@link Handler}.
+   */
+  public static class FakePendingResult extends PendingResult<MediaChannelResult>
+      implements MediaChannelResult {
+    private Status status;
+    private ResultCallback<? super MediaChannelResult> callback;
+    private boolean canceled;
+
+    public FakePendingResult() {
+    }
+
+    public FakePendingResult(int statusCode) {
+      status = new Status(statusCode);
+    }
+
+    public void setResult(int statusCode) {
+      if (status != null || canceled) return;
+      status = new Status(statusCode);
+      if (callback != null) callback.onResult(this);
+    }
+
+    public boolean isDone() {
+      return status != null;
+    }
+
+    @Override public void setResultCallback(ResultCallback<? super MediaChannelResult> callback) {
+      this.callback = callback;
+      if (status != null) callback.onResult(this);
+    }
+
+    @Override public void setResultCallback(ResultCallback<? super MediaChannelResult> callback,
+        long time, TimeUnit unit) {
+      setResultCallback(callback);
+      if (status == null && time > 0) {
+        new Handler().postDelayed(new Runnable() {
+          @Override public void run() {
+            setResult(CommonStatusCodes.TIMEOUT);
+          }
+        }, unit.toMillis(time));
+      }
+    }
+
+    @Override public void cancel() {
+      canceled = true;
+    }
+
+    @Override public boolean isCanceled() {
+      return canceled;
+    }
+
+    @Override public Status getStatus() {
+      return status;
+    }
+
+    @Override public JSONObject getCustomData() {
+      return null;
+    }
+  }
+}
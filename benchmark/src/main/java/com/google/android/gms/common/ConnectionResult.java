@@ -0,0 +1,9 @@
+package com.google.android.gms.common;
+
+/**
+ * JVM stand-in for the Play Services class
+ */
+public final class ConnectionResult {
+  public static final int SUCCESS = 0;
+  public static final int SERVICE_MISSING = 1;
+}
@@ -0,0 +1,18 @@
+package com.google.android.gms.common;
+
+import android.content.Context;
+
+/**
+ * JVM stand-in for the Play Services class, which always reports Play services as available
+ */
+public class GoogleApiAvailability {
+  private static final GoogleApiAvailability instance = new GoogleApiAvailability();
+
+  public static GoogleApiAvailability getInstance() {
+    return instance;
+  }
+
+  public int isGooglePlayServicesAvailable(Context context) {
+    return ConnectionResult.SUCCESS;
+  }
+}
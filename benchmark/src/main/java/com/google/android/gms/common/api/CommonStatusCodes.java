@@ -0,0 +1,19 @@
+package com.google.android.gms.common.api;
+
+/**
+ * JVM stand-in for the Play Services class with the codes Casty uses
+ */
+public class CommonStatusCodes {
+  public static final int SUCCESS = 0;
+  public static final int NETWORK_ERROR = 7;
+  public static final int DEVELOPER_ERROR = 10;
+  public static final int ERROR = 13;
+  public static final int INTERRUPTED = 14;
+  public static final int TIMEOUT = 15;
+  public static final int CANCELED = 16;
+  public static final int API_NOT_CONNECTED = 17;
+
+  public static String getStatusCodeString(int statusCode) {
+    return "STATUS_" + statusCode;
+  }
+}
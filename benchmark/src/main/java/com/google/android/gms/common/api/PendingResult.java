@@ -0,0 +1,17 @@
+package com.google.android.gms.common.api;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JVM stand-in for the Play Services class
+ */
+public abstract class PendingResult<R extends Result> {
+  public abstract void setResultCallback(ResultCallback<? super R> callback);
+
+  public abstract void setResultCallback(ResultCallback<? super R> callback, long time,
+      TimeUnit unit);
+
+  public abstract void cancel();
+
+  public abstract boolean isCanceled();
+}
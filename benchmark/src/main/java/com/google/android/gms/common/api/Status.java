@@ -0,0 +1,24 @@
+package com.google.android.gms.common.api;
+
+/**
+ * JVM stand-in for the Play Services class
+ */
+public final class Status implements Result {
+  private final int statusCode;
+
+  public Status(int statusCode) {
+    this.statusCode = statusCode;
+  }
+
+  public int getStatusCode() {
+    return statusCode;
+  }
+
+  public boolean isSuccess() {
+    return statusCode <= CommonStatusCodes.SUCCESS;
+  }
+
+  @Override public Status getStatus() {
+    return this;
+  }
+}
@@ -0,0 +1,18 @@
+package com.google.android.gms.common.images;
+
+import android.net.Uri;
+
+/**
+ * JVM stand-in for the Play Services class
+ */
+public final class WebImage {
+  private final Uri url;
+
+  public WebImage(Uri url) {
+    this.url = url;
+  }
+
+  public Uri getUrl() {
+    return url;
+  }
+}
@@ -0,0 +1,302 @@
+package pl.droidsonroids.casty;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * End-to-end latency scenarios run against {@link SimulatedReceiver}. Every scenario is repeated
+ * with different seeds and its virtual-time latency percentiles are printed. The numbers depend
+ * only on the seeds and on Casty code, so they can be compared between CI runs.
+ */
+public final class ReceiverScenarios {
+  private static final int DEFAULT_RUNS = 200;
+  private static final long SCENARIO_TIMEOUT = 60000L;
+  private static final long CONNECT_TIMEOUT = 10000L;
+  private static final int SEEK_DRAG_STEPS = 30;
+  private static final long SEEK_DRAG_STEP_INTERVAL = 16L;
+  private static final int TOGGLE_COUNT = 50;
+  private static final int LOSSY_LOAD_COUNT = 20;
+
+  private ReceiverScenarios() {
+  }
+
+  public static void main(String[] args) {
+    int runs = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_RUNS;
+    Stats connectToPlaying = new Stats("connect to playing");
+    Stats loadWhileConnecting = new Stats("load while connecting");
+    Stats loadToPlaying = new Stats("load to playing");
+    Stats seekDragSettle = new Stats("seek drag settle");
+    Stats seekDragRequests = new Stats("seek drag requests");
+    Stats toggleRoundTrip = new Stats("toggle round trip");
+    Stats lossyLoad = new Stats("lossy load");
+    for (int seed = 1; seed <= runs; seed++) {
+      connectToPlaying(network(seed), connectToPlaying);
+      loadWhileConnecting(network(seed), loadWhileConnecting);
+      loadToPlaying(network(seed), loadToPlaying);
+      seekDrag(network(seed), seekDragSettle, seekDragRequests);
+      toggle(network(seed), toggleRoundTrip);
+      lossyLoad(network(seed).setFailureRate(0.05d).setDropRate(0.02d), lossyLoad);
+    }
+    System.out.println(Stats.header());
+    System.out.println(connectToPlaying);
+    System.out.println(loadWhileConnecting);
+    System.out.println(loadToPlaying);
+    System.out.println(seekDragSettle);
+    System.out.println(seekDragRequests);
+    System.out.println(toggleRoundTrip);
+    System.out.println(lossyLoad);
+    System.out.println();
+    System.out.println("CastyMetrics recorded during the scenarios:");
+    System.out.println(CastyMetrics.getInstance().snapshot());
+  }
+
+  /**
+   * Typical home Wi-Fi
+   */
+  static SimulatedReceiver.Builder network(long seed) {
+    return new SimulatedReceiver.Builder().setLatency(20L)
+        .setJitter(15L)
+        .setConnectTime(1500L)
+        .setBufferingTime(600L)
+        .setSeed(seed);
+  }
+
+  static void connectToPlaying(SimulatedReceiver.Builder network, Stats stats) {
+    SimulationClock clock = new SimulationClock();
+    final CastyPlayer castyPlayer = createPlayer();
+    final SimulatedReceiver receiver = network.build(clock);
+    long start = clock.now();
+    receiver.startSession(castyPlayer);
+    if (!clock.runUntil(isConnected(receiver), CONNECT_TIMEOUT)) {
+      stats.fail();
+      return;
+    }
+    castyPlayer.loadMedia(createMediaData(0));
+    if (clock.runUntil(isPlaying(castyPlayer), SCENARIO_TIMEOUT)) {
+      stats.add(clock.now() - start);
+    } else {
+      stats.fail();
+    }
+  }
+
+  /**
+   * The user picks the media right after picking the device, before the session has started
+   */
+  static void loadWhileConnecting(SimulatedReceiver.Builder network, Stats stats) {
+    SimulationClock clock = new SimulationClock();
+    CastyPlayer castyPlayer = createPlayer();
+    SimulatedReceiver receiver = network.build(clock);
+    long start = clock.now();
+    receiver.startSession(castyPlayer);
+    castyPlayer.loadMedia(createMediaData(0));
+    if (clock.runUntil(isPlaying(castyPlayer), SCENARIO_TIMEOUT)) {
+      stats.add(clock.now() - start);
+    } else {
+      stats.fail();
+    }
+  }
+
+  static void loadToPlaying(SimulatedReceiver.Builder network, Stats stats) {
+    SimulationClock clock = new SimulationClock();
+    CastyPlayer castyPlayer = createPlayer();
+    if (!connect(clock, network.build(clock), castyPlayer)) {
+      stats.fail();
+      return;
+    }
+    long start = clock.now();
+    castyPlayer.loadMedia(createMediaData(0));
+    if (clock.runUntil(isPlaying(castyPlayer), SCENARIO_TIMEOUT)) {
+      stats.add(clock.now() - start);
+    } else {
+      stats.fail();
+    }
+  }
+
+  /**
+   * The user drags the seek bar, producing a seek every frame. Measures the time from the last
+   * seek until the receiver confirms it and the number of seeks which reached the receiver.
+   */
+  static void seekDrag(SimulatedReceiver.Builder network, Stats settleStats,
+      Stats requestStats) {
+    final SimulationClock clock = new SimulationClock();
+    final CastyPlayer castyPlayer = createPlayer();
+    SimulatedReceiver receiver = network.build(clock);
+    if (!connect(clock, receiver, castyPlayer) || !play(clock, castyPlayer)) {
+      settleStats.fail();
+      return;
+    }
+    int requestsBefore = receiver.getReceivedRequestCount();
+    final CastyCommand[] lastSeek = new CastyCommand[1];
+    for (int i = 0; i < SEEK_DRAG_STEPS; i++) {
+      final long position = (i + 1) * 10000L;
+      clock.schedule(i * SEEK_DRAG_STEP_INTERVAL, new Runnable() {
+        @Override public void run() {
+          lastSeek[0] = castyPlayer.seek(position);
+        }
+      });
+    }
+    clock.runFor((SEEK_DRAG_STEPS - 1) * SEEK_DRAG_STEP_INTERVAL);
+    long dragEnd = clock.now();
+    if (clock.runUntil(isDone(lastSeek[0]), SCENARIO_TIMEOUT) && lastSeek[0].isSuccessful()) {
+      settleStats.add(clock.now() - dragEnd);
+      requestStats.add(receiver.getReceivedRequestCount() - requestsBefore);
+    } else {
+      settleStats.fail();
+    }
+  }
+
+  /**
+   * Toggles play and pause, waiting for every command to complete
+   */
+  static void toggle(SimulatedReceiver.Builder network, Stats stats) {
+    SimulationClock clock = new SimulationClock();
+    CastyPlayer castyPlayer = createPlayer();
+    if (!connect(clock, network.build(clock), castyPlayer) || !play(clock, castyPlayer)) {
+      stats.fail();
+      return;
+    }
+    for (int i = 0; i < TOGGLE_COUNT; i++) {
+      long start = clock.now();
+      CastyCommand command = castyPlayer.togglePlayPause();
+      if (clock.runUntil(isDone(command), SCENARIO_TIMEOUT) && command.isSuccessful()) {
+        stats.add(clock.now() - start);
+      } else {
+        stats.fail();
+      }
+    }
+  }
+
+  /**
+   * Loads media over a network which loses or fails some of the requests, measuring the time
+   * until the load command completes either way
+   */
+  static void lossyLoad(SimulatedReceiver.Builder network, Stats stats) {
+    SimulationClock clock = new SimulationClock();
+    CastyPlayer castyPlayer = createPlayer();
+    if (!connect(clock, network.build(clock), castyPlayer)) {
+      stats.fail();
+      return;
+    }
+    for (int i = 0; i < LOSSY_LOAD_COUNT; i++) {
+      long start = clock.now();
+      CastyCommand command = castyPlayer.loadMedia(createMediaData(i));
+      clock.runUntil(isDone(command), SCENARIO_TIMEOUT);
+      if (command.isSuccessful()) {
+        stats.add(clock.now() - start);
+      } else {
+        stats.fail(clock.now() - start);
+      }
+    }
+  }
+
+  static CastyPlayer createPlayer() {
+    return new CastyPlayer(new CastyPlayer.OnMediaLoadedListener() {
+      @Override public void onMediaLoaded() {
+        //no-op
+      }
+    });
+  }
+
+  static MediaData createMediaData(int index) {
+    return new MediaData.Builder("https://example.com/video" + index + ".mp4")
+        .setStreamType(MediaData.STREAM_TYPE_BUFFERED)
+        .setContentType("video/mp4")
+        .setStreamDuration(3600000L)
+        .setTitle("Title " + index)
+        .addPhotoUrl("https://example.com/image" + index + ".jpg")
+        .build();
+  }
+
+  /**
+   * Starts a session, retrying the failed attempts
+   */
+  static boolean connect(SimulationClock clock, SimulatedReceiver receiver,
+      CastyPlayer castyPlayer) {
+    for (int attempt = 0; attempt < 3; attempt++) {
+      receiver.startSession(castyPlayer);
+      if (clock.runUntil(isConnected(receiver), CONNECT_TIMEOUT)) return true;
+    }
+    return false;
+  }
+
+  static boolean play(SimulationClock clock, CastyPlayer castyPlayer) {
+    castyPlayer.loadMedia(createMediaData(0));
+    return clock.runUntil(isPlaying(castyPlayer), SCENARIO_TIMEOUT);
+  }
+
+  static SimulationClock.Condition isConnected(final SimulatedReceiver receiver) {
+    return new SimulationClock.Condition() {
+      @Override public boolean isMet() {
+        return receiver.isConnected();
+      }
+    };
+  }
+
+  static SimulationClock.Condition isPlaying(final CastyPlayer castyPlayer) {
+    return new SimulationClock.Condition() {
+      @Override public boolean isMet() {
+        return castyPlayer.isPlaying();
+      }
+    };
+  }
+
+  static SimulationClock.Condition isDone(final CastyCommand command) {
+    return new SimulationClock.Condition() {
+      @Override public boolean isMet() {
+        return command.isDone();
+      }
+    };
+  }
+
+  /**
+   * Distribution of the samples of a scenario
+   */
+  static final class Stats {
+    private final String name;
+    private long[] samples = new long[64];
+    private int count;
+    private int attempts;
+    private int failures;
+
+    Stats(String name) {
+      this.name = name;
+    }
+
+    void add(long sample) {
+      if (count == samples.length) samples = Arrays.copyOf(samples, count * 2);
+      samples[count++] = sample;
+      attempts++;
+    }
+
+    void fail() {
+      attempts++;
+      failures++;
+    }
+
+    /**
+     * Counts a failed attempt, whose duration still counts towards the distribution
+     */
+    void fail(long sample) {
+      add(sample);
+      failures++;
+    }
+
+    long percentile(double percentile) {
+      if (count == 0) return -1L;
+      long[] sorted = Arrays.copyOf(samples, count);
+      Arrays.sort(sorted);
+      return sorted[Math.min(count - 1, (int) Math.ceil(percentile * count) - 1)];
+    }
+
+    static String header() {
+      return String.format(Locale.US, "%-22s %8s %8s %8s %8s %10s", "scenario", "p50", "p95",
+          "p99", "max", "failed");
+    }
+
+    @Override public String toString() {
+      return String.format(Locale.US, "%-22s %8d %8d %8d %8d %10s", name, percentile(0.5d),
+          percentile(0.95d), percentile(0.99d), percentile(1d),
+          failures + "/" + attempts);
+    }
+  }
+}
@@ -0,0 +1,110 @@
+package pl.droidsonroids.casty;
+
+import android.app.Activity;
+import android.app.Application;
+import com.google.android.gms.cast.framework.CastContext;
+import com.google.android.gms.cast.framework.CastStateListener;
+import com.google.android.gms.cast.framework.media.RemoteMediaClient;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Recreates an activity with its {@link CastyPlayer} many times over a single connected
+ * {@link RemoteMediaClient}, like rotations during a cast session, and checks that
+ * {@link CastySessionCore} does not keep the players of destroyed activities. The listener counts
+ * of the client have to stay flat, every player has to be collected and the retained heap must
+ * not grow. Exits with status 1 otherwise.
+ */
+public final class SessionCoreSoak {
+  private static final int DEFAULT_CYCLES = 20000;
+  private static final int REPORT_INTERVAL = 1000;
+  private static final long MAX_HEAP_GROWTH = 2 * 1024 * 1024;
+
+  private SessionCoreSoak() {
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    int cycles = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CYCLES;
+    Application application = new Application();
+    RemoteMediaClient remoteMediaClient = new RemoteMediaClient();
+    CastySessionCore core = CastySessionCore.getInstance(new Activity(application));
+    ReferenceQueue<CastyPlayer> collectedPlayers = new ReferenceQueue<>();
+    Set<WeakReference<CastyPlayer>> players = new HashSet<>();
+    long baselineHeap = -1;
+    boolean failed = false;
+
+    System.out.println(String.format(Locale.US, "%8s %10s %10s %10s %8s %8s %10s", "cycle",
+        "callbacks", "progress", "queue", "handles", "players", "heap KiB"));
+    for (int cycle = 1; cycle <= cycles; cycle++) {
+      Activity activity = new Activity(application);
+      CastyPlayer castyPlayer = new CastyPlayer(new CastyPlayer.OnMediaLoadedListener() {
+        @Override public void onMediaLoaded() {
+          //no-op
+        }
+      });
+      players.add(new WeakReference<>(castyPlayer, collectedPlayers));
+      core.attach(activity, null, new CastStateListener() {
+        @Override public void onCastStateChanged(int newState) {
+          //no-op
+        }
+      }, new Runnable() {
+        @Override public void run() {
+          //no-op
+        }
+      }, castyPlayer);
+      castyPlayer.setRemoteMediaClient(remoteMediaClient);
+      castyPlayer.getQueue();
+      castyPlayer.addProgressListener(new RemoteMediaClient.ProgressListener() {
+        @Override public void onProgressUpdated(long progress, long duration) {
+          //no-op
+        }
+      }, 1000L);
+      application.dispatchActivityCreated(activity);
+      application.dispatchActivityResumed(activity);
+      remoteMediaClient.notifyProgressUpdated(cycle, cycles);
+      application.dispatchActivityPaused(activity);
+      application.dispatchActivityDestroyed(activity);
+
+      if (cycle % REPORT_INTERVAL != 0) continue;
+      long heap = usedHeapAfterGc();
+      while (true) {
+        Object collected = collectedPlayers.poll();
+        if (collected == null) break;
+        players.remove(collected);
+      }
+      if (baselineHeap < 0) baselineHeap = heap;
+      int callbackCount = remoteMediaClient.getCallbackCount();
+      int progressListenerCount = remoteMediaClient.getProgressListenerCount();
+      int queueCallbackCount = remoteMediaClient.getMediaQueue().getCallbackCount();
+      System.out.println(String.format(Locale.US, "%8d %10d %10d %10d %8d %8d %10d", cycle,
+          callbackCount, progressListenerCount, queueCallbackCount, core.size(), players.size(),
+          heap / 1024));
+      //the player of the current activity is already released too
+      if (callbackCount != 0 || progressListenerCount != 0 || queueCallbackCount != 0
+          || core.size() != 0 || players.size() > 1 || heap - baselineHeap > MAX_HEAP_GROWTH) {
+        failed = true;
+      }
+    }
+    CastContext castContext = CastyInitializer.getCastContext(application);
+    System.out.println(String.format(Locale.US,
+        "activity callbacks %d, cast state listeners %d, session listeners %d",
+        application.getActivityLifecycleCallbackCount(), castContext.getCastStateListenerCount(),
+        castContext.getSessionManager().getSessionManagerListenerCount()));
+    if (failed) {
+      System.out.println("FAILED: destroyed activities are retained");
+      System.exit(1);
+    }
+  }
+
+  private static long usedHeapAfterGc() throws InterruptedException {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      Thread.sleep(20L);
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
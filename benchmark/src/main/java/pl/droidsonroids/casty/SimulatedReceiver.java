@@ -0,0 +1,524 @@
+package pl.droidsonroids.casty;
+
+import com.google.android.gms.cast.CastStatusCodes;
+import com.google.android.gms.cast.MediaInfo;
+import com.google.android.gms.cast.MediaLoadOptions;
+import com.google.android.gms.cast.MediaQueueItem;
+import com.google.android.gms.cast.MediaStatus;
+import com.google.android.gms.cast.framework.media.RemoteMediaClient;
+import com.google.android.gms.common.api.CommonStatusCodes;
+import com.google.android.gms.common.api.PendingResult;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.json.JSONObject;
+
+/**
+ * Cast receiver simulated in {@link SimulationClock} virtual time, behind the
+ * {@link RemoteMediaClient} seam used by {@link CastyPlayer}. Requests and responses travel over
+ * an in-order channel with configurable latency, jitter, failures and lost messages. The receiver
+ * models buffering, playback position, the end of items and queue advancing, and publishes its
+ * media status after every change, like the Default Media Receiver.
+ */
+public class SimulatedReceiver extends RemoteMediaClient {
+  private final SimulationClock clock;
+  private final Random random;
+  private final long latency;
+  private final long jitter;
+  private final long connectTime;
+  private final long bufferingTime;
+  private final double failureRate;
+  private final double dropRate;
+
+  private final MediaStatus receiverStatus = new MediaStatus();
+  private final List<MediaQueueItem> queue = new ArrayList<>();
+  private int nextItemId = 1;
+  private long positionTime;
+  private int playbackGeneration;
+
+  private long uplinkTime;
+  private long downlinkTime;
+  private long deliveredPositionTime;
+
+  private CastyPlayer castyPlayer;
+  private boolean connected;
+  private int progressListenerCount;
+  private long progressPeriod;
+
+  private int receivedRequests;
+  private int failedRequests;
+  private int droppedRequests;
+  private int statusUpdates;
+
+  private SimulatedReceiver(Builder builder, SimulationClock clock) {
+    this.clock = clock;
+    random = new Random(builder.seed);
+    latency = builder.latency;
+    jitter = builder.jitter;
+    connectTime = builder.connectTime;
+    bufferingTime = builder.bufferingTime;
+    failureRate = builder.failureRate;
+    dropRate = builder.dropRate;
+  }
+
+  /**
+   * Starts a session after the connect time, the session fails to start with the failure rate.
+   * Once started, the receiver is passed to the player, like {@link Casty} does when connected.
+   * Meanwhile the player is connecting, so it buffers the commands.
+   *
+   * @param castyPlayer player which sends the commands
+   */
+  public void startSession(final CastyPlayer castyPlayer) {
+    final boolean fails = random.nextDouble() < failureRate;
+    castyPlayer.setConnecting(true);
+    clock.schedule(connectTime + nextJitter(), new Runnable() {
+      @Override public void run() {
+        if (fails) {
+          castyPlayer.setConnecting(false);
+          return;
+        }
+        connected = true;
+        SimulatedReceiver.this.castyPlayer = castyPlayer;
+        castyPlayer.setRemoteMediaClient(SimulatedReceiver.this);
+      }
+    });
+  }
+
+  /**
+   * Ends the session immediately and stops the playback
+   */
+  public void endSession() {
+    connected = false;
+    playbackGeneration++;
+    receiverStatus.playerState = MediaStatus.PLAYER_STATE_IDLE;
+    receiverStatus.idleReason = MediaStatus.IDLE_REASON_INTERRUPTED;
+    if (castyPlayer != null) castyPlayer.setRemoteMediaClient(null);
+    castyPlayer = null;
+  }
+
+  public boolean isConnected() {
+    return connected;
+  }
+
+  /**
+   * @return number of requests which reached the receiver
+   */
+  public int getReceivedRequestCount() {
+    return receivedRequests;
+  }
+
+  /**
+   * @return number of requests which reached the receiver and failed
+   */
+  public int getFailedRequestCount() {
+    return failedRequests;
+  }
+
+  /**
+   * @return number of requests lost on the way, they end with a timeout on the sender
+   */
+  public int getDroppedRequestCount() {
+    return droppedRequests;
+  }
+
+  /**
+   * @return number of media status messages delivered to the sender
+   */
+  public int getStatusUpdateCount() {
+    return statusUpdates;
+  }
+
+  @Override public PendingResult<MediaChannelResult> load(final MediaInfo mediaInfo,
+      final MediaLoadOptions options) {
+    return send(new ReceiverRequest() {
+      @Override public int handle() {
+        queue.clear();
+        MediaQueueItem item = new MediaQueueItem.Builder(mediaInfo).setItemId(nextItemId++)
+            .setAutoplay(options.getAutoplay())
+            .build();
+        queue.add(item);
+        receiverStatus.queueRepeatMode = MediaStatus.REPEAT_MODE_REPEAT_OFF;
+        startItem(item, options.getPlayPosition(), false);
+        return CommonStatusCodes.SUCCESS;
+      }
+    });
+  }
+
+  @Override public PendingResult<MediaChannelResult> queueLoad(final MediaQueueItem[] items,
+      final int startIndex, final int repeatMode, JSONObject customData) {
+    return send(new ReceiverRequest() {
+      @Override public int handle() {
+        if (startIndex < 0 || startIndex >= items.length) return CastStatusCodes.INVALID_REQUEST;
+        queue.clear();
+        for (MediaQueueItem item : items) {
+          queue.add(new MediaQueueItem.Builder(item).setItemId(nextItemId++).build());
+        }
+        receiverStatus.queueRepeatMode = repeatMode;
+        MediaQueueItem item = queue.get(startIndex);
+        startItem(item, (long) (item.getStartTime() * 1000), false);
+        return CommonStatusCodes.SUCCESS;
+      }
+    });
+  }
+
+  @Override public PendingResult<MediaChannelResult> queueInsertItems(final MediaQueueItem[] items,
+      final int insertBeforeItemId, JSONObject customData) {
+    return send(new ReceiverRequest() {
+      @Override public int handle() {
+        if (queue.isEmpty()) return CastStatusCodes.INVALID_REQUEST;
+        int index = indexOf(insertBeforeItemId);
+        if (index < 0) index = queue.size();
+        for (MediaQueueItem item : items) {
+          queue.add(index++, new MediaQueueItem.Builder(item).setItemId(nextItemId++).build());
+        }
+        return CommonStatusCodes.SUCCESS;
+      }
+    });
+  }
+
+  @Override public PendingResult<MediaChannelResult> play() {
+    return send(new ReceiverRequest() {
+      @Override public int handle() {
+        if (!hasMedia()) return CastStatusCodes.INVALID_REQUEST;
+        syncPosition();
+        receiverStatus.playerState = MediaStatus.PLAYER_STATE_PLAYING;
+        scheduleItemEnd();
+        return CommonStatusCodes.SUCCESS;
+      }
+    });
+  }
+
+  @Override public PendingResult<MediaChannelResult> pause() {
+    return send(new ReceiverRequest() {
+      @Override public int handle() {
+        if (!hasMedia()) return CastStatusCodes.INVALID_REQUEST;
+        syncPosition();
+        playbackGeneration++;
+        receiverStatus.playerState = MediaStatus.PLAYER_STATE_PAUSED;
+        return CommonStatusCodes.SUCCESS;
+      }
+    });
+  }
+
+  @Override public PendingResult<MediaChannelResult> stop() {
+    return send(new ReceiverRequest() {
+      @Override public int handle() {
+        syncPosition();
+        playbackGeneration++;
+        receiverStatus.playerState = MediaStatus.PLAYER_STATE_IDLE;
+        receiverStatus.idleReason = MediaStatus.IDLE_REASON_CANCELED;
+        return CommonStatusCodes.SUCCESS;
+      }
+    });
+  }
+
+  @Override public PendingResult<MediaChannelResult> seek(final long position) {
+    return send(new ReceiverRequest() {
+      @Override public int handle() {
+        if (!hasMedia()) return CastStatusCodes.INVALID_REQUEST;
+        long duration = receiverStatus.mediaInfo.getStreamDuration();
+        receiverStatus.streamPosition =
+            duration > 0 ? Math.min(Math.max(0L, position), duration) : Math.max(0L, position);
+        positionTime = clock.now();
+        scheduleItemEnd();
+        return CommonStatusCodes.SUCCESS;
+      }
+    });
+  }
+
+  /**
+   * Applies the requests without a dedicated model, e.g. volume or tracks, to the receiver status
+   */
+  @Override protected PendingResult<MediaChannelResult> execute(final Request request) {
+    return send(new ReceiverRequest() {
+      @Override public int handle() {
+        request.apply(receiverStatus);
+        return CommonStatusCodes.SUCCESS;
+      }
+    });
+  }
+
+  @Override public boolean addProgressListener(ProgressListener listener, long period) {
+    super.addProgressListener(listener, period);
+    progressListenerCount++;
+    progressPeriod = progressPeriod == 0 ? period : Math.min(progressPeriod, period);
+    if (progressListenerCount == 1) scheduleProgressTick();
+    return true;
+  }
+
+  @Override public void removeProgressListener(ProgressListener listener) {
+    super.removeProgressListener(listener);
+    progressListenerCount = Math.max(0, progressListenerCount - 1);
+    if (progressListenerCount == 0) progressPeriod = 0;
+  }
+
+  private void scheduleProgressTick() {
+    clock.schedule(progressPeriod, new Runnable() {
+      @Override public void run() {
+        if (progressListenerCount == 0) return;
+        MediaStatus status = getMediaStatus();
+        long position = status.streamPosition;
+        if (status.playerState == MediaStatus.PLAYER_STATE_PLAYING) {
+          position += (long) ((clock.now() - deliveredPositionTime) * status.playbackRate);
+        }
+        long duration = status.mediaInfo == null ? MediaInfo.UNKNOWN_DURATION
+            : status.mediaInfo.getStreamDuration();
+        notifyProgressUpdated(duration > 0 ? Math.min(position, duration) : position, duration);
+        scheduleProgressTick();
+      }
+    });
+  }
+
+  private PendingResult<MediaChannelResult> send(final ReceiverRequest request) {
+    final FakePendingResult result = new FakePendingResult();
+    if (random.nextDouble() < dropRate) {
+      droppedRequests++;
+      return result;
+    }
+    final boolean fails = random.nextDouble() < failureRate;
+    uplinkTime = Math.max(uplinkTime, clock.now() + latency + nextJitter());
+    clock.schedule(uplinkTime - clock.now(), new Runnable() {
+      @Override public void run() {
+        receivedRequests++;
+        if (fails) {
+          failedRequests++;
+          respond(result, CommonStatusCodes.NETWORK_ERROR);
+          return;
+        }
+        int statusCode = request.handle();
+        if (statusCode == CommonStatusCodes.SUCCESS) publishStatus();
+        respond(result, statusCode);
+      }
+    });
+    return result;
+  }
+
+  private void respond(final FakePendingResult result, final int statusCode) {
+    deliver(new Runnable() {
+      @Override public void run() {
+        result.setResult(statusCode);
+      }
+    });
+  }
+
+  private void publishStatus() {
+    syncPosition();
+    final MediaStatus snapshot = new MediaStatus();
+    copy(receiverStatus, snapshot);
+    deliver(new Runnable() {
+      @Override public void run() {
+        if (!connected) return;
+        copy(snapshot, getMediaStatus());
+        deliveredPositionTime = clock.now();
+        statusUpdates++;
+        notifyStatusUpdated();
+      }
+    });
+  }
+
+  /**
+   * Sends the message to the sender, messages arrive in the order they were sent
+   */
+  private void deliver(Runnable message) {
+    downlinkTime = Math.max(downlinkTime, clock.now() + latency + nextJitter());
+    clock.schedule(downlinkTime - clock.now(), message);
+  }
+
+  private void startItem(MediaQueueItem item, long position, boolean preloaded) {
+    final int generation = ++playbackGeneration;
+    final boolean autoplay = item.getAutoplay();
+    receiverStatus.mediaInfo = item.getMedia();
+    receiverStatus.currentItemId = item.getItemId();
+    receiverStatus.streamPosition = position;
+    receiverStatus.idleReason = MediaStatus.IDLE_REASON_NONE;
+    receiverStatus.playerState = MediaStatus.PLAYER_STATE_BUFFERING;
+    positionTime = clock.now();
+    clock.schedule(preloaded ? 0L : bufferingTime + nextJitter(), new Runnable() {
+      @Override public void run() {
+        if (generation != playbackGeneration) return;
+        positionTime = clock.now();
+        receiverStatus.playerState =
+            autoplay ? MediaStatus.PLAYER_STATE_PLAYING : MediaStatus.PLAYER_STATE_PAUSED;
+        scheduleItemEnd();
+        publishStatus();
+      }
+    });
+  }
+
+  private void scheduleItemEnd() {
+    if (receiverStatus.playerState != MediaStatus.PLAYER_STATE_PLAYING) return;
+    final int generation = ++playbackGeneration;
+    long duration = receiverStatus.mediaInfo.getStreamDuration();
+    if (duration <= 0) return;
+    long remaining = (long) ((duration - receiverStatus.streamPosition)
+        / receiverStatus.playbackRate);
+    clock.schedule(remaining, new Runnable() {
+      @Override public void run() {
+        if (generation != playbackGeneration) return;
+        syncPosition();
+        MediaQueueItem next = nextItem();
+        if (next != null) {
+          startItem(next, (long) (next.getStartTime() * 1000), next.getPreloadTime() > 0);
+        } else {
+          playbackGeneration++;
+          receiverStatus.playerState = MediaStatus.PLAYER_STATE_IDLE;
+          receiverStatus.idleReason = MediaStatus.IDLE_REASON_FINISHED;
+        }
+        publishStatus();
+      }
+    });
+  }
+
+  private MediaQueueItem nextItem() {
+    int index = indexOf(receiverStatus.currentItemId);
+    if (index < 0) return null;
+    switch (receiverStatus.queueRepeatMode) {
+      case MediaStatus.REPEAT_MODE_REPEAT_SINGLE:
+        return queue.get(index);
+      case MediaStatus.REPEAT_MODE_REPEAT_ALL:
+      case MediaStatus.REPEAT_MODE_REPEAT_ALL_AND_SHUFFLE:
+        return queue.get((index + 1) % queue.size());
+      default:
+        return index + 1 < queue.size() ? queue.get(index + 1) : null;
+    }
+  }
+
+  private int indexOf(int itemId) {
+    for (int i = 0; i < queue.size(); i++) {
+      if (queue.get(i).getItemId() == itemId) return i;
+    }
+    return -1;
+  }
+
+  private boolean hasMedia() {
+    return receiverStatus.mediaInfo != null
+        && receiverStatus.playerState != MediaStatus.PLAYER_STATE_IDLE;
+  }
+
+  private void syncPosition() {
+    long now = clock.now();
+    if (receiverStatus.playerState == MediaStatus.PLAYER_STATE_PLAYING) {
+      receiverStatus.streamPosition += (long) ((now - positionTime) * receiverStatus.playbackRate);
+      long duration = receiverStatus.mediaInfo.getStreamDuration();
+      if (duration > 0) {
+        receiverStatus.streamPosition = Math.min(receiverStatus.streamPosition, duration);
+      }
+    }
+    positionTime = now;
+  }
+
+  private long nextJitter() {
+    return jitter > 0 ? (long) (random.nextDouble() * jitter) : 0L;
+  }
+
+  private static void copy(MediaStatus from, MediaStatus to) {
+    to.mediaInfo = from.mediaInfo;
+    to.playerState = from.playerState;
+    to.idleReason = from.idleReason;
+    to.streamPosition = from.streamPosition;
+    to.playbackRate = from.playbackRate;
+    to.activeTrackIds = from.activeTrackIds == null ? null : from.activeTrackIds.clone();
+    to.streamVolume = from.streamVolume;
+    to.mute = from.mute;
+    to.currentItemId = from.currentItemId;
+    to.queueRepeatMode = from.queueRepeatMode;
+  }
+
+  private interface ReceiverRequest {
+    /**
+     * @return the status code of the response
+     */
+    int handle();
+  }
+
+  public static class Builder {
+    private long latency = 20L;
+    private long jitter = 10L;
+    private long connectTime = 1500L;
+    private long bufferingTime = 500L;
+    private double failureRate;
+    private double dropRate;
+    private long seed = 1L;
+
+    /**
+     * Sets the one-way network latency
+     *
+     * @param latency latency in milliseconds
+     * @return this instance for chain calls
+     */
+    public Builder setLatency(long latency) {
+      this.latency = latency;
+      return this;
+    }
+
+    /**
+     * Sets the maximum random delay added to every message
+     *
+     * @param jitter jitter in milliseconds
+     * @return this instance for chain calls
+     */
+    public Builder setJitter(long jitter) {
+      this.jitter = jitter;
+      return this;
+    }
+
+    /**
+     * Sets how long it takes to start a session
+     *
+     * @param connectTime connect time in milliseconds
+     * @return this instance for chain calls
+     */
+    public Builder setConnectTime(long connectTime) {
+      this.connectTime = connectTime;
+      return this;
+    }
+
+    /**
+     * Sets how long the receiver buffers a loaded item before it plays
+     *
+     * @param bufferingTime buffering time in milliseconds
+     * @return this instance for chain calls
+     */
+    public Builder setBufferingTime(long bufferingTime) {
+      this.bufferingTime = bufferingTime;
+      return this;
+    }
+
+    /**
+     * Sets the probability of a session start or a request failing on the receiver
+     *
+     * @param failureRate probability between 0 and 1
+     * @return this instance for chain calls
+     */
+    public Builder setFailureRate(double failureRate) {
+      this.failureRate = failureRate;
+      return this;
+    }
+
+    /**
+     * Sets the probability of a request being lost, the sender then waits for the timeout
+     *
+     * @param dropRate probability between 0 and 1
+     * @return this instance for chain calls
+     */
+    public Builder setDropRate(double dropRate) {
+      this.dropRate = dropRate;
+      return this;
+    }
+
+    /**
+     * Sets the seed of the jitter and failures, equal seeds give equal runs
+     *
+     * @param seed any number
+     * @return this instance for chain calls
+     */
+    public Builder setSeed(long seed) {
+      this.seed = seed;
+      return this;
+    }
+
+    public SimulatedReceiver build(SimulationClock clock) {
+      return new SimulatedReceiver(this, clock);
+    }
+  }
+}
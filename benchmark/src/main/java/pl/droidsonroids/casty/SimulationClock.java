@@ -0,0 +1,100 @@
+package pl.droidsonroids.casty;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import java.util.PriorityQueue;
+
+/**
+ * Virtual time of a simulation. Scheduled events and {@link Handler} delayed runnables, e.g.
+ * command timeouts, run in time order and {@link SystemClock} jumps straight to the next one, so
+ * a scenario lasting minutes runs in microseconds and gives the same timings on every run.
+ */
+public final class SimulationClock {
+  private final PriorityQueue<Event> events = new PriorityQueue<>();
+  private long sequence;
+
+  /**
+   * Takes over {@link SystemClock} and drops runnables left over by a previous simulation
+   */
+  public SimulationClock() {
+    SystemClock.setManualTime(0L);
+    Handler.clearDelayed();
+  }
+
+  public long now() {
+    return SystemClock.elapsedRealtime();
+  }
+
+  /**
+   * Runs the event after the delay
+   *
+   * @param delay delay in milliseconds
+   * @param event the event
+   */
+  public void schedule(long delay, Runnable event) {
+    events.add(new Event(now() + Math.max(0L, delay), sequence++, event));
+  }
+
+  /**
+   * Runs the events until the condition is met
+   *
+   * @param condition checked after each event
+   * @param timeout maximum duration in milliseconds
+   * @return true if the condition was met, false if the timeout elapsed first
+   */
+  public boolean runUntil(Condition condition, long timeout) {
+    long deadline = now() + timeout;
+    while (!condition.isMet()) {
+      long next = Math.min(events.isEmpty() ? Long.MAX_VALUE : events.peek().time,
+          Handler.nextDueTime());
+      if (next > deadline) {
+        SystemClock.advance(deadline - now());
+        return false;
+      }
+      runAt(next);
+    }
+    return true;
+  }
+
+  /**
+   * Runs all the events scheduled within the duration
+   *
+   * @param duration duration in milliseconds
+   */
+  public void runFor(long duration) {
+    runUntil(new Condition() {
+      @Override public boolean isMet() {
+        return false;
+      }
+    }, duration);
+  }
+
+  private void runAt(long time) {
+    if (time > now()) SystemClock.advance(time - now());
+    while (!events.isEmpty() && events.peek().time <= time) {
+      events.poll().event.run();
+    }
+    Handler.runDue();
+  }
+
+  public interface Condition {
+    boolean isMet();
+  }
+
+  private static final class Event implements Comparable<Event> {
+    final long time;
+    final long sequence;
+    final Runnable event;
+
+    Event(long time, long sequence, Runnable event) {
+      this.time = time;
+      this.sequence = sequence;
+      this.event = event;
+    }
+
+    @Override public int compareTo(Event other) {
+      if (time != other.time) return time < other.time ? -1 : 1;
+      return sequence < other.sequence ? -1 : sequence == other.sequence ? 0 : 1;
+    }
+  }
+}
@@ -0,0 +1,25 @@
+package timber.log;
+
+/**
+ * JVM stand-in for Timber without any planted tree, like a release build
+ */
+public final class Timber {
+  private Timber() {
+  }
+
+  public static int treeCount() {
+    return 0;
+  }
+
+  public static void d(String message, Object... args) {
+    //no tree planted
+  }
+
+  public static void w(String message, Object... args) {
+    //no tree planted
+  }
+
+  public static void e(Throwable throwable, String message, Object... args) {
+    //no tree planted
+  }
+}
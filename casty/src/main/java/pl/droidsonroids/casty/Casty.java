@@ -4,14 +4,11 @@ import android.app.Activity;
 import android.app.Application;
 import android.content.ComponentName;
 import android.content.Intent;
-import android.os.Bundle;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
-import android.view.View;
-import android.view.ViewGroup;
-import android.widget.LinearLayout;
 
+import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.UiThread;
@@ -29,13 +26,9 @@ import com.google.android.gms.cast.framework.CastStateListener;
 import com.google.android.gms.cast.framework.IntroductoryOverlay;
 import com.google.android.gms.cast.framework.SessionManagerListener;
 import com.google.android.gms.cast.framework.media.RemoteMediaClient;
-import com.google.android.gms.common.ConnectionResult;
-import com.google.android.gms.common.GoogleApiAvailability;
 
 import java.lang.ref.WeakReference;
 
-import timber.log.Timber;
-
 /**
  * Core class of Casty. It manages buttons/widgets and gives access to the media player.
  */
@@ -43,6 +36,7 @@ public class Casty implements CastyPlayer.OnMediaLoadedListener {
   private final static String TAG = "Casty";
   static String receiverId = CastMediaControlIntent.DEFAULT_MEDIA_RECEIVER_APPLICATION_ID;
   static CastOptions customCastOptions;
+  static boolean artworkPrefetchEnabled;
 
   private SessionManagerListener<CastSession> sessionManagerListener;
     private WeakReference<OnConnectChangeListener> onConnectChangeListener;
@@ -52,6 +46,9 @@ public class Casty implements CastyPlayer.OnMediaLoadedListener {
 
   private CastSession castSession;
   private CastyPlayer castyPlayer;
+  private CastContext castContext;
+  private CastySessionCore sessionCore;
+  private CastySessionCore.Handle sessionHandle;
   private WeakReference<Activity> activity;
   private IntroductoryOverlay introductionOverlay;
 
@@ -76,6 +73,28 @@ public class Casty implements CastyPlayer.OnMediaLoadedListener {
     Casty.customCastOptions = castOptions;
   }
 
+  /**
+   * Enables {@link android.os.Trace} sections around Casty work done on the main thread and async
+   * slices spanning remote operations, e.g. from sending a command until its result, so they show
+   * up in Perfetto and systrace. Disabled by default.
+   *
+   * @param tracingEnabled true to emit trace sections
+   */
+  public static void setTracingEnabled(boolean tracingEnabled) {
+    CastyTrace.setEnabled(tracingEnabled);
+  }
+
+  /**
+   * Enables prefetching of the artwork of loaded and queued media into {@link CastyImageCache}, for
+   * the app's own UI. The Cast SDK widgets download the artwork themselves and don't read this
+   * cache. Disabled by default. Applies to Casty objects created afterwards.
+   *
+   * @param artworkPrefetchEnabled true to prefetch the artwork
+   */
+  public static void setArtworkPrefetchEnabled(boolean artworkPrefetchEnabled) {
+    Casty.artworkPrefetchEnabled = artworkPrefetchEnabled;
+  }
+
   /**
    * Creates the Casty object.
    *
@@ -84,13 +103,16 @@ public class Casty implements CastyPlayer.OnMediaLoadedListener {
    */
   public static Casty create(@NonNull Activity activity,
       final RemoteMediaClient.ProgressListener progressListener) {
-    int playServicesState =
-        GoogleApiAvailability.getInstance().isGooglePlayServicesAvailable(activity);
-    if (playServicesState == ConnectionResult.SUCCESS) {
-      return new Casty(activity, progressListener);
-    } else {
-      Log.w(Casty.TAG, "Google Play services not found on a device, Casty won't work.");
-      return new CastyNoOp();
+    boolean traced = CastyTrace.begin("Casty.create");
+    try {
+      if (CastyInitializer.isPlayServicesAvailable(activity)) {
+        return new Casty(activity, progressListener);
+      } else {
+        Log.w(Casty.TAG, "Google Play services not found on a device, Casty won't work.");
+        return new CastyNoOp();
+      }
+    } finally {
+      CastyTrace.end(traced);
     }
   }
 
@@ -103,16 +125,65 @@ public class Casty implements CastyPlayer.OnMediaLoadedListener {
   public static Casty create(@NonNull Activity activity,
       final OnConnectChangeListener onConnectChangeListener,
       final RemoteMediaClient.ProgressListener progressListener) {
-    int playServicesState =
-        GoogleApiAvailability.getInstance().isGooglePlayServicesAvailable(activity);
-    if (playServicesState == ConnectionResult.SUCCESS) {
-      return new Casty(activity, progressListener, onConnectChangeListener);
-    } else {
-      Log.w(Casty.TAG, "Google Play services not found on a device, Casty won't work.");
-      return new CastyNoOp();
+    boolean traced = CastyTrace.begin("Casty.create");
+    try {
+      if (CastyInitializer.isPlayServicesAvailable(activity)) {
+        return new Casty(activity, progressListener, onConnectChangeListener);
+      } else {
+        Log.w(Casty.TAG, "Google Play services not found on a device, Casty won't work.");
+        return new CastyNoOp();
+      }
+    } finally {
+      CastyTrace.end(traced);
     }
   }
 
+  /**
+   * Creates the Casty object without blocking the caller. Google Play services is checked on a
+   * background thread and the result, together with the {@link CastContext}, is cached for the
+   * whole process, so only the first call pays for it. Calls made while the initialization is in
+   * progress are completed in order once it finishes. The callback is always posted to the main
+   * thread, so it never runs before this method returns, and is not invoked if the activity is
+   * finishing by then.
+   *
+   * @param activity {@link Activity} in which Casty object is created
+   * @param onCastyCreatedListener callback receiving the Casty object on the main thread
+   */
+  @MainThread public static void createAsync(@NonNull Activity activity,
+      final RemoteMediaClient.ProgressListener progressListener,
+      @NonNull final OnCastyCreatedListener onCastyCreatedListener) {
+    final WeakReference<Activity> activityReference = new WeakReference<>(activity);
+    CastyInitializer.initializeAsync(activity, new Runnable() {
+      @Override public void run() {
+        Activity activity = activityReference.get();
+        if (activity == null || activity.isFinishing()) return;
+        onCastyCreatedListener.onCastyCreated(create(activity, progressListener));
+      }
+    });
+  }
+
+  /**
+   * Creates the Casty object without blocking the caller.
+   *
+   * @param activity {@link Activity} in which Casty object is created
+   * @param onCastyCreatedListener callback receiving the Casty object on the main thread
+   * @see #createAsync(Activity, RemoteMediaClient.ProgressListener, OnCastyCreatedListener)
+   */
+  @MainThread public static void createAsync(@NonNull Activity activity,
+      final OnConnectChangeListener onConnectChangeListener,
+      final RemoteMediaClient.ProgressListener progressListener,
+      @NonNull final OnCastyCreatedListener onCastyCreatedListener) {
+    final WeakReference<Activity> activityReference = new WeakReference<>(activity);
+    CastyInitializer.initializeAsync(activity, new Runnable() {
+      @Override public void run() {
+        Activity activity = activityReference.get();
+        if (activity == null || activity.isFinishing()) return;
+        onCastyCreatedListener.onCastyCreated(
+            create(activity, onConnectChangeListener, progressListener));
+      }
+    });
+  }
+
   //Needed for NoOp instance
   Casty() {
     //no-op
@@ -121,6 +192,7 @@ public class Casty implements CastyPlayer.OnMediaLoadedListener {
   private Casty(@NonNull Activity activity,
       final RemoteMediaClient.ProgressListener progressListener) {
     this.activity = new WeakReference(activity);
+    castContext = CastyInitializer.getCastContext(activity);
       sessionManagerListener = createSessionManagerListener();
       this.mMediaProgressListener = new WeakReference<RemoteMediaClient.ProgressListener>(progressListener);
     //mMediaProgressListener = new RemoteMediaClient.ProgressListener() {
@@ -130,16 +202,16 @@ public class Casty implements CastyPlayer.OnMediaLoadedListener {
     //    }
     //};
     castyPlayer = new CastyPlayer(this);
-    activity.getApplication().registerActivityLifecycleCallbacks(createActivityCallbacks());
-    CastContext.getSharedInstance(activity).addCastStateListener(createCastStateListener());
+    if (artworkPrefetchEnabled) castyPlayer.setImageCache(CastyImageCache.getInstance(activity));
+    attachToSessionCore(activity);
     handleCurrentCastSession();
-    registerSessionManagerListener();
   }
 
   private Casty(@NonNull final Activity activity,
       final RemoteMediaClient.ProgressListener progressListener,
       final OnConnectChangeListener onConnectChangeListener) {
       this.activity = new WeakReference(activity);
+      castContext = CastyInitializer.getCastContext(activity);
       sessionManagerListener = createSessionManagerListener();
       this.mMediaProgressListener = new WeakReference<RemoteMediaClient.ProgressListener>(progressListener);
       this.onConnectChangeListener = new WeakReference<OnConnectChangeListener>(onConnectChangeListener);
@@ -150,10 +222,21 @@ public class Casty implements CastyPlayer.OnMediaLoadedListener {
       //    }
       //};
       castyPlayer = new CastyPlayer(this);
-      activity.getApplication().registerActivityLifecycleCallbacks(createActivityCallbacks());
-      CastContext.getSharedInstance(activity).addCastStateListener(createCastStateListener());
+      if (artworkPrefetchEnabled) {
+        castyPlayer.setImageCache(CastyImageCache.getInstance(activity));
+      }
+      attachToSessionCore(activity);
       handleCurrentCastSession();
-    registerSessionManagerListener();
+  }
+
+  private void attachToSessionCore(Activity activity) {
+    sessionCore = CastySessionCore.getInstance(activity);
+    sessionHandle = sessionCore.attach(activity, sessionManagerListener,
+        createCastStateListener(), new Runnable() {
+          @Override public void run() {
+            handleCurrentCastSession();
+          }
+        }, castyPlayer);
   }
 
   /**
@@ -166,9 +249,7 @@ public class Casty implements CastyPlayer.OnMediaLoadedListener {
   }
 
   public boolean hasMedia() {
-    return castyPlayer != null && (castyPlayer.isBuffering()
-        || castyPlayer.isPlaying()
-        || castyPlayer.isPaused());
+    return castyPlayer != null && castyPlayer.getPlayerState().hasMedia();
   }
 
   /**
@@ -187,10 +268,12 @@ public class Casty implements CastyPlayer.OnMediaLoadedListener {
    * @param menu Menu in which MenuItem should be added
    */
   @UiThread public void addMediaRouteMenuItem(@NonNull Menu menu) {
+    boolean traced = CastyTrace.begin("Casty.addMediaRouteMenuItem");
     activity.get().getMenuInflater().inflate(R.menu.casty_discovery, menu);
     setUpMediaRouteMenuItem(menu);
     MenuItem menuItem = menu.findItem(R.id.casty_media_route_menu_item);
     introductionOverlay = createIntroductionOverlay(menuItem);
+    CastyTrace.end(traced);
   }
 
   /**
@@ -200,7 +283,9 @@ public class Casty implements CastyPlayer.OnMediaLoadedListener {
    * @param mediaRouteButton Button to be set up
    */
   @UiThread public void setUpMediaRouteButton(@NonNull MediaRouteButton mediaRouteButton) {
+    boolean traced = CastyTrace.begin("Casty.setUpMediaRouteButton");
     CastButtonFactory.setUpMediaRouteButton(activity.get(), mediaRouteButton);
+    CastyTrace.end(traced);
     //introductionOverlay = createIntroductionOverlay(mediaRouteButton);
   }
 
@@ -212,7 +297,9 @@ public class Casty implements CastyPlayer.OnMediaLoadedListener {
    */
   @UiThread public static void setUpMediaRouteButton(@NonNull Activity activity,
       @NonNull MediaRouteButton mediaRouteButton) {
+    boolean traced = CastyTrace.begin("Casty.setUpMediaRouteButton");
     CastButtonFactory.setUpMediaRouteButton(activity, mediaRouteButton);
+    CastyTrace.end(traced);
     //introductionOverlay = createIntroductionOverlay(mediaRouteButton);
   }
 
@@ -228,57 +315,27 @@ public class Casty implements CastyPlayer.OnMediaLoadedListener {
   }
 
   /**
-   * Adds the Mini Controller at the bottom of Activity's layout
+   * Adds the Mini Controller at the bottom of Activity's layout. Nothing is inflated until a
+   * Google Cast device is connected and the Mini Controller is released when it disconnects.
    * Must be run on UiThread.
    */
   @UiThread public void addMiniController() {
     Activity activity = this.activity.get();
     if (activity == null) return;
-    ViewGroup contentView = (ViewGroup) activity.findViewById(android.R.id.content);
-    View rootView = contentView.getChildAt(0);
-    LinearLayout linearLayout = new LinearLayout(activity);
-    LinearLayout.LayoutParams linearLayoutParams =
-            new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
-                    ViewGroup.LayoutParams.MATCH_PARENT);
-    linearLayout.setOrientation(LinearLayout.VERTICAL);
-    linearLayout.setLayoutParams(linearLayoutParams);
-
-    contentView.removeView(rootView);
-
-    ViewGroup.LayoutParams oldRootParams = rootView.getLayoutParams();
-    LinearLayout.LayoutParams rootParams =
-        new LinearLayout.LayoutParams(oldRootParams.width, 0, 1f);
-    rootView.setLayoutParams(rootParams);
-
-    linearLayout.addView(rootView);
-    activity.getLayoutInflater().inflate(R.layout.mini_controller, linearLayout, true);
-    activity.setContentView(linearLayout);
+    boolean traced = CastyTrace.begin("Casty.addMiniController");
+    LazyMiniController.install(activity);
+    CastyTrace.end(traced);
   }
 
   /**
-   * Adds the Mini Controller at the bottom of Activity's layout
+   * Adds the Mini Controller at the bottom of Activity's layout. Nothing is inflated until a
+   * Google Cast device is connected and the Mini Controller is released when it disconnects.
    * Must be run on UiThread.
    */
   @UiThread public static void addMiniController(Activity activity) {
-    ViewGroup contentView = (ViewGroup) activity.findViewById(android.R.id.content);
-    View rootView = contentView.getChildAt(0);
-    LinearLayout linearLayout = new LinearLayout(activity);
-    LinearLayout.LayoutParams linearLayoutParams =
-        new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
-            ViewGroup.LayoutParams.MATCH_PARENT);
-    linearLayout.setOrientation(LinearLayout.VERTICAL);
-    linearLayout.setLayoutParams(linearLayoutParams);
-
-    contentView.removeView(rootView);
-
-    ViewGroup.LayoutParams oldRootParams = rootView.getLayoutParams();
-    LinearLayout.LayoutParams rootParams =
-        new LinearLayout.LayoutParams(oldRootParams.width, 0, 1f);
-    rootView.setLayoutParams(rootParams);
-
-    linearLayout.addView(rootView);
-    activity.getLayoutInflater().inflate(R.layout.mini_controller, linearLayout, true);
-    activity.setContentView(linearLayout);
+    boolean traced = CastyTrace.begin("Casty.addMiniController");
+    LazyMiniController.install(activity);
+    CastyTrace.end(traced);
   }
 
   /**
@@ -313,7 +370,9 @@ public class Casty implements CastyPlayer.OnMediaLoadedListener {
   @NonNull private CastStateListener createCastStateListener() {
     return new CastStateListener() {
       @Override public void onCastStateChanged(int state) {
-        Timber.d("onCastStateChanged:[%s]", getReadableState(state));
+        if (CastyLog.isLoggable()) {
+          CastyLog.d("onCastStateChanged:[%s]", getReadableState(state));
+        }
         if (state != CastState.NO_DEVICES_AVAILABLE && introductionOverlay != null) {
           showIntroductionOverlay();
         }
@@ -328,51 +387,69 @@ public class Casty implements CastyPlayer.OnMediaLoadedListener {
   private SessionManagerListener<CastSession> createSessionManagerListener() {
     return new SessionManagerListener<CastSession>() {
       @Override public void onSessionStarted(CastSession castSession, String sessionId) {
-        Timber.d("onSessionStarted(), castSession:[%s], sessionId:[%s]", castSession, sessionId);
+        if (CastyLog.isLoggable()) {
+          CastyLog.d("onSessionStarted(), castSession:[%s], sessionId:[%s]", castSession,
+              sessionId);
+        }
         activity.get().invalidateOptionsMenu();
         onConnected(castSession);
       }
 
       @Override public void onSessionEnded(CastSession castSession, int error) {
-        Timber.d("onSessionEnded(), castSession:[%s], error:[%s]", castSession, error);
+        if (CastyLog.isLoggable()) {
+          CastyLog.d("onSessionEnded(), castSession:[%s], error:[%s]", castSession, error);
+        }
         activity.get().invalidateOptionsMenu();
         onDisconnected(error);
       }
 
       @Override public void onSessionResumed(CastSession castSession, boolean wasSuspended) {
-        Timber.d("onSessionResumed(), castSession");
+        CastyLog.d("onSessionResumed(), castSession");
         activity.get().invalidateOptionsMenu();
         onConnected(castSession);
       }
 
       @Override public void onSessionStarting(CastSession castSession) {
-        Timber.d("onSessionStarting(), castSession:[%s]", castSession);
+        if (CastyLog.isLoggable()) {
+          CastyLog.d("onSessionStarting(), castSession:[%s]", castSession);
+        }
+        castyPlayer.setConnecting(true);
           if (onConnectChangeListener != null) onConnectChangeListener.get().onConnecting();
 
         //no-op
       }
 
       @Override public void onSessionStartFailed(CastSession castSession, int error) {
-        Timber.d("onSessionStartFailed(), castSession:[%s], error:[%s]", castSession, error);
+        if (CastyLog.isLoggable()) {
+          CastyLog.d("onSessionStartFailed(), castSession:[%s], error:[%s]", castSession, error);
+        }
+        castyPlayer.setConnecting(false);
           if (onConnectChangeListener != null) onConnectChangeListener.get().onStartFailed(error);
 
         //no-op
       }
 
       @Override public void onSessionEnding(CastSession castSession) {
-        Timber.d("onSessionEnding(), castSession:[%s]", castSession);
+        if (CastyLog.isLoggable()) {
+          CastyLog.d("onSessionEnding(), castSession:[%s]", castSession);
+        }
 
         //no-op
       }
 
       @Override public void onSessionResuming(CastSession castSession, String sessionId) {
-        Timber.d("onSessionResuming(), castSession:[%s], sessionId:[%s]", castSession, sessionId);
-
-        //no-op
+        if (CastyLog.isLoggable()) {
+          CastyLog.d("onSessionResuming(), castSession:[%s], sessionId:[%s]", castSession,
+              sessionId);
+        }
+        castyPlayer.setConnecting(true);
       }
 
       @Override public void onSessionResumeFailed(CastSession castSession, int error) {
-        Timber.d("onSessionResumeFailed(), castSession:[%s], error:[%s]", castSession, error);
+        if (CastyLog.isLoggable()) {
+          CastyLog.d("onSessionResumeFailed(), castSession:[%s], error:[%s]", castSession, error);
+        }
+        castyPlayer.setConnecting(false);
 
           if (onConnectChangeListener != null) onConnectChangeListener.get().onStartFailed(error);
 
@@ -380,7 +457,9 @@ public class Casty implements CastyPlayer.OnMediaLoadedListener {
       }
 
       @Override public void onSessionSuspended(CastSession castSession, int error) {
-        Timber.d("onSessionSuspended(), castSession:[%s], error:[%s]", castSession, error);
+        if (CastyLog.isLoggable()) {
+          CastyLog.d("onSessionSuspended(), castSession:[%s], error:[%s]", castSession, error);
+        }
 
         //no-op
       }
@@ -388,9 +467,11 @@ public class Casty implements CastyPlayer.OnMediaLoadedListener {
   }
 
   private void onConnected(CastSession castSession) {
-    Timber.d(
-        "onConnected(), castSession:[%s], onConnectChangeListener:[%s], onCastSessionUpdatedListener:[%s]",
-        castSession, onConnectChangeListener, onCastSessionUpdatedListener);
+    if (CastyLog.isLoggable()) {
+      CastyLog.d(
+          "onConnected(), castSession:[%s], onConnectChangeListener:[%s], onCastSessionUpdatedListener:[%s]",
+          castSession, onConnectChangeListener, onCastSessionUpdatedListener);
+    }
     this.castSession = castSession;
     castyPlayer.setRemoteMediaClient(castSession.getRemoteMediaClient());
 
@@ -403,76 +484,39 @@ public class Casty implements CastyPlayer.OnMediaLoadedListener {
   }
 
   public void registerProgressListener() {
-    Timber.d("registerProgressListener(), mProgressListenerPeriod:[%s], castSession:[%s]",
-        mProgressListenerPeriod, castSession);
-    if (mProgressListenerPeriod > 0
-            && castSession != null
-            && mMediaProgressListener.get() != null
-            && castSession.getRemoteMediaClient() != null) {
-        castSession.getRemoteMediaClient()
-                .addProgressListener(mMediaProgressListener.get(), mProgressListenerPeriod);
+    if (CastyLog.isLoggable()) {
+      CastyLog.d("registerProgressListener(), mProgressListenerPeriod:[%s], castSession:[%s]",
+          mProgressListenerPeriod, castSession);
+    }
+    RemoteMediaClient.ProgressListener progressListener = mMediaProgressListener.get();
+    if (mProgressListenerPeriod > 0 && progressListener != null) {
+      castyPlayer.addProgressListener(progressListener, mProgressListenerPeriod);
     }
   }
 
   public void unregisterProgressListener() {
-    Timber.d("unregisterProgressListener(), mProgressListenerPeriod:[%s], castSession:[%s]",
-        mProgressListenerPeriod, castSession);
-
-    if (mProgressListenerPeriod > 0
-        && castSession != null
-        && castSession.getRemoteMediaClient() != null) {
-        this.castSession.getRemoteMediaClient().removeProgressListener(mMediaProgressListener.get());
+    if (CastyLog.isLoggable()) {
+      CastyLog.d("unregisterProgressListener(), mProgressListenerPeriod:[%s], castSession:[%s]",
+          mProgressListenerPeriod, castSession);
     }
+    castyPlayer.removeProgressListener(mMediaProgressListener.get());
   }
 
   private void onDisconnected(final int error) {
-    Timber.d("onDisconnected(), error:[%s]", CastStatusCodes.getStatusCodeString(error));
+    if (CastyLog.isLoggable()) {
+      CastyLog.d("onDisconnected(), error:[%s]", CastStatusCodes.getStatusCodeString(error));
+    }
     unregisterProgressListener();
 
     this.castSession = null;
+    castyPlayer.setConnecting(false);
+    castyPlayer.setRemoteMediaClient(null);
       if (onConnectChangeListener != null) onConnectChangeListener.get().onDisconnected(error);
       if (onCastSessionUpdatedListener != null) {
           onCastSessionUpdatedListener.onCastSessionUpdated(null);
       }
   }
 
-  private Application.ActivityLifecycleCallbacks createActivityCallbacks() {
-    return new Application.ActivityLifecycleCallbacks() {
-      @Override public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
-        //no-op
-      }
-
-      @Override public void onActivityStarted(Activity activity) {
-        //no-op
-      }
-
-      @Override public void onActivityResumed(Activity activity) {
-        if (Casty.this.activity.get() == activity) {
-          handleCurrentCastSession();
-          registerSessionManagerListener();
-        }
-      }
-
-      @Override public void onActivityPaused(Activity activity) {
-        if (Casty.this.activity.get() == activity) unregisterSessionManagerListener();
-      }
-
-      @Override public void onActivityStopped(Activity activity) {
-        //no-op
-      }
-
-      @Override public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
-        //no-op
-      }
-
-      @Override public void onActivityDestroyed(Activity activity) {
-        if (Casty.this.activity.get() == activity) {
-          activity.getApplication().unregisterActivityLifecycleCallbacks(this);
-        }
-      }
-    };
-  }
-
   private IntroductoryOverlay createIntroductionOverlay(MenuItem menuItem) {
     return new IntroductoryOverlay.Builder(activity.get(), menuItem).setTitleText(
             R.string.casty_introduction_text).setSingleTime().build();
@@ -488,8 +532,7 @@ public class Casty implements CastyPlayer.OnMediaLoadedListener {
     return CastContext.getSharedInstance(context)?.sessionManager?.currentCastSession?.remoteMediaClient?.mediaInfo
 }*/
     try {
-      return CastContext.getSharedInstance(activity.get())
-              .getSessionManager()
+      return castContext.getSessionManager()
               .getCurrentCastSession()
               .getRemoteMediaClient()
               .getMediaInfo();
@@ -498,21 +541,13 @@ public class Casty implements CastyPlayer.OnMediaLoadedListener {
     }
   }
 
-  private void registerSessionManagerListener() {
-    CastContext.getSharedInstance(activity.get())
-        .getSessionManager()
-        .addSessionManagerListener(sessionManagerListener, CastSession.class);
-  }
-
-  private void unregisterSessionManagerListener() {
-    CastContext.getSharedInstance(activity.get())
-        .getSessionManager()
-        .removeSessionManagerListener(sessionManagerListener, CastSession.class);
-  }
-
   private void handleCurrentCastSession() {
-    CastSession newCastSession =
-            CastContext.getSharedInstance(activity.get()).getSessionManager().getCurrentCastSession();
+    boolean traced = CastyTrace.begin("Casty.handleCurrentCastSession");
+    CastSession newCastSession = castContext.getSessionManager().getCurrentCastSession();
+    //the session may have failed to start while the activity was paused
+    if (newCastSession == null && castContext.getCastState() != CastState.CONNECTING) {
+      castyPlayer.setConnecting(false);
+    }
     if (castSession == null) {
       if (newCastSession != null) {
         onConnected(newCastSession);
@@ -524,10 +559,11 @@ public class Casty implements CastyPlayer.OnMediaLoadedListener {
         onConnected(newCastSession);
       }
     }
+    CastyTrace.end(traced);
   }
 
   @Override public void onMediaLoaded() {
-    Timber.d("onMediaLoaded()");
+    CastyLog.d("onMediaLoaded()");
     //startExpandedControlsActivity();
       onConnectChangeListener.get().onMediaLoaded();
   }
@@ -535,8 +571,7 @@ public class Casty implements CastyPlayer.OnMediaLoadedListener {
   public void startExpandedControlsActivity() {
     Intent intent = new Intent();
     intent.setComponent(new ComponentName(activity.get().getPackageName(),
-            CastContext.getSharedInstance(activity.get())
-                    .getCastOptions()
+            castContext.getCastOptions()
                     .getCastMediaOptions()
                     .getExpandedControllerActivityClassName()));
     //Intent intent = new Intent(activity, CastContext.getSharedInstance(activity).getCastOptions().getCastMediaOptions().getExpandedControllerActivityClassName());
@@ -556,11 +591,16 @@ public class Casty implements CastyPlayer.OnMediaLoadedListener {
     void onMediaLoaded();
   }
 
+  public interface OnCastyCreatedListener {
+    void onCastyCreated(@NonNull Casty casty);
+  }
+
   public interface OnCastSessionUpdatedListener {
     void onCastSessionUpdated(CastSession castSession);
   }
 
   public void release() {
+      if (sessionCore != null) sessionCore.detach(sessionHandle);
       activity.clear();
       mMediaProgressListener.clear();
       onConnectChangeListener.clear();
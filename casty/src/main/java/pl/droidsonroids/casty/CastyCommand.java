@@ -0,0 +1,211 @@
+package pl.droidsonroids.casty;
+
+import android.os.SystemClock;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.google.android.gms.cast.CastStatusCodes;
+import com.google.android.gms.cast.framework.media.RemoteMediaClient;
+import com.google.android.gms.common.api.CommonStatusCodes;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.ResultCallback;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Completion handle of a command sent by {@link CastyPlayer}. Status codes are the ones used by
+ * {@link CastStatusCodes}.
+ */
+@MainThread
+public final class CastyCommand implements ResultCallback<RemoteMediaClient.MediaChannelResult> {
+  /**
+   * Status code of a command which has not completed yet
+   */
+  public static final int STATUS_PENDING = Integer.MIN_VALUE;
+  /**
+   * Status code of a command which was not sent because there is no connected device
+   */
+  public static final int STATUS_NOT_CONNECTED = CommonStatusCodes.API_NOT_CONNECTED;
+  /**
+   * Status code of a command which was not sent because the current player state does not allow it
+   */
+  public static final int STATUS_INVALID_REQUEST = CastStatusCodes.INVALID_REQUEST;
+
+  private final String name;
+  private final long sendTime;
+  private PendingResult<RemoteMediaClient.MediaChannelResult> pendingResult;
+  private OnCompleteListener onCompleteListener;
+  private int statusCode = STATUS_PENDING;
+  private long latency = -1;
+  private String traceSectionName;
+  private int traceCookie;
+  private boolean recorded;
+  private boolean sent;
+
+  private CastyCommand(String name) {
+    this.name = name;
+    sendTime = SystemClock.elapsedRealtime();
+  }
+
+  static CastyCommand send(@NonNull String name,
+      @Nullable PendingResult<RemoteMediaClient.MediaChannelResult> pendingResult,
+      long timeout) {
+    CastyCommand command = new CastyCommand(name);
+    if (pendingResult == null) {
+      command.complete(CommonStatusCodes.ERROR);
+      return command;
+    }
+    command.pendingResult = pendingResult;
+    command.recorded = true;
+    command.sent = true;
+    CastyFlightRecorder.getInstance()
+        .record(CastyFlightRecorder.COMMAND_SENT, name, CommonStatusCodes.SUCCESS, timeout);
+    command.beginTrace();
+    if (timeout > 0) {
+      pendingResult.setResultCallback(command, timeout, TimeUnit.MILLISECONDS);
+    } else {
+      pendingResult.setResultCallback(command);
+    }
+    return command;
+  }
+
+  static CastyCommand pending(@NonNull String name) {
+    return new CastyCommand(name);
+  }
+
+  static CastyCommand failed(@NonNull String name, int statusCode) {
+    CastyCommand command = new CastyCommand(name);
+    command.complete(statusCode);
+    return command;
+  }
+
+  @Override public void onResult(@NonNull RemoteMediaClient.MediaChannelResult result) {
+    if (isDone()) return;
+    int statusCode = result.getStatus().getStatusCode();
+    complete(statusCode);
+    //the latency of a timeout or cancellation is not a round trip, it would skew the histogram
+    if (statusCode == CommonStatusCodes.TIMEOUT) {
+      CastyMetrics.getInstance().recordCommandTimeout(name);
+    } else if (statusCode == CommonStatusCodes.CANCELED) {
+      CastyMetrics.getInstance().recordCommandCancellation(name);
+    } else {
+      CastyMetrics.getInstance().recordCommandRoundTrip(name, latency);
+    }
+  }
+
+  private void beginTrace() {
+    if (!CastyTrace.isAsyncEnabled()) return;
+    traceSectionName = "Casty " + name;
+    traceCookie = CastyTrace.beginAsync(traceSectionName);
+  }
+
+  long getSendTime() {
+    return sendTime;
+  }
+
+  void complete(int statusCode) {
+    if (isDone()) return;
+    this.statusCode = statusCode;
+    latency = SystemClock.elapsedRealtime() - sendTime;
+    pendingResult = null;
+    if (traceSectionName != null) CastyTrace.endAsync(traceSectionName, traceCookie);
+    if (recorded) {
+      CastyFlightRecorder.getInstance().recordCommandCompleted(name, statusCode, latency);
+    }
+    if (onCompleteListener != null) onCompleteListener.onComplete(this);
+  }
+
+  /**
+   * Marks the command as handed to the receiver, e.g. when a command sent on its behalf was
+   * dispatched
+   */
+  void markSent() {
+    sent = true;
+  }
+
+  /**
+   * Completes the command with the result of the command sent on its behalf
+   */
+  void completeWith(@NonNull CastyCommand sentCommand) {
+    if (sentCommand.sent) sent = true;
+    complete(sentCommand.statusCode);
+  }
+
+  /**
+   * Sets the completion callback. If the command has already completed, the callback is invoked
+   * immediately.
+   *
+   * @param onCompleteListener Completion callback
+   * @return this instance for chain calls
+   */
+  public CastyCommand setOnCompleteListener(@Nullable OnCompleteListener onCompleteListener) {
+    this.onCompleteListener = onCompleteListener;
+    if (onCompleteListener != null && isDone()) onCompleteListener.onComplete(this);
+    return this;
+  }
+
+  /**
+   * Stops waiting for the result. The command completes with {@link CommonStatusCodes#CANCELED},
+   * however the receiver may still execute it.
+   */
+  public void cancel() {
+    if (pendingResult != null) {
+      pendingResult.cancel();
+      if (!isDone()) CastyMetrics.getInstance().recordCommandCancellation(name);
+    }
+    complete(CommonStatusCodes.CANCELED);
+  }
+
+  /**
+   * @return the command name, e.g. {@code "seek"}
+   */
+  @NonNull public String getName() {
+    return name;
+  }
+
+  /**
+   * @return true if the command has completed, successfully or not
+   */
+  public boolean isDone() {
+    return statusCode != STATUS_PENDING;
+  }
+
+  /**
+   * @return true if the receiver has executed the command
+   */
+  public boolean isSuccessful() {
+    return statusCode == CommonStatusCodes.SUCCESS;
+  }
+
+  /**
+   * @return true if the command was handed to the receiver, regardless of its result
+   */
+  public boolean isSent() {
+    return sent;
+  }
+
+  /**
+   * @return {@link #STATUS_PENDING} until the command completes, one of {@link CastStatusCodes}
+   * afterwards. {@link CommonStatusCodes#TIMEOUT} means the receiver did not respond within
+   * {@link CastyPlayer#setCommandTimeout(long)}, {@link CastStatusCodes#REPLACED} means a newer
+   * command of the same kind was issued before this one could be sent.
+   */
+  public int getStatusCode() {
+    return statusCode;
+  }
+
+  /**
+   * @return milliseconds between sending the command and its completion, -1 while pending
+   */
+  public long getLatency() {
+    return latency;
+  }
+
+  @Override public String toString() {
+    return name + "[" + (isDone() ? CastStatusCodes.getStatusCodeString(statusCode) : "PENDING")
+        + ", " + latency + "ms]";
+  }
+
+  public interface OnCompleteListener {
+    void onComplete(@NonNull CastyCommand command);
+  }
+}
@@ -0,0 +1,234 @@
+package pl.droidsonroids.casty;
+
+import android.os.SystemClock;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.google.android.gms.cast.CastStatusCodes;
+import com.google.android.gms.common.api.CommonStatusCodes;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Ring buffer of the most recent cast events: session transitions, cast state changes, commands,
+ * status updates and errors. It is preallocated, recording is lock-free and does not allocate, so
+ * it is enabled by default. Call {@link #dump()} to attach the events to a bug report or set an
+ * {@link OnErrorListener} to get them as soon as something fails.
+ */
+public final class CastyFlightRecorder {
+  /**
+   * Number of the most recent events kept
+   */
+  public static final int CAPACITY = 256;
+
+  static final int SESSION_STARTING = 0;
+  static final int SESSION_STARTED = 1;
+  static final int SESSION_START_FAILED = 2;
+  static final int SESSION_ENDING = 3;
+  static final int SESSION_ENDED = 4;
+  static final int SESSION_RESUMING = 5;
+  static final int SESSION_RESUMED = 6;
+  static final int SESSION_RESUME_FAILED = 7;
+  static final int SESSION_SUSPENDED = 8;
+  static final int CAST_STATE = 9;
+  static final int COMMAND_SENT = 10;
+  static final int COMMAND_COMPLETED = 11;
+  static final int STATUS = 12;
+  private static final String[] TYPE_NAMES = {
+      "SESSION_STARTING", "SESSION_STARTED", "SESSION_START_FAILED", "SESSION_ENDING",
+      "SESSION_ENDED", "SESSION_RESUMING", "SESSION_RESUMED", "SESSION_RESUME_FAILED",
+      "SESSION_SUSPENDED", "CAST_STATE", "COMMAND_SENT", "COMMAND_COMPLETED", "STATUS"
+  };
+  private static final int MASK = CAPACITY - 1;
+  private static final int FIELDS = 3;
+  private static final long WRITING = -1L;
+
+  private static final CastyFlightRecorder instance = new CastyFlightRecorder();
+
+  private final AtomicLong nextSequence = new AtomicLong();
+  private final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+  //time, value, type and code packed into one long, for every slot
+  private final AtomicLongArray fields = new AtomicLongArray(CAPACITY * FIELDS);
+  private final AtomicReferenceArray<String> names = new AtomicReferenceArray<>(CAPACITY);
+  private volatile boolean enabled = true;
+  private volatile OnErrorListener onErrorListener;
+
+  private CastyFlightRecorder() {
+    for (int i = 0; i < CAPACITY; i++) {
+      sequences.set(i, WRITING);
+    }
+  }
+
+  /**
+   * @return the flight recorder of this process
+   */
+  @NonNull public static CastyFlightRecorder getInstance() {
+    return instance;
+  }
+
+  /**
+   * Enables or disables recording, enabled by default
+   *
+   * @param enabled false to stop recording new events
+   */
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * Sets the callback invoked with a {@link #dump()} when a session fails to start or resume, a
+   * command fails or the media stops with an error. If there is no listener, the dump is logged
+   * while a Timber tree is planted.
+   *
+   * @param onErrorListener the callback or null to remove it
+   */
+  public void setOnErrorListener(@Nullable OnErrorListener onErrorListener) {
+    this.onErrorListener = onErrorListener;
+  }
+
+  void record(int type, int code, long value) {
+    record(type, null, code, value);
+  }
+
+  /**
+   * @param name constant, e.g. a command name, so that recording does not allocate
+   */
+  void record(int type, @Nullable String name, int code, long value) {
+    if (!enabled) return;
+    long sequence = nextSequence.getAndIncrement();
+    int slot = (int) sequence & MASK;
+    int offset = slot * FIELDS;
+    sequences.set(slot, WRITING);
+    fields.set(offset, SystemClock.elapsedRealtime());
+    fields.set(offset + 1, value);
+    fields.set(offset + 2, ((long) type << 32) | (code & 0xFFFFFFFFL));
+    names.set(slot, name);
+    sequences.set(slot, sequence);
+  }
+
+  /**
+   * Records the event and reports it as an error
+   */
+  void recordError(int type, @Nullable String name, int code, long value) {
+    if (!enabled) return;
+    record(type, name, code, value);
+    OnErrorListener listener = onErrorListener;
+    if (listener != null) {
+      listener.onError(dump());
+    } else if (CastyLog.isLoggable()) {
+      CastyLog.d("Cast error, recent events:\n" + dump());
+    }
+  }
+
+  void recordCommandCompleted(@NonNull String name, int statusCode, long latency) {
+    //canceled by the app or interrupted by a disconnection, which is recorded on its own
+    if (statusCode == CommonStatusCodes.SUCCESS || statusCode == CommonStatusCodes.CANCELED
+        || statusCode == CommonStatusCodes.INTERRUPTED) {
+      record(COMMAND_COMPLETED, name, statusCode, latency);
+    } else {
+      recordError(COMMAND_COMPLETED, name, statusCode, latency);
+    }
+  }
+
+  /**
+   * Clears all the recorded events
+   */
+  public void clear() {
+    for (int i = 0; i < CAPACITY; i++) {
+      sequences.set(i, WRITING);
+    }
+  }
+
+  /**
+   * Formats the recorded events, oldest first, one per line. Times are relative to the newest
+   * event. Can be called from any thread, events being recorded at the same time are skipped.
+   *
+   * @return the events or an empty string if there are none
+   */
+  @NonNull public String dump() {
+    long end = nextSequence.get();
+    long start = Math.max(0L, end - CAPACITY);
+    int count = (int) (end - start);
+    long[] times = new long[count];
+    long[] values = new long[count];
+    long[] typesAndCodes = new long[count];
+    String[] eventNames = new String[count];
+    boolean[] valid = new boolean[count];
+    long lastTime = 0;
+    for (int i = 0; i < count; i++) {
+      long sequence = start + i;
+      int slot = (int) sequence & MASK;
+      int offset = slot * FIELDS;
+      if (sequences.get(slot) != sequence) continue;
+      times[i] = fields.get(offset);
+      values[i] = fields.get(offset + 1);
+      typesAndCodes[i] = fields.get(offset + 2);
+      eventNames[i] = names.get(slot);
+      //overwritten while being read
+      if (sequences.get(slot) != sequence) continue;
+      valid[i] = true;
+      lastTime = times[i];
+    }
+    StringBuilder builder = new StringBuilder(count * 48);
+    for (int i = 0; i < count; i++) {
+      if (!valid[i]) continue;
+      int type = (int) (typesAndCodes[i] >>> 32);
+      int code = (int) typesAndCodes[i];
+      builder.append(times[i] - lastTime).append("ms ").append(TYPE_NAMES[type]);
+      if (eventNames[i] != null) builder.append(' ').append(eventNames[i]);
+      appendDetails(builder, type, code, values[i]);
+      builder.append('\n');
+    }
+    return builder.toString();
+  }
+
+  private static void appendDetails(StringBuilder builder, int type, int code, long value) {
+    switch (type) {
+      case SESSION_STARTED:
+      case SESSION_ENDING:
+      case SESSION_RESUMING:
+      case SESSION_STARTING:
+        break;
+      case SESSION_RESUMED:
+        builder.append(" wasSuspended=").append(code != 0);
+        break;
+      case SESSION_SUSPENDED:
+        builder.append(" reason=").append(code);
+        break;
+      case CAST_STATE:
+        builder.append(" state=").append(code);
+        break;
+      case COMMAND_SENT:
+        builder.append(" timeout=").append(value).append("ms");
+        break;
+      case COMMAND_COMPLETED:
+        builder.append(' ')
+            .append(CastStatusCodes.getStatusCodeString(code))
+            .append(" latency=")
+            .append(value)
+            .append("ms");
+        break;
+      case STATUS:
+        builder.append(" playerState=")
+            .append(code & 0xFFFF)
+            .append(" idleReason=")
+            .append(code >>> 16)
+            .append(" position=")
+            .append(value)
+            .append("ms");
+        break;
+      default:
+        builder.append(' ').append(CastStatusCodes.getStatusCodeString(code));
+        break;
+    }
+  }
+
+  public interface OnErrorListener {
+    /**
+     * Invoked on the thread which recorded the error, usually the main thread
+     *
+     * @param dump the recent events, see {@link #dump()}
+     */
+    void onError(@NonNull String dump);
+  }
+}
@@ -0,0 +1,216 @@
+package pl.droidsonroids.casty;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.DisplayMetrics;
+import android.util.LruCache;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Artwork pipeline for {@link MediaData} images. Images are downloaded once, downsampled to the
+ * requested size and kept in a bounded memory cache and a bounded disk cache, both keyed by the
+ * url and the size. With {@link Casty#setArtworkPrefetchEnabled(boolean)} {@link CastyPlayer}
+ * prefetches the artwork of every loaded or queued media. The Cast SDK widgets don't read this
+ * cache, it serves the app's own UI through {@link #getCached} and {@link #load}.
+ */
+public final class CastyImageCache {
+  private static final long DISK_CACHE_SIZE = 20 * 1024 * 1024;
+  private static final int THUMBNAIL_SIZE_DP = 64;
+  private static final int TIMEOUT = 15000;
+
+  private static CastyImageCache instance;
+
+  private final File downloadDirectory;
+  private final DiskImageCache diskCache;
+  private final LruCache<String, Bitmap> memoryCache;
+  private final ExecutorService executor = Executors.newFixedThreadPool(2);
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  private final Map<String, List<OnImageLoadedListener>> pendingRequests = new HashMap<>();
+  private final int thumbnailSize;
+  private final int fullSize;
+
+  /**
+   * Gives the process-wide image cache.
+   *
+   * @param context any Context
+   * @return the image cache
+   */
+  @MainThread public static CastyImageCache getInstance(@NonNull Context context) {
+    if (instance == null) instance = new CastyImageCache(context.getApplicationContext());
+    return instance;
+  }
+
+  private CastyImageCache(Context context) {
+    downloadDirectory = context.getCacheDir();
+    diskCache = new DiskImageCache(new File(context.getCacheDir(), "casty-images"),
+        DISK_CACHE_SIZE);
+    int memoryCacheSize =
+        (int) Math.min(Runtime.getRuntime().maxMemory() / 16, Integer.MAX_VALUE);
+    memoryCache = new LruCache<String, Bitmap>(memoryCacheSize) {
+      @Override protected int sizeOf(String key, Bitmap bitmap) {
+        return bitmap.getByteCount();
+      }
+    };
+    DisplayMetrics displayMetrics = context.getResources().getDisplayMetrics();
+    thumbnailSize = (int) (THUMBNAIL_SIZE_DP * displayMetrics.density);
+    fullSize = Math.max(displayMetrics.widthPixels, displayMetrics.heightPixels);
+  }
+
+  /**
+   * Downloads the artwork of the media in background and caches it in the sizes used by the
+   * Mini Controller, notification and expanded controls.
+   *
+   * @param mediaData Information about the media
+   */
+  @MainThread public void prefetch(@NonNull MediaData mediaData) {
+    for (String imageUrl : mediaData.getImageUrls()) {
+      load(imageUrl, fullSize, fullSize, new OnImageLoadedListener() {
+        @Override public void onImageLoaded(@NonNull String url, @Nullable Bitmap bitmap) {
+          //downsampled from the full size image on disk, so the url is downloaded only once
+          if (bitmap != null) load(url, thumbnailSize, thumbnailSize, null);
+        }
+      });
+    }
+  }
+
+  /**
+   * Gives the image from the memory cache without any I/O.
+   *
+   * @return the cached image or null
+   */
+  @Nullable public Bitmap getCached(@NonNull String url, int width, int height) {
+    return memoryCache.get(key(url, width, height));
+  }
+
+  /**
+   * Loads the image downsampled to be at least as large as the requested size. Concurrent
+   * requests for the same image and size share a single download.
+   *
+   * @param listener callback invoked on the main thread, may be null to only warm up the cache
+   */
+  @MainThread public void load(@NonNull final String url, final int width, final int height,
+      @Nullable OnImageLoadedListener listener) {
+    final String key = key(url, width, height);
+    Bitmap bitmap = memoryCache.get(key);
+    if (bitmap != null) {
+      if (listener != null) listener.onImageLoaded(url, bitmap);
+      return;
+    }
+    List<OnImageLoadedListener> listeners = pendingRequests.get(key);
+    if (listeners != null) {
+      if (listener != null) listeners.add(listener);
+      return;
+    }
+    listeners = new ArrayList<>(1);
+    if (listener != null) listeners.add(listener);
+    pendingRequests.put(key, listeners);
+    executor.execute(new Runnable() {
+      @Override public void run() {
+        final Bitmap bitmap = loadInBackground(key, url, width, height);
+        mainHandler.post(new Runnable() {
+          @Override public void run() {
+            if (bitmap != null) memoryCache.put(key, bitmap);
+            List<OnImageLoadedListener> listeners = pendingRequests.remove(key);
+            if (listeners == null) return;
+            for (OnImageLoadedListener listener : listeners) {
+              listener.onImageLoaded(url, bitmap);
+            }
+          }
+        });
+      }
+    });
+  }
+
+  @WorkerThread @Nullable
+  private Bitmap loadInBackground(String key, String url, int width, int height) {
+    File cachedFile = diskCache.get(key);
+    if (cachedFile != null) {
+      Bitmap bitmap = BitmapFactory.decodeFile(cachedFile.getPath());
+      if (bitmap != null) return bitmap;
+    }
+    File fullSizeFile = diskCache.get(key(url, fullSize, fullSize));
+    if (fullSizeFile != null && width <= fullSize && height <= fullSize) {
+      Bitmap bitmap = decodeSampled(fullSizeFile, width, height);
+      if (bitmap != null) {
+        diskCache.put(key, bitmap);
+        return bitmap;
+      }
+    }
+    File downloadFile = null;
+    try {
+      downloadFile = File.createTempFile("casty-image", ".tmp", downloadDirectory);
+      download(url, downloadFile);
+      Bitmap bitmap = decodeSampled(downloadFile, width, height);
+      if (bitmap != null) diskCache.put(key, bitmap);
+      return bitmap;
+    } catch (IOException e) {
+      return null;
+    } finally {
+      //noinspection ResultOfMethodCallIgnored
+      if (downloadFile != null) downloadFile.delete();
+    }
+  }
+
+  private static void download(String url, File file) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+    connection.setConnectTimeout(TIMEOUT);
+    connection.setReadTimeout(TIMEOUT);
+    InputStream inputStream = null;
+    OutputStream outputStream = null;
+    try {
+      inputStream = connection.getInputStream();
+      outputStream = new FileOutputStream(file);
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = inputStream.read(buffer)) != -1) {
+        outputStream.write(buffer, 0, read);
+      }
+    } finally {
+      DiskImageCache.closeQuietly(inputStream);
+      DiskImageCache.closeQuietly(outputStream);
+      connection.disconnect();
+    }
+  }
+
+  private static Bitmap decodeSampled(File file, int width, int height) {
+    BitmapFactory.Options options = new BitmapFactory.Options();
+    options.inJustDecodeBounds = true;
+    BitmapFactory.decodeFile(file.getPath(), options);
+    if (options.outWidth <= 0 || options.outHeight <= 0) return null;
+    int sampleSize = 1;
+    while (options.outWidth / (sampleSize * 2) >= width
+        && options.outHeight / (sampleSize * 2) >= height) {
+      sampleSize *= 2;
+    }
+    options.inJustDecodeBounds = false;
+    options.inSampleSize = sampleSize;
+    return BitmapFactory.decodeFile(file.getPath(), options);
+  }
+
+  private static String key(String url, int width, int height) {
+    return url + '@' + width + 'x' + height;
+  }
+
+  public interface OnImageLoadedListener {
+    void onImageLoaded(@NonNull String url, @Nullable Bitmap bitmap);
+  }
+}
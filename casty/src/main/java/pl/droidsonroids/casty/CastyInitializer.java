@@ -0,0 +1,94 @@
+package pl.droidsonroids.casty;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import com.google.android.gms.cast.framework.CastContext;
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.GoogleApiAvailability;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Process-wide cache of the Google Play services check and the {@link CastContext}. The Play
+ * services check runs on a background thread, {@link CastContext} has to be created on the main
+ * thread, so it is created right after the check, outside of the caller's frame.
+ */
+@MainThread
+final class CastyInitializer {
+  private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+  private static final List<Runnable> pendingActions = new ArrayList<>();
+
+  private static Boolean playServicesAvailable;
+  private static CastContext castContext;
+  private static boolean initializing;
+
+  private CastyInitializer() {
+    //no instances
+  }
+
+  static boolean isPlayServicesAvailable(@NonNull Context context) {
+    if (playServicesAvailable == null) {
+      playServicesAvailable = checkPlayServices(context);
+    }
+    return playServicesAvailable;
+  }
+
+  @NonNull static CastContext getCastContext(@NonNull Context context) {
+    if (castContext == null) {
+      castContext = CastContext.getSharedInstance(context.getApplicationContext());
+    }
+    return castContext;
+  }
+
+  /**
+   * Runs the action once Google Play services has been checked and {@link CastContext} is ready.
+   * Actions requested while the initialization is in progress are run in order when it completes.
+   * The action is always posted to the main thread, also when the initialization is done already.
+   */
+  static void initializeAsync(@NonNull Context context, @NonNull final Runnable action) {
+    if (playServicesAvailable != null) {
+      final Context applicationContext = context.getApplicationContext();
+      //never run before the caller returns, whether the result is cached or not
+      mainHandler.post(new Runnable() {
+        @Override public void run() {
+          if (playServicesAvailable) getCastContext(applicationContext);
+          action.run();
+        }
+      });
+      return;
+    }
+    pendingActions.add(action);
+    if (initializing) return;
+    initializing = true;
+    final Context applicationContext = context.getApplicationContext();
+    new Thread(new Runnable() {
+      @Override public void run() {
+        final boolean available = checkPlayServices(applicationContext);
+        mainHandler.post(new Runnable() {
+          @Override public void run() {
+            onPlayServicesChecked(applicationContext, available);
+          }
+        });
+      }
+    }, "casty-init").start();
+  }
+
+  private static void onPlayServicesChecked(Context context, boolean available) {
+    initializing = false;
+    playServicesAvailable = available;
+    if (available) getCastContext(context);
+    Runnable[] actions = pendingActions.toArray(new Runnable[pendingActions.size()]);
+    pendingActions.clear();
+    for (Runnable action : actions) {
+      action.run();
+    }
+  }
+
+  private static boolean checkPlayServices(Context context) {
+    return GoogleApiAvailability.getInstance().isGooglePlayServicesAvailable(context)
+        == ConnectionResult.SUCCESS;
+  }
+}
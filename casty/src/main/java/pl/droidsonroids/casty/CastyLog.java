@@ -0,0 +1,29 @@
+package pl.droidsonroids.casty;
+
+import timber.log.Timber;
+
+/**
+ * Debug logging gate. Casty logs through Timber only when a tree is planted, call sites with
+ * arguments check {@link #isLoggable()} first, so no message, argument array or JSON is built
+ * otherwise. Apps can remove the logging code entirely with the R8 rule
+ * {@code -assumevalues class pl.droidsonroids.casty.CastyLog { static boolean isLoggable() return false; }}
+ */
+final class CastyLog {
+  private CastyLog() {
+  }
+
+  static boolean isLoggable() {
+    return Timber.treeCount() > 0;
+  }
+
+  static void d(String message) {
+    if (isLoggable()) Timber.d(message);
+  }
+
+  /**
+   * Call only after {@link #isLoggable()} returned true, the arguments are evaluated eagerly
+   */
+  static void d(String format, Object... args) {
+    Timber.d(format, args);
+  }
+}
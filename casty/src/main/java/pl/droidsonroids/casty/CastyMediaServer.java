@@ -0,0 +1,453 @@
+package pl.droidsonroids.casty;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.provider.OpenableColumns;
+import android.webkit.MimeTypeMap;
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.URLDecoder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Embedded HTTP server which lets the receiver play files stored on the device. Files and content
+ * URIs are served with byte ranges and keep-alive, file content is sent with
+ * {@link FileChannel#transferTo}, so the kernel copies it straight to the socket. HLS streams can
+ * be relayed with segment prefetching, see {@link #relay(MediaData)}. Urls contain a random token
+ * and are valid only until {@link #stop()}.
+ */
+@AnyThread
+public final class CastyMediaServer {
+  private static final String DEFAULT_MIME_TYPE = "application/octet-stream";
+  private static final Map<String, String> MIME_TYPES = new HashMap<>();
+
+  static {
+    //formats supported by Cast receivers, which MimeTypeMap lacks on some API levels
+    MIME_TYPES.put("mp4", "video/mp4");
+    MIME_TYPES.put("m4v", "video/mp4");
+    MIME_TYPES.put("m4a", "audio/mp4");
+    MIME_TYPES.put("webm", "video/webm");
+    MIME_TYPES.put("mkv", "video/x-matroska");
+    MIME_TYPES.put("ts", "video/mp2t");
+    MIME_TYPES.put("m4s", "video/iso.segment");
+    MIME_TYPES.put("mp3", "audio/mpeg");
+    MIME_TYPES.put("aac", "audio/aac");
+    MIME_TYPES.put("flac", "audio/flac");
+    MIME_TYPES.put("wav", "audio/wav");
+    MIME_TYPES.put("ogg", "audio/ogg");
+    MIME_TYPES.put("m3u8", "application/x-mpegURL");
+    MIME_TYPES.put("mpd", "application/dash+xml");
+    MIME_TYPES.put("vtt", "text/vtt");
+    MIME_TYPES.put("jpg", "image/jpeg");
+    MIME_TYPES.put("jpeg", "image/jpeg");
+    MIME_TYPES.put("png", "image/png");
+    MIME_TYPES.put("webp", "image/webp");
+  }
+
+  /**
+   * Number of segments after the played one which are prefetched by {@link #relay(MediaData)}
+   */
+  public static final int DEFAULT_RELAY_PREFETCH_COUNT = 3;
+  private static final long MAX_RELAY_CACHE_SIZE = 64 * 1024 * 1024;
+  private static final int MAX_RELAYS = 32;
+  private static final String RELAY_PATH = "relay";
+
+  private static CastyMediaServer instance;
+
+  private final ContentResolver contentResolver;
+  private final String token = createToken();
+  private final AtomicInteger nextId = new AtomicInteger();
+  private final ConcurrentMap<String, LocalMedia> mediaById = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, String> idsBySource = new ConcurrentHashMap<>();
+  private final Set<SocketChannel> connections =
+      Collections.newSetFromMap(new ConcurrentHashMap<SocketChannel, Boolean>());
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final ConcurrentMap<String, HlsRelay> relaysById = new ConcurrentHashMap<>();
+  //by origin url, the least recently used first
+  private final Map<String, HlsRelay> relaysByUrl =
+      new LinkedHashMap<String, HlsRelay>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<String, HlsRelay> eldest) {
+          if (size() <= MAX_RELAYS) return false;
+          relaysById.values().remove(eldest.getValue());
+          return true;
+        }
+      };
+  private final SegmentCache segmentCache =
+      new SegmentCache(Math.min(Runtime.getRuntime().maxMemory() / 8, MAX_RELAY_CACHE_SIZE),
+          DEFAULT_RELAY_PREFETCH_COUNT);
+  private volatile int relayPrefetchCount = DEFAULT_RELAY_PREFETCH_COUNT;
+  private ServerSocketChannel serverChannel;
+
+  /**
+   * Gives the process-wide media server. It starts listening when the first media is served.
+   *
+   * @param context any Context
+   * @return the media server
+   */
+  public static synchronized CastyMediaServer getInstance(@NonNull Context context) {
+    if (instance == null) instance = new CastyMediaServer(context.getApplicationContext());
+    return instance;
+  }
+
+  private CastyMediaServer(Context context) {
+    contentResolver = context.getContentResolver();
+  }
+
+  /**
+   * Serves the file and describes it as a buffered stream titled with the file name
+   *
+   * @param file local video, audio or image file
+   * @return the media ready to be loaded by {@link CastyPlayer}
+   * @throws IOException if the server cannot start or the device is not on a local network
+   */
+  @NonNull public MediaData createMediaData(@NonNull File file) throws IOException {
+    return createMediaDataBuilder(file).build();
+  }
+
+  /**
+   * Serves the file and creates a builder with its url, content type and title
+   *
+   * @param file local video, audio or image file
+   * @return the builder to add more information to
+   * @throws IOException if the server cannot start or the device is not on a local network
+   */
+  @NonNull public MediaData.Builder createMediaDataBuilder(@NonNull File file) throws IOException {
+    if (!file.isFile()) throw new FileNotFoundException(file.getPath());
+    String name = file.getName();
+    String mimeType = getMimeType(name, null);
+    String path = file.getAbsolutePath();
+    return createMediaDataBuilder(serve(path, new LocalMedia(file, null, mimeType), name), path,
+        name, mimeType);
+  }
+
+  /**
+   * Serves the content and creates a builder with its url, content type and title
+   *
+   * @param uri {@code content://} or {@code file://} uri
+   * @return the builder to add more information to
+   * @throws IOException if the server cannot start or the device is not on a local network
+   */
+  @NonNull public MediaData.Builder createMediaDataBuilder(@NonNull Uri uri) throws IOException {
+    if (ContentResolver.SCHEME_FILE.equals(uri.getScheme()) && uri.getPath() != null) {
+      return createMediaDataBuilder(new File(uri.getPath()));
+    }
+    String name = queryDisplayName(uri);
+    String mimeType = getMimeType(name, contentResolver.getType(uri));
+    String key = uri.toString();
+    return createMediaDataBuilder(serve(key, new LocalMedia(null, uri, mimeType), name), key, name,
+        mimeType);
+  }
+
+  private static MediaData.Builder createMediaDataBuilder(String url, String key, String name,
+      String mimeType) {
+    //the served url changes with the server port, the resume position is kept by the source
+    return new MediaData.Builder(url).setResumeKey(key)
+        .setStreamType(MediaData.STREAM_TYPE_BUFFERED)
+        .setContentType(mimeType)
+        .setTitle(name);
+  }
+
+  /**
+   * Relays an HLS stream through this server, which prefetches the next segments in parallel and
+   * serves them from memory. It helps receivers which stall when an origin segment is slow to
+   * download, at the cost of routing the stream through the phone. Other streams are returned
+   * unchanged. A stream relayed again keeps its relay and url, only the 32 most recently used
+   * relays are kept.
+   *
+   * @param mediaData HLS stream, recognized by the content type or the {@code .m3u8} extension
+   * @return copy of the media played through the relay
+   * @throws IOException if the server cannot start or the device is not on a local network
+   */
+  @NonNull public MediaData relay(@NonNull MediaData mediaData) throws IOException {
+    if (!HlsRelay.isHls(mediaData.getUrl(), mediaData.getContentType())) return mediaData;
+    int port = ensureStarted();
+    HlsRelay relay;
+    synchronized (relaysByUrl) {
+      relay = relaysByUrl.get(mediaData.getUrl());
+      if (relay == null) {
+        String id = Integer.toString(nextId.incrementAndGet());
+        relay = new HlsRelay(mediaData.getUrl(), '/' + token + '/' + RELAY_PATH + '/' + id + '/',
+            segmentCache, relayPrefetchCount);
+        relaysById.put(id, relay);
+        relaysByUrl.put(mediaData.getUrl(), relay);
+      } else {
+        relay.setPrefetchCount(relayPrefetchCount);
+      }
+    }
+    return mediaData.copyWithUrl("http://" + getLocalAddress().getHostAddress() + ':' + port
+        + relay.getPlaylistPath(mediaData.getUrl()));
+  }
+
+  /**
+   * Sets how many segments after the played one are prefetched. Applies to streams relayed after
+   * this call.
+   *
+   * @param relayPrefetchCount number of segments, 0 disables prefetching
+   */
+  public void setRelayPrefetchCount(int relayPrefetchCount) {
+    this.relayPrefetchCount = Math.max(0, relayPrefetchCount);
+  }
+
+  /**
+   * Stops listening, closes all the connections and invalidates all the served urls
+   */
+  public synchronized void stop() {
+    DiskImageCache.closeQuietly(serverChannel);
+    serverChannel = null;
+    for (SocketChannel connection : connections) {
+      DiskImageCache.closeQuietly(connection);
+    }
+    mediaById.clear();
+    idsBySource.clear();
+    synchronized (relaysByUrl) {
+      relaysByUrl.clear();
+      relaysById.clear();
+    }
+    segmentCache.clear();
+  }
+
+  private String serve(String source, LocalMedia media, String name) throws IOException {
+    int port = ensureStarted();
+    String id = idsBySource.get(source);
+    if (id == null) {
+      id = Integer.toString(nextId.incrementAndGet());
+      String previousId = idsBySource.putIfAbsent(source, id);
+      if (previousId != null) id = previousId;
+    }
+    mediaById.put(id, media);
+    //the name only helps receivers which look at the extension
+    return "http://" + getLocalAddress().getHostAddress() + ':' + port + '/' + token + '/' + id
+        + '/' + Uri.encode(name);
+  }
+
+  private synchronized int ensureStarted() throws IOException {
+    if (serverChannel == null) {
+      final ServerSocketChannel channel = ServerSocketChannel.open();
+      channel.socket().bind(new InetSocketAddress(0));
+      Thread acceptThread = new Thread(new Runnable() {
+        @Override public void run() {
+          accept(channel);
+        }
+      }, "CastyMediaServer");
+      acceptThread.setDaemon(true);
+      acceptThread.start();
+      serverChannel = channel;
+    }
+    return serverChannel.socket().getLocalPort();
+  }
+
+  private void accept(ServerSocketChannel channel) {
+    while (true) {
+      final SocketChannel connection;
+      try {
+        connection = channel.accept();
+      } catch (IOException e) {
+        //closed by stop()
+        return;
+      }
+      connections.add(connection);
+      executor.execute(new Runnable() {
+        @Override public void run() {
+          try {
+            new MediaServerConnection(CastyMediaServer.this, connection).run();
+          } finally {
+            connections.remove(connection);
+            DiskImageCache.closeQuietly(connection);
+          }
+        }
+      });
+    }
+  }
+
+  /**
+   * @param target request target, {@code /token/id/name} for local media or
+   * {@code /token/relay/id/kind/name?u=url} for relayed streams
+   * @return the served resource or null if the target is unknown
+   */
+  @Nullable MediaServerConnection.Resource find(@NonNull String target) {
+    int queryStart = target.indexOf('?');
+    String path = queryStart < 0 ? target : target.substring(0, queryStart);
+    int tokenEnd = token.length() + 1;
+    if (!path.startsWith(token, 1) || path.length() <= tokenEnd
+        || path.charAt(tokenEnd) != '/') {
+      return null;
+    }
+    String[] segments = path.substring(tokenEnd + 1).split("/");
+    if (!segments[0].equals(RELAY_PATH)) return mediaById.get(segments[0]);
+    if (segments.length < 3 || queryStart < 0) return null;
+    HlsRelay relay = relaysById.get(segments[1]);
+    String url = parseRelayedUrl(target.substring(queryStart + 1));
+    if (relay == null || url == null) return null;
+    synchronized (relaysByUrl) {
+      //marks the relay as used
+      relaysByUrl.get(relay.getOriginUrl());
+    }
+    return relay.find(segments[2], url);
+  }
+
+  @Nullable private static String parseRelayedUrl(String query) {
+    if (!query.startsWith("u=")) return null;
+    try {
+      String url = URLDecoder.decode(query.substring(2), "UTF-8");
+      return url.startsWith("http://") || url.startsWith("https://") ? url : null;
+    } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  private String queryDisplayName(Uri uri) {
+    Cursor cursor = null;
+    try {
+      cursor = contentResolver.query(uri, new String[] { OpenableColumns.DISPLAY_NAME }, null,
+          null, null);
+      if (cursor != null && cursor.moveToFirst() && !cursor.isNull(0)) return cursor.getString(0);
+    } catch (RuntimeException e) {
+      //not every provider supports the query
+    } finally {
+      if (cursor != null) cursor.close();
+    }
+    String lastPathSegment = uri.getLastPathSegment();
+    return lastPathSegment == null ? "media" : lastPathSegment;
+  }
+
+  static String getMimeType(@NonNull String name, @Nullable String providedMimeType) {
+    if (providedMimeType != null && !providedMimeType.equals(DEFAULT_MIME_TYPE)) {
+      return providedMimeType;
+    }
+    int dot = name.lastIndexOf('.');
+    if (dot < 0) return DEFAULT_MIME_TYPE;
+    String extension = name.substring(dot + 1).toLowerCase(Locale.US);
+    String mimeType = MIME_TYPES.get(extension);
+    if (mimeType == null) mimeType = MimeTypeMap.getSingleton().getMimeTypeFromExtension(extension);
+    return mimeType == null ? DEFAULT_MIME_TYPE : mimeType;
+  }
+
+  private static InetAddress getLocalAddress() throws IOException {
+    InetAddress fallback = null;
+    Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+    while (interfaces != null && interfaces.hasMoreElements()) {
+      NetworkInterface networkInterface = interfaces.nextElement();
+      if (!networkInterface.isUp() || networkInterface.isLoopback()) continue;
+      Enumeration<InetAddress> addresses = networkInterface.getInetAddresses();
+      while (addresses.hasMoreElements()) {
+        InetAddress address = addresses.nextElement();
+        if (!(address instanceof Inet4Address) || !address.isSiteLocalAddress()) continue;
+        //receivers are on Wi-Fi or Ethernet, not on the cellular network
+        String name = networkInterface.getName();
+        if (name.startsWith("wlan") || name.startsWith("eth")) return address;
+        if (fallback == null) fallback = address;
+      }
+    }
+    if (fallback == null) throw new IOException("Device is not connected to a local network");
+    return fallback;
+  }
+
+  private static String createToken() {
+    byte[] bytes = new byte[16];
+    new SecureRandom().nextBytes(bytes);
+    StringBuilder builder = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      builder.append(Character.forDigit((b >> 4) & 0xF, 16))
+          .append(Character.forDigit(b & 0xF, 16));
+    }
+    return builder.toString();
+  }
+
+  /**
+   * File or content served under a url
+   */
+  final class LocalMedia implements MediaServerConnection.Resource {
+    private final String mimeType;
+    private final File file;
+    private final Uri uri;
+
+    LocalMedia(@Nullable File file, @Nullable Uri uri, @NonNull String mimeType) {
+      this.file = file;
+      this.uri = uri;
+      this.mimeType = mimeType;
+    }
+
+    @Override public boolean respond(@NonNull MediaServerConnection connection, boolean head,
+        @Nullable String range, boolean keepAlive) throws IOException {
+      Content content;
+      try {
+        content = open();
+      } catch (IOException | SecurityException e) {
+        return connection.respondWithStatus("404 Not Found", keepAlive);
+      }
+      try {
+        return connection.respondWithContent(head, mimeType, content, range, keepAlive);
+      } finally {
+        content.close();
+      }
+    }
+
+    /**
+     * Opens the content for a single response
+     */
+    @NonNull Content open() throws IOException {
+      if (file != null) {
+        FileInputStream inputStream = new FileInputStream(file);
+        return new Content(inputStream.getChannel(), inputStream.getChannel().size(), null);
+      }
+      ParcelFileDescriptor descriptor = contentResolver.openFileDescriptor(uri, "r");
+      if (descriptor == null) throw new FileNotFoundException(uri.toString());
+      FileChannel channel = new FileInputStream(descriptor.getFileDescriptor()).getChannel();
+      return new Content(channel, descriptor.getStatSize(), descriptor);
+    }
+  }
+
+  /**
+   * Opened file or content, the length is -1 if the content is not a regular file, e.g. a pipe
+   */
+  static final class Content {
+    final FileChannel channel;
+    final long length;
+    private final ParcelFileDescriptor descriptor;
+
+    Content(FileChannel channel, long length, @Nullable ParcelFileDescriptor descriptor) {
+      this.channel = channel;
+      this.length = length;
+      this.descriptor = descriptor;
+    }
+
+    void close() {
+      DiskImageCache.closeQuietly(channel);
+      if (descriptor != null) {
+        try {
+          descriptor.close();
+        } catch (IOException ignored) {
+          //nothing to do
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,237 @@
+package pl.droidsonroids.casty;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Process-wide cast performance metrics, recorded by Casty as it runs:
+ * <ul>
+ * <li>session start, from {@code onSessionStarting} to {@code onSessionStarted}</li>
+ * <li>load to playing, from sending a load or queue load to the first PLAYING status</li>
+ * <li>buffering stalls, i.e. buffering which interrupts the playback, not caused by a seek</li>
+ * <li>round trip of every command answered by the receiver, by command name</li>
+ * <li>commands which timed out or were canceled while waiting for the receiver, counted
+ * separately, so they do not distort the round trips</li>
+ * </ul>
+ * All durations are in milliseconds. Recording does not allocate, take a {@link #snapshot()} to
+ * read or export the data.
+ */
+public final class CastyMetrics {
+  private static final CastyMetrics instance = new CastyMetrics();
+
+  private final LatencyHistogram sessionStart = new LatencyHistogram();
+  private final LatencyHistogram loadToPlaying = new LatencyHistogram();
+  private final LatencyHistogram bufferingStalls = new LatencyHistogram();
+  private final ConcurrentMap<String, LatencyHistogram> commandRoundTrips =
+      new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, AtomicLong> commandTimeouts = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, AtomicLong> commandCancellations =
+      new ConcurrentHashMap<>();
+  private final AtomicLong sessionStartFailures = new AtomicLong();
+
+  private CastyMetrics() {
+  }
+
+  /**
+   * @return the metrics of this process
+   */
+  @NonNull public static CastyMetrics getInstance() {
+    return instance;
+  }
+
+  void recordSessionStart(long duration) {
+    sessionStart.record(duration);
+  }
+
+  void recordSessionStartFailure() {
+    sessionStartFailures.incrementAndGet();
+  }
+
+  void recordLoadToPlaying(long duration) {
+    loadToPlaying.record(duration);
+  }
+
+  void recordBufferingStall(long duration) {
+    bufferingStalls.record(duration);
+  }
+
+  void recordCommandRoundTrip(@NonNull String name, long duration) {
+    LatencyHistogram histogram = commandRoundTrips.get(name);
+    if (histogram == null) {
+      //command names are a small fixed set, so this allocates only on the first use of each
+      LatencyHistogram newHistogram = new LatencyHistogram();
+      histogram = commandRoundTrips.putIfAbsent(name, newHistogram);
+      if (histogram == null) histogram = newHistogram;
+    }
+    histogram.record(duration);
+  }
+
+  void recordCommandTimeout(@NonNull String name) {
+    increment(commandTimeouts, name);
+  }
+
+  void recordCommandCancellation(@NonNull String name) {
+    increment(commandCancellations, name);
+  }
+
+  private static void increment(ConcurrentMap<String, AtomicLong> counters, String name) {
+    AtomicLong counter = counters.get(name);
+    if (counter == null) {
+      AtomicLong newCounter = new AtomicLong();
+      counter = counters.putIfAbsent(name, newCounter);
+      if (counter == null) counter = newCounter;
+    }
+    counter.incrementAndGet();
+  }
+
+  /**
+   * Clears all the recorded data, e.g. after it was exported
+   */
+  public void reset() {
+    sessionStart.reset();
+    loadToPlaying.reset();
+    bufferingStalls.reset();
+    for (LatencyHistogram histogram : commandRoundTrips.values()) {
+      histogram.reset();
+    }
+    for (AtomicLong counter : commandTimeouts.values()) {
+      counter.set(0L);
+    }
+    for (AtomicLong counter : commandCancellations.values()) {
+      counter.set(0L);
+    }
+    sessionStartFailures.set(0L);
+  }
+
+  /**
+   * Copies the recorded data. Can be called from any thread.
+   *
+   * @return the immutable copy
+   */
+  @NonNull public Snapshot snapshot() {
+    Map<String, LatencyHistogram.Snapshot> commands = new HashMap<>();
+    for (Map.Entry<String, LatencyHistogram> entry : commandRoundTrips.entrySet()) {
+      commands.put(entry.getKey(), entry.getValue().snapshot());
+    }
+    return new Snapshot(sessionStart.snapshot(), sessionStartFailures.get(),
+        loadToPlaying.snapshot(), bufferingStalls.snapshot(),
+        Collections.unmodifiableMap(commands), copy(commandTimeouts), copy(commandCancellations));
+  }
+
+  private static Map<String, Long> copy(ConcurrentMap<String, AtomicLong> counters) {
+    Map<String, Long> copy = new HashMap<>();
+    for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+      copy.put(entry.getKey(), entry.getValue().get());
+    }
+    return Collections.unmodifiableMap(copy);
+  }
+
+  /**
+   * Immutable copy of the metrics
+   */
+  public static final class Snapshot {
+    private final LatencyHistogram.Snapshot sessionStart;
+    private final long sessionStartFailures;
+    private final LatencyHistogram.Snapshot loadToPlaying;
+    private final LatencyHistogram.Snapshot bufferingStalls;
+    private final Map<String, LatencyHistogram.Snapshot> commandRoundTrips;
+    private final Map<String, Long> commandTimeouts;
+    private final Map<String, Long> commandCancellations;
+
+    Snapshot(LatencyHistogram.Snapshot sessionStart, long sessionStartFailures,
+        LatencyHistogram.Snapshot loadToPlaying, LatencyHistogram.Snapshot bufferingStalls,
+        Map<String, LatencyHistogram.Snapshot> commandRoundTrips,
+        Map<String, Long> commandTimeouts, Map<String, Long> commandCancellations) {
+      this.sessionStart = sessionStart;
+      this.sessionStartFailures = sessionStartFailures;
+      this.loadToPlaying = loadToPlaying;
+      this.bufferingStalls = bufferingStalls;
+      this.commandRoundTrips = commandRoundTrips;
+      this.commandTimeouts = commandTimeouts;
+      this.commandCancellations = commandCancellations;
+    }
+
+    @NonNull public LatencyHistogram.Snapshot getSessionStart() {
+      return sessionStart;
+    }
+
+    public long getSessionStartFailures() {
+      return sessionStartFailures;
+    }
+
+    @NonNull public LatencyHistogram.Snapshot getLoadToPlaying() {
+      return loadToPlaying;
+    }
+
+    /**
+     * @return durations of the buffering stalls, the number of stalls is the count
+     */
+    @NonNull public LatencyHistogram.Snapshot getBufferingStalls() {
+      return bufferingStalls;
+    }
+
+    /**
+     * @param name command name, see {@link CastyCommand#getName()}
+     * @return round trips of the command or null if the receiver never answered it
+     */
+    @Nullable public LatencyHistogram.Snapshot getCommandRoundTrip(@NonNull String name) {
+      return commandRoundTrips.get(name);
+    }
+
+    /**
+     * @return round trips of all the sent commands, by command name
+     */
+    @NonNull public Map<String, LatencyHistogram.Snapshot> getCommandRoundTrips() {
+      return commandRoundTrips;
+    }
+
+    /**
+     * @return numbers of the commands the receiver did not answer in time, by command name
+     */
+    @NonNull public Map<String, Long> getCommandTimeouts() {
+      return commandTimeouts;
+    }
+
+    /**
+     * @return numbers of the sent commands canceled before the receiver answered, by command name
+     */
+    @NonNull public Map<String, Long> getCommandCancellations() {
+      return commandCancellations;
+    }
+
+    /**
+     * @return all the metrics as JSON, e.g. to send them to an analytics backend
+     */
+    @NonNull public JSONObject toJson() {
+      JSONObject json = new JSONObject();
+      try {
+        json.put("sessionStart", sessionStart.toJson())
+            .put("sessionStartFailures", sessionStartFailures)
+            .put("loadToPlaying", loadToPlaying.toJson())
+            .put("bufferingStalls", bufferingStalls.toJson());
+        JSONObject commands = new JSONObject();
+        for (Map.Entry<String, LatencyHistogram.Snapshot> entry : commandRoundTrips.entrySet()) {
+          commands.put(entry.getKey(), entry.getValue().toJson());
+        }
+        json.put("commandRoundTrips", commands)
+            .put("commandTimeouts", new JSONObject(commandTimeouts))
+            .put("commandCancellations", new JSONObject(commandCancellations));
+      } catch (JSONException e) {
+        throw new IllegalStateException(e);
+      }
+      return json;
+    }
+
+    @Override public String toString() {
+      return toJson().toString();
+    }
+  }
+}
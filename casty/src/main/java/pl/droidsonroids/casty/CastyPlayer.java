@@ -1,15 +1,103 @@
 package pl.droidsonroids.casty;
 
+import android.os.SystemClock;
 import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import com.google.android.gms.cast.MediaInfo;
 import com.google.android.gms.cast.MediaLoadOptions;
+import com.google.android.gms.cast.MediaQueueItem;
+import com.google.android.gms.cast.MediaStatus;
+import com.google.android.gms.cast.MediaTrack;
 import com.google.android.gms.cast.framework.media.RemoteMediaClient;
-import timber.log.Timber;
+import com.google.android.gms.common.api.PendingResult;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public class CastyPlayer {
+  /**
+   * Default number of seconds before the end of the current queue item at which the receiver
+   * starts loading the next one
+   */
+  public static final double DEFAULT_QUEUE_PRELOAD_TIME = 20d;
+  /**
+   * Default number of milliseconds after which a command without response completes with
+   * {@link com.google.android.gms.common.api.CommonStatusCodes#TIMEOUT}
+   */
+  public static final long DEFAULT_COMMAND_TIMEOUT = 10000L;
+  /**
+   * Default minimum number of milliseconds between two consecutive seek or volume commands
+   */
+  public static final long DEFAULT_COALESCING_INTERVAL = 150L;
+
+  /**
+   * Number of queue items, starting from the played one, whose artwork is prefetched
+   */
+  private static final int PREFETCHED_QUEUE_ITEMS = 3;
+  /**
+   * Buffering which starts within this number of milliseconds after a seek is not a stall
+   */
+  private static final long SEEK_BUFFERING_WINDOW = 2000L;
+  private static final long RESUME_PROGRESS_PERIOD = CastyResumeIndex.PERSIST_DISTANCE / 2;
+  private static final int MAX_RESUME_KEYS = 64;
+  private static final String LOAD_TO_PLAYING_SECTION = "Casty load to playing";
+
   private RemoteMediaClient remoteMediaClient;
   private OnMediaLoadedListener onMediaLoadedListener;
+  private final ProgressListenerHub progressListenerHub = new ProgressListenerHub();
+  private final RemoteMediaClient.Callback playerStateCallback = new RemoteMediaClient.Callback() {
+    @Override public void onStatusUpdated() {
+      updatePlayerState();
+    }
+  };
+  private volatile PlayerState playerState = PlayerState.EMPTY;
+  private final PlaybackClock playbackClock = new PlaybackClock();
+  private CastyImageCache imageCache;
+  private CastyResumeIndex resumeIndex;
+  //resume keys of the loaded media whose content url is not their source, e.g. served files
+  private final LinkedHashMap<String, String> resumeKeys =
+      new LinkedHashMap<String, String>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+          return size() > MAX_RESUME_KEYS;
+        }
+      };
+  private final RemoteMediaClient.ProgressListener resumeProgressListener =
+      new RemoteMediaClient.ProgressListener() {
+        @Override public void onProgressUpdated(long progressMs, long durationMs) {
+          String contentId = playerState.getContentId();
+          if (resumeIndex != null && contentId != null) {
+            resumeIndex.update(getResumeKey(contentId), progressMs, durationMs);
+          }
+        }
+      };
+  private final CastyMetrics metrics = CastyMetrics.getInstance();
+  private final CastyFlightRecorder flightRecorder = CastyFlightRecorder.getInstance();
+  private CastyCommand pendingLoad;
+  private int pendingLoadTraceCookie;
+  private long stallStartTime = -1;
+  private long lastSeekTime = -SEEK_BUFFERING_WINDOW;
+  private double queuePreloadTime = DEFAULT_QUEUE_PRELOAD_TIME;
+  private long commandTimeout = DEFAULT_COMMAND_TIMEOUT;
+  private final PendingCommandBuffer pendingCommands = new PendingCommandBuffer();
+  private PlaylistQueueFeeder playlistFeeder;
+  private CastyQueue queue;
+  private boolean connecting;
+  private final CoalescingCommandQueue seekQueue =
+      new CoalescingCommandQueue("seek", new CoalescingCommandQueue.Dispatcher() {
+        @Override public PendingResult<RemoteMediaClient.MediaChannelResult> dispatch(
+            double value) {
+          return remoteMediaClient == null ? null : remoteMediaClient.seek((long) value);
+        }
+      }, DEFAULT_COALESCING_INTERVAL, DEFAULT_COMMAND_TIMEOUT);
+  private final CoalescingCommandQueue volumeQueue =
+      new CoalescingCommandQueue("setStreamVolume", new CoalescingCommandQueue.Dispatcher() {
+        @Override public PendingResult<RemoteMediaClient.MediaChannelResult> dispatch(
+            double value) {
+          return remoteMediaClient == null ? null : remoteMediaClient.setStreamVolume(value);
+        }
+      }, DEFAULT_COALESCING_INTERVAL, DEFAULT_COMMAND_TIMEOUT);
 
   //Needed for NoOp instance
   CastyPlayer() {
@@ -20,53 +108,388 @@ public class CastyPlayer {
     this.onMediaLoadedListener = onMediaLoadedListener;
   }
 
+  void setImageCache(CastyImageCache imageCache) {
+    this.imageCache = imageCache;
+  }
+
+  private void prefetchArtwork(MediaData mediaData) {
+    if (imageCache != null) imageCache.prefetch(mediaData);
+  }
+
+  private void prefetchArtwork(List<MediaData> mediaDataList, int startIndex) {
+    int end = Math.min(mediaDataList.size(), startIndex + PREFETCHED_QUEUE_ITEMS);
+    for (int i = Math.max(0, startIndex); i < end; i++) {
+      prefetchArtwork(mediaDataList.get(i));
+    }
+  }
+
+  /**
+   * Sets the index which records the position of the played media. Media loaded without a start
+   * position resumes from the recorded one.
+   *
+   * @param resumeIndex the index, e.g. {@link CastyResumeIndex#getInstance}, or null to disable
+   * resuming
+   */
+  @MainThread public void setResumeIndex(@Nullable CastyResumeIndex resumeIndex) {
+    this.resumeIndex = resumeIndex;
+    if (resumeIndex != null) {
+      progressListenerHub.add(resumeProgressListener, RESUME_PROGRESS_PERIOD);
+    } else {
+      progressListenerHub.remove(resumeProgressListener);
+    }
+  }
+
+  private long getResumePosition(@Nullable String resumeKey, long position) {
+    if (position > 0 || resumeIndex == null || resumeKey == null) return position;
+    return resumeIndex.getPosition(resumeKey);
+  }
+
+  private void rememberResumeKey(MediaData mediaData) {
+    String url = mediaData.getUrl();
+    String resumeKey = mediaData.getResumeKey();
+    if (url != null && resumeKey != null && !resumeKey.equals(url)) resumeKeys.put(url, resumeKey);
+  }
+
+  private String getResumeKey(String contentId) {
+    String resumeKey = resumeKeys.get(contentId);
+    return resumeKey != null ? resumeKey : contentId;
+  }
+
   void setRemoteMediaClient(RemoteMediaClient remoteMediaClient) {
+    if (this.remoteMediaClient != remoteMediaClient) {
+      seekQueue.reset();
+      volumeQueue.reset();
+      if (this.remoteMediaClient != null) {
+        this.remoteMediaClient.unregisterCallback(playerStateCallback);
+      }
+      if (remoteMediaClient != null) remoteMediaClient.registerCallback(playerStateCallback);
+    }
     this.remoteMediaClient = remoteMediaClient;
+    progressListenerHub.attach(remoteMediaClient);
+    if (queue != null) queue.attach(remoteMediaClient);
+    updatePlayerState();
+    if (remoteMediaClient != null) {
+      connecting = false;
+      pendingCommands.flush();
+    }
   }
 
-  public void addProgressListener(final RemoteMediaClient.ProgressListener progressListener,
-      final long period) {
-    remoteMediaClient.addProgressListener(progressListener, period);
+  /**
+   * While connecting, commands which need a connected device are buffered and replayed once
+   * {@link #setRemoteMediaClient} attaches the client, instead of being rejected
+   *
+   * @param connecting true when a session is starting or resuming, false if it failed or ended
+   */
+  void setConnecting(boolean connecting) {
+    this.connecting = connecting;
+    if (!connecting) pendingCommands.clear(CastyCommand.STATUS_NOT_CONNECTED);
   }
 
-  public void removeProgressListener(final RemoteMediaClient.ProgressListener progressListener) {
-    remoteMediaClient.removeProgressListener(progressListener);
+  /**
+   * Subscribes to progress updates. All subscribers share a single registration with the
+   * {@link RemoteMediaClient}, which runs at the shortest period currently subscribed. The
+   * subscription survives reconnections. Adding an already subscribed listener updates its period.
+   *
+   * @param progressListener Progress callback
+   * @param period Interval between updates in milliseconds, must be positive
+   */
+  @MainThread public void addProgressListener(
+      @NonNull final RemoteMediaClient.ProgressListener progressListener, final long period) {
+    progressListenerHub.add(progressListener, period);
+  }
+
+  /**
+   * Unsubscribes from progress updates
+   *
+   * @param progressListener Progress callback passed to {@link #addProgressListener}
+   */
+  @MainThread public void removeProgressListener(
+      final RemoteMediaClient.ProgressListener progressListener) {
+    progressListenerHub.remove(progressListener);
+  }
+
+  /**
+   * Gives the receiver queue for list UIs, which fetches only the items around the visible ones
+   *
+   * @return the queue, which follows the connected device, empty if not connected
+   */
+  @MainThread @NonNull public CastyQueue getQueue() {
+    if (queue == null) {
+      queue = new CastyQueue();
+      queue.attach(remoteMediaClient);
+    }
+    return queue;
+  }
+
+  private void updatePlayerState() {
+    boolean traced = CastyTrace.begin("Casty.updatePlayerState");
+    PlayerState previousState = playerState;
+    playerState = remoteMediaClient == null ? PlayerState.EMPTY
+        : PlayerState.from(remoteMediaClient.getMediaStatus());
+    playbackClock.update(playerState);
+    recordFlightEvent(previousState, playerState);
+    recordMetrics(previousState, playerState);
+    if (resumeIndex != null && previousState.getContentId() != null
+        && playerState.getIdleReason() == MediaStatus.IDLE_REASON_FINISHED
+        && previousState.getIdleReason() != MediaStatus.IDLE_REASON_FINISHED) {
+      resumeIndex.remove(getResumeKey(previousState.getContentId()));
+    }
+    if (playlistFeeder != null) feedPlaylist();
+    CastyTrace.end(traced);
+  }
+
+  private void recordFlightEvent(PlayerState previousState, PlayerState playerState) {
+    //player state and idle reason are both small, see MediaStatus
+    int code = playerState.getPlayerState() | playerState.getIdleReason() << 16;
+    if (playerState.getIdleReason() == MediaStatus.IDLE_REASON_ERROR
+        && previousState.getIdleReason() != MediaStatus.IDLE_REASON_ERROR) {
+      flightRecorder.recordError(CastyFlightRecorder.STATUS, null, code,
+          playerState.getPosition());
+    } else {
+      flightRecorder.record(CastyFlightRecorder.STATUS, code, playerState.getPosition());
+    }
+  }
+
+  private void recordMetrics(PlayerState previousState, PlayerState playerState) {
+    if (remoteMediaClient == null) {
+      clearPendingLoad();
+      stallStartTime = -1;
+      return;
+    }
+    long now = SystemClock.elapsedRealtime();
+    if (pendingLoad != null) {
+      if (playerState.isPlaying()) {
+        metrics.recordLoadToPlaying(now - pendingLoad.getSendTime());
+        clearPendingLoad();
+      } else if (pendingLoad.isDone()
+          && (!pendingLoad.isSuccessful() || playerState.isPaused())) {
+        //failed or loaded without autoplay
+        clearPendingLoad();
+      }
+    }
+    if (stallStartTime >= 0) {
+      if (!playerState.isBuffering()) {
+        metrics.recordBufferingStall(now - stallStartTime);
+        stallStartTime = -1;
+      }
+    } else if (previousState.isPlaying() && playerState.isBuffering() && pendingLoad == null
+        && now - lastSeekTime > SEEK_BUFFERING_WINDOW) {
+      stallStartTime = now;
+    }
+  }
+
+  private CastyCommand trackLoad(CastyCommand command) {
+    if (command.isSent() && !command.isDone()) {
+      clearPendingLoad();
+      pendingLoad = command;
+      pendingLoadTraceCookie = CastyTrace.beginAsync(LOAD_TO_PLAYING_SECTION);
+    }
+    return command;
+  }
+
+  private void clearPendingLoad() {
+    if (pendingLoad == null) return;
+    CastyTrace.endAsync(LOAD_TO_PLAYING_SECTION, pendingLoadTraceCookie);
+    pendingLoadTraceCookie = 0;
+    pendingLoad = null;
+  }
+
+  /**
+   * Gives the local playback clock, which extrapolates the stream position between status
+   * updates. Use it to drive a smooth seek bar instead of a short progress listener period.
+   *
+   * @return the playback clock
+   */
+  @NonNull public PlaybackClock getPlaybackClock() {
+    return playbackClock;
+  }
+
+  /**
+   * Gives the snapshot of the receiver status taken at the latest status update. It can be read
+   * from any thread and does not query the receiver.
+   *
+   * @return the latest player state
+   */
+  @NonNull public PlayerState getPlayerState() {
+    return playerState;
+  }
+
+  /**
+   * Sets how long commands wait for the receiver response before they complete with
+   * {@link com.google.android.gms.common.api.CommonStatusCodes#TIMEOUT}
+   *
+   * @param commandTimeout timeout in milliseconds, 0 waits indefinitely
+   */
+  public void setCommandTimeout(long commandTimeout) {
+    this.commandTimeout = Math.max(0L, commandTimeout);
+    seekQueue.setTimeout(this.commandTimeout);
+    volumeQueue.setTimeout(this.commandTimeout);
+  }
+
+  /**
+   * Sets the minimum interval between two consecutive seek or volume commands. Commands issued
+   * faster, e.g. while the user drags a slider, are coalesced so that only the latest one is sent.
+   *
+   * @param coalescingInterval interval in milliseconds
+   */
+  public void setCoalescingInterval(long coalescingInterval) {
+    seekQueue.setMinInterval(Math.max(0L, coalescingInterval));
+    volumeQueue.setMinInterval(Math.max(0L, coalescingInterval));
   }
 
   /**
    * Plays the current media file if it is paused
+   *
+   * @return the command completion handle
    */
-  public void play() {
-    if (isPaused()) remoteMediaClient.play();
+  @MainThread public CastyCommand play() {
+    if (!isPaused()) return rejectCommand("play");
+    return sendCommand("play", remoteMediaClient.play());
   }
 
   /**
    * Pauses the current media file if it is playing
+   *
+   * @return the command completion handle
    */
-  public void pause() {
-    if (isPlaying()) remoteMediaClient.pause();
+  @MainThread public CastyCommand pause() {
+    if (!isPlaying()) return rejectCommand("pause");
+    return sendCommand("pause", remoteMediaClient.pause());
   }
 
   /**
-   * Seeks the current media file
+   * Seeks the current media file. While a seek is in flight only the latest requested position is
+   * kept, older ones complete with {@link com.google.android.gms.cast.CastStatusCodes#REPLACED}.
    *
    * @param time the number of milliseconds to seek by
+   * @return the command completion handle
    */
-  public void seek(long time) {
-    if (remoteMediaClient != null) remoteMediaClient.seek(time);
+  @MainThread public CastyCommand seek(final long time) {
+    if (remoteMediaClient == null) {
+      return bufferCommand("seek", false, new PendingCommandBuffer.Replayer() {
+        @Override public CastyCommand replay() {
+          return seek(time);
+        }
+      });
+    }
+    lastSeekTime = SystemClock.elapsedRealtime();
+    return seekQueue.submit(time);
+  }
+
+  /**
+   * Sets the stream volume of the current media file. While a volume change is in flight only the
+   * latest requested level is kept, older ones complete with
+   * {@link com.google.android.gms.cast.CastStatusCodes#REPLACED}.
+   *
+   * @param volume volume level between 0 and 1
+   * @return the command completion handle
+   */
+  @MainThread public CastyCommand setVolume(final double volume) {
+    if (remoteMediaClient == null) {
+      return bufferCommand("setStreamVolume", false, new PendingCommandBuffer.Replayer() {
+        @Override public CastyCommand replay() {
+          return setVolume(volume);
+        }
+      });
+    }
+    return volumeQueue.submit(Math.max(0d, Math.min(1d, volume)));
+  }
+
+  /**
+   * Sets the active tracks of the current media file in a single request, replacing all the
+   * previously active ones
+   *
+   * @param trackIds ids of the tracks to activate, none to deactivate all of them. Tracks added to
+   * {@link MediaData.Builder} are numbered from 1 in the order of adding.
+   * @return the command completion handle
+   */
+  @MainThread public CastyCommand setActiveTracks(@NonNull final long... trackIds) {
+    if (remoteMediaClient == null) {
+      return bufferCommand("setActiveMediaTracks", false, new PendingCommandBuffer.Replayer() {
+        @Override public CastyCommand replay() {
+          return setActiveTracks(trackIds);
+        }
+      });
+    }
+    return sendCommand("setActiveMediaTracks",
+        remoteMediaClient.setActiveMediaTracks(trackIds.clone()));
+  }
+
+  /**
+   * Switches the text and audio tracks of the current media file by language in a single
+   * request. A track in the same language and region is preferred, e.g. "en-GB" over "en-US" for
+   * "en-GB". Other active tracks, e.g. video, stay active.
+   *
+   * @param textLanguage BCP 47 language tag of the text track or null to turn text tracks off
+   * @param audioLanguage BCP 47 language tag of the audio track or null to keep the active one
+   * @return the command completion handle, which fails with
+   * {@link CastyCommand#STATUS_INVALID_REQUEST} if there is no track in a requested language
+   */
+  @MainThread public CastyCommand setActiveTracks(@Nullable final String textLanguage,
+      @Nullable final String audioLanguage) {
+    if (remoteMediaClient == null) {
+      return bufferCommand("setActiveMediaTracks", false, new PendingCommandBuffer.Replayer() {
+        @Override public CastyCommand replay() {
+          return setActiveTracks(textLanguage, audioLanguage);
+        }
+      });
+    }
+    MediaInfo mediaInfo = remoteMediaClient.getMediaInfo();
+    MediaStatus mediaStatus = remoteMediaClient.getMediaStatus();
+    List<MediaTrack> mediaTracks = mediaInfo == null ? null : mediaInfo.getMediaTracks();
+    long[] trackIds = mediaTracks == null ? null : TrackSelection.select(mediaTracks,
+        mediaStatus == null ? null : mediaStatus.getActiveTrackIds(), textLanguage,
+        audioLanguage);
+    if (trackIds == null) {
+      if (textLanguage != null || audioLanguage != null) {
+        return rejectCommand("setActiveMediaTracks");
+      }
+      //no tracks described, nothing to keep active
+      trackIds = new long[0];
+    }
+    if (CastyLog.isLoggable()) {
+      CastyLog.d("setActiveTracks(), text:[%s], audio:[%s], ids:[%s]", textLanguage,
+          audioLanguage, Arrays.toString(trackIds));
+    }
+    return sendCommand("setActiveMediaTracks", remoteMediaClient.setActiveMediaTracks(trackIds));
   }
 
   /**
    * Tries to play or pause the current media file, depending of the current state
+   *
+   * @return the command completion handle
    */
-  public void togglePlayPause() {
+  @MainThread public CastyCommand togglePlayPause() {
     if (remoteMediaClient != null) {
-      if (remoteMediaClient.isPlaying()) {
-        remoteMediaClient.pause();
-      } else if (remoteMediaClient.isPaused()) {
-        remoteMediaClient.play();
+      if (isPlaying()) {
+        return sendCommand("pause", remoteMediaClient.pause());
+      } else if (isPaused()) {
+        return sendCommand("play", remoteMediaClient.play());
       }
     }
+    return rejectCommand("togglePlayPause");
+  }
+
+  private CastyCommand sendCommand(String name,
+      PendingResult<RemoteMediaClient.MediaChannelResult> pendingResult) {
+    return CastyCommand.send(name, pendingResult, commandTimeout);
+  }
+
+  private CastyCommand rejectCommand(String name) {
+    return CastyCommand.failed(name, remoteMediaClient == null ? CastyCommand.STATUS_NOT_CONNECTED
+        : CastyCommand.STATUS_INVALID_REQUEST);
+  }
+
+  /**
+   * @return true if the command was sent or waits to be sent, e.g. while connecting
+   */
+  private static boolean isAccepted(CastyCommand command) {
+    return command.isSent() || !command.isDone();
+  }
+
+  private CastyCommand bufferCommand(String name, boolean replacesAll,
+      PendingCommandBuffer.Replayer replayer) {
+    return connecting ? pendingCommands.add(name, replacesAll, replayer) : rejectCommand(name);
   }
 
   /**
@@ -75,7 +498,7 @@ public class CastyPlayer {
    * @return true if the media file is playing, false otherwise
    */
   public boolean isPlaying() {
-    return remoteMediaClient != null && remoteMediaClient.isPlaying();
+    return playerState.isPlaying();
   }
 
   /**
@@ -84,7 +507,7 @@ public class CastyPlayer {
    * @return true if the media file is paused, false otherwise
    */
   public boolean isPaused() {
-    return remoteMediaClient != null && remoteMediaClient.isPaused();
+    return playerState.isPaused();
   }
 
   /**
@@ -93,7 +516,7 @@ public class CastyPlayer {
    * @return true if the media file is buffering, false otherwise
    */
   public boolean isBuffering() {
-    return remoteMediaClient != null && remoteMediaClient.isBuffering();
+    return playerState.isBuffering();
   }
 
   /**
@@ -104,7 +527,7 @@ public class CastyPlayer {
    * @see MediaData
    */
   @MainThread public boolean loadMediaAndPlay(@NonNull MediaData mediaData) {
-    return loadMediaAndPlay(mediaData.createMediaInfo(), mediaData.autoPlay, mediaData.position);
+    return isAccepted(loadMedia(mediaData));
   }
 
   /**
@@ -115,7 +538,7 @@ public class CastyPlayer {
    * @see MediaInfo
    */
   @MainThread public boolean loadMediaAndPlay(@NonNull MediaInfo mediaInfo) {
-    return loadMediaAndPlay(mediaInfo, true, 0);
+    return loadMediaAndPlay(mediaInfo, true, getResumePosition(mediaInfo.getContentId(), 0));
   }
 
   /**
@@ -129,6 +552,35 @@ public class CastyPlayer {
    */
   @MainThread public boolean loadMediaAndPlay(@NonNull MediaInfo mediaInfo, boolean autoPlay,
       long position) {
+    return isAccepted(loadMedia(mediaInfo, autoPlay, position));
+  }
+
+  /**
+   * Loads the media file and plays it in the {@link ExpandedControlsActivity}
+   *
+   * @param mediaData Information about the media
+   * @return the command completion handle
+   * @see MediaData
+   */
+  @MainThread public CastyCommand loadMedia(@NonNull MediaData mediaData) {
+    prefetchArtwork(mediaData);
+    rememberResumeKey(mediaData);
+    return loadMedia(mediaData.createMediaInfo(), mediaData.autoPlay,
+        getResumePosition(mediaData.getResumeKey(), mediaData.position));
+  }
+
+  /**
+   * Loads the media file and plays it in the {@link ExpandedControlsActivity}
+   *
+   * @param mediaInfo Information about the media
+   * @param autoPlay True if the media file should start automatically
+   * @param position Start position of video in milliseconds
+   * @return the command completion handle
+   * @see MediaInfo
+   */
+  @MainThread public CastyCommand loadMedia(@NonNull MediaInfo mediaInfo, boolean autoPlay,
+      long position) {
+    closePlaylistFeeder();
     return playMediaBaseMethod(mediaInfo, autoPlay, position, false);
   }
 
@@ -140,8 +592,10 @@ public class CastyPlayer {
    * @see MediaData
    */
   @MainThread public boolean loadMediaAndPlayInBackground(@NonNull MediaData mediaData) {
+    prefetchArtwork(mediaData);
+    rememberResumeKey(mediaData);
     return loadMediaAndPlayInBackground(mediaData.createMediaInfo(), mediaData.autoPlay,
-        mediaData.position);
+        getResumePosition(mediaData.getResumeKey(), mediaData.position));
   }
 
   /**
@@ -152,7 +606,8 @@ public class CastyPlayer {
    * @see MediaInfo
    */
   @MainThread public boolean loadMediaAndPlayInBackground(@NonNull MediaInfo mediaInfo) {
-    return loadMediaAndPlayInBackground(mediaInfo, true, 0);
+    return loadMediaAndPlayInBackground(mediaInfo, true,
+        getResumePosition(mediaInfo.getContentId(), 0));
   }
 
   /**
@@ -166,60 +621,323 @@ public class CastyPlayer {
    */
   @MainThread public boolean loadMediaAndPlayInBackground(@NonNull MediaInfo mediaInfo,
       boolean autoPlay, long position) {
+    return isAccepted(loadMediaInBackground(mediaInfo, autoPlay, position));
+  }
+
+  /**
+   * Loads the media file and plays it in background
+   *
+   * @param mediaInfo Information about the media
+   * @param autoPlay True if the media file should start automatically
+   * @param position Start position of video in milliseconds
+   * @return the command completion handle
+   * @see MediaInfo
+   */
+  @MainThread public CastyCommand loadMediaInBackground(@NonNull MediaInfo mediaInfo,
+      boolean autoPlay, long position) {
+    closePlaylistFeeder();
     return playMediaBaseMethod(mediaInfo, autoPlay, position, true);
   }
 
-  private boolean playMediaBaseMethod(MediaInfo mediaInfo, boolean autoPlay, long position,
+  /**
+   * Sets how long before the end of the current queue item the receiver should start loading
+   * the next one. Applies to queues loaded or appended after this call.
+   *
+   * @param queuePreloadTime lead time in seconds, 0 disables preloading
+   */
+  public void setQueuePreloadTime(double queuePreloadTime) {
+    this.queuePreloadTime = Math.max(0d, queuePreloadTime);
+  }
+
+  /**
+   * Tries to load the whole list as a receiver queue in a single request and play it from the
+   * first item in the {@link ExpandedControlsActivity}
+   *
+   * @param mediaDataList Information about the queued media
+   * @return the command completion handle, failed with {@link CastyCommand#STATUS_INVALID_REQUEST}
+   * if the list is empty or with {@link CastyCommand#STATUS_NOT_CONNECTED} if no device is
+   * connected or connecting
+   * @see MediaData
+   */
+  @MainThread public CastyCommand loadQueue(@NonNull List<MediaData> mediaDataList) {
+    return loadQueue(mediaDataList, 0);
+  }
+
+  /**
+   * Tries to load the whole list as a receiver queue in a single request and play it in the
+   * {@link ExpandedControlsActivity}
+   *
+   * @param mediaDataList Information about the queued media
+   * @param startIndex Index of the item which should be played first
+   * @return the command completion handle, failed with {@link CastyCommand#STATUS_INVALID_REQUEST}
+   * if the list is empty or with {@link CastyCommand#STATUS_NOT_CONNECTED} if no device is
+   * connected or connecting
+   * @throws IndexOutOfBoundsException if the list is not empty and the start index is out of its
+   * range
+   * @see MediaData
+   */
+  @MainThread public CastyCommand loadQueue(@NonNull List<MediaData> mediaDataList, int startIndex) {
+    return loadQueue(mediaDataList, startIndex, MediaStatus.REPEAT_MODE_REPEAT_OFF);
+  }
+
+  /**
+   * Tries to load the whole list as a receiver queue in a single request and play it in the
+   * {@link ExpandedControlsActivity}
+   *
+   * @param mediaDataList Information about the queued media
+   * @param startIndex Index of the item which should be played first
+   * @param repeatMode One of the {@code MediaStatus.REPEAT_MODE_*} constants
+   * @return the command completion handle, failed with {@link CastyCommand#STATUS_INVALID_REQUEST}
+   * if the list is empty or with {@link CastyCommand#STATUS_NOT_CONNECTED} if no device is
+   * connected or connecting
+   * @throws IndexOutOfBoundsException if the list is not empty and the start index is out of its
+   * range
+   * @see MediaData
+   */
+  @MainThread public CastyCommand loadQueue(@NonNull List<MediaData> mediaDataList, int startIndex,
+      int repeatMode) {
+    checkStartIndex(mediaDataList, startIndex);
+    closePlaylistFeeder();
+    prefetchArtwork(mediaDataList, startIndex);
+    return queueLoadBaseMethod(createQueueItems(mediaDataList), startIndex, repeatMode, false);
+  }
+
+  /**
+   * Tries to load the whole list as a receiver queue in a single request and play it in
+   * background
+   *
+   * @param mediaDataList Information about the queued media
+   * @param startIndex Index of the item which should be played first
+   * @return the command completion handle, failed with {@link CastyCommand#STATUS_INVALID_REQUEST}
+   * if the list is empty or with {@link CastyCommand#STATUS_NOT_CONNECTED} if no device is
+   * connected or connecting
+   * @throws IndexOutOfBoundsException if the list is not empty and the start index is out of its
+   * range
+   * @see MediaData
+   */
+  @MainThread public CastyCommand loadQueueInBackground(@NonNull List<MediaData> mediaDataList,
+      int startIndex) {
+    checkStartIndex(mediaDataList, startIndex);
+    closePlaylistFeeder();
+    prefetchArtwork(mediaDataList, startIndex);
+    return queueLoadBaseMethod(createQueueItems(mediaDataList), startIndex,
+        MediaStatus.REPEAT_MODE_REPEAT_OFF, true);
+  }
+
+  /**
+   * Loads the playlist as a receiver queue and plays it from the first item in the
+   * {@link ExpandedControlsActivity}. The playlist is read in background in small batches, only
+   * a few media after the played one are read and queued at a time, so it may be arbitrarily
+   * long. Loading other media stops reading the playlist.
+   *
+   * @param playlist playlist to play, closed when it ends or another media is loaded
+   * @return the command completion handle of the load of the first batch
+   */
+  @MainThread public CastyCommand loadQueue(@NonNull CastyPlaylist playlist) {
+    closePlaylistFeeder();
+    final CastyCommand command = CastyCommand.pending("queueLoad");
+    final PlaylistQueueFeeder feeder = new PlaylistQueueFeeder(playlist);
+    playlistFeeder = feeder;
+    feeder.read(new PlaylistQueueFeeder.OnItemsReadListener() {
+      @Override public void onItemsRead(@NonNull List<MediaData> items) {
+        if (items.isEmpty()) {
+          closePlaylistFeeder();
+          command.complete(CastyCommand.STATUS_INVALID_REQUEST);
+          return;
+        }
+        prefetchArtwork(items, 0);
+        queueLoadBaseMethod(createQueueItems(items), 0, MediaStatus.REPEAT_MODE_REPEAT_OFF, false)
+            .setOnCompleteListener(new CastyCommand.OnCompleteListener() {
+              @Override public void onComplete(@NonNull CastyCommand loadCommand) {
+                if (!loadCommand.isSuccessful() && playlistFeeder == feeder) closePlaylistFeeder();
+                command.completeWith(loadCommand);
+              }
+            });
+      }
+    });
+    return command;
+  }
+
+  private void feedPlaylist() {
+    final PlaylistQueueFeeder feeder = playlistFeeder;
+    if (playerState.hasMedia()) feeder.onPlaying(playerState.getContentId());
+    if (!feeder.needsMore()) return;
+    feeder.read(new PlaylistQueueFeeder.OnItemsReadListener() {
+      @Override public void onItemsRead(@NonNull List<MediaData> items) {
+        if (!items.isEmpty()) appendToQueue(items);
+      }
+    });
+  }
+
+  private void closePlaylistFeeder() {
+    if (playlistFeeder == null) return;
+    playlistFeeder.close();
+    playlistFeeder = null;
+  }
+
+  /**
+   * Appends the media file at the end of the current receiver queue
+   *
+   * @param mediaData Information about the media
+   * @return the command completion handle
+   * @see MediaData
+   */
+  @MainThread public CastyCommand appendToQueue(@NonNull final MediaData mediaData) {
+    if (remoteMediaClient == null) {
+      return bufferCommand("queueAppendItem", false, new PendingCommandBuffer.Replayer() {
+        @Override public CastyCommand replay() {
+          return appendToQueue(mediaData);
+        }
+      });
+    }
+    prefetchArtwork(mediaData);
+    rememberResumeKey(mediaData);
+    return sendCommand("queueAppendItem",
+        remoteMediaClient.queueAppendItem(mediaData.createMediaQueueItem(queuePreloadTime), null));
+  }
+
+  /**
+   * Appends the media files at the end of the current receiver queue in a single request
+   *
+   * @param mediaDataList Information about the media
+   * @return the command completion handle
+   * @see MediaData
+   */
+  @MainThread public CastyCommand appendToQueue(@NonNull final List<MediaData> mediaDataList) {
+    if (mediaDataList.isEmpty()) return rejectCommand("queueInsertItems");
+    if (remoteMediaClient == null) {
+      return bufferCommand("queueInsertItems", false, new PendingCommandBuffer.Replayer() {
+        @Override public CastyCommand replay() {
+          return appendToQueue(mediaDataList);
+        }
+      });
+    }
+    prefetchArtwork(mediaDataList, 0);
+    return sendCommand("queueInsertItems",
+        remoteMediaClient.queueInsertItems(createQueueItems(mediaDataList),
+            MediaQueueItem.INVALID_ITEM_ID, null));
+  }
+
+  //checked before anything else, so that the outcome does not depend on the connection state
+  private static void checkStartIndex(List<MediaData> mediaDataList, int startIndex) {
+    if (!mediaDataList.isEmpty() && (startIndex < 0 || startIndex >= mediaDataList.size())) {
+      throw new IndexOutOfBoundsException("startIndex " + startIndex
+          + " out of range for queue of size " + mediaDataList.size());
+    }
+  }
+
+  private MediaQueueItem[] createQueueItems(List<MediaData> mediaDataList) {
+    MediaQueueItem[] queueItems = new MediaQueueItem[mediaDataList.size()];
+    for (int i = 0; i < queueItems.length; i++) {
+      MediaData mediaData = mediaDataList.get(i);
+      rememberResumeKey(mediaData);
+      queueItems[i] = mediaData.createMediaQueueItem(queuePreloadTime);
+    }
+    return queueItems;
+  }
+
+  private CastyCommand queueLoadBaseMethod(MediaQueueItem[] queueItems, int startIndex,
+      int repeatMode, boolean inBackground) {
+    boolean traced = CastyTrace.begin("Casty.queueLoad");
+    try {
+      return queueLoadInternal(queueItems, startIndex, repeatMode, inBackground);
+    } finally {
+      CastyTrace.end(traced);
+    }
+  }
+
+  private CastyCommand queueLoadInternal(final MediaQueueItem[] queueItems, final int startIndex,
+      final int repeatMode, final boolean inBackground) {
+    if (CastyLog.isLoggable()) {
+      CastyLog.d(
+          "queueLoadBaseMethod(), size:[%s], startIndex:[%s], repeatMode:[%s], inBackground:[%s], remoteMediaClient:[%s]",
+          queueItems.length, startIndex, repeatMode, inBackground, remoteMediaClient);
+    }
+    if (queueItems.length == 0) {
+      return CastyCommand.failed("queueLoad", CastyCommand.STATUS_INVALID_REQUEST);
+    }
+    if (remoteMediaClient == null && !connecting) return rejectCommand("queueLoad");
+    if (remoteMediaClient == null) {
+      return bufferCommand("queueLoad", true, new PendingCommandBuffer.Replayer() {
+        @Override public CastyCommand replay() {
+          return queueLoadBaseMethod(queueItems, startIndex, repeatMode, inBackground);
+        }
+      });
+    }
+    if (!inBackground) {
+      remoteMediaClient.registerCallback(createRemoteMediaClientListener());
+    }
+    return trackLoad(sendCommand("queueLoad",
+        remoteMediaClient.queueLoad(queueItems, startIndex, repeatMode, null)));
+  }
+
+  private CastyCommand playMediaBaseMethod(MediaInfo mediaInfo, boolean autoPlay, long position,
       boolean inBackground) {
-    Timber.d(
-        "playMediaBaseMethod(), url:[%s], mediaInfo:[%s], autoPlay:[%s], position:[%s] inBackground:[%s], remoteMediaClient:[%s]",
-        mediaInfo.getContentId(), mediaInfo.toJson(), autoPlay, position, inBackground, remoteMediaClient);
+    boolean traced = CastyTrace.begin("Casty.load");
+    try {
+      return playMediaInternal(mediaInfo, autoPlay, position, inBackground);
+    } finally {
+      CastyTrace.end(traced);
+    }
+  }
+
+  private CastyCommand playMediaInternal(final MediaInfo mediaInfo, final boolean autoPlay,
+      final long position, final boolean inBackground) {
+    if (CastyLog.isLoggable()) {
+      CastyLog.d(
+          "playMediaBaseMethod(), url:[%s], mediaInfo:[%s], autoPlay:[%s], position:[%s] inBackground:[%s], remoteMediaClient:[%s]",
+          mediaInfo.getContentId(), mediaInfo.toJson(), autoPlay, position, inBackground,
+          remoteMediaClient);
+    }
     if (remoteMediaClient == null) {
-      return false;
+      return bufferCommand("load", true, new PendingCommandBuffer.Replayer() {
+        @Override public CastyCommand replay() {
+          return playMediaBaseMethod(mediaInfo, autoPlay, position, inBackground);
+        }
+      });
     }
     if (!inBackground) {
       remoteMediaClient.registerCallback(createRemoteMediaClientListener());
     }
-    remoteMediaClient.load(mediaInfo,
-        new MediaLoadOptions.Builder().setPlayPosition(position).setAutoplay(autoPlay).build());
     //remoteMediaClient.load(mediaInfo, autoPlay, position);
-    return true;
+    return trackLoad(sendCommand("load", remoteMediaClient.load(mediaInfo,
+        new MediaLoadOptions.Builder().setPlayPosition(position).setAutoplay(autoPlay).build())));
   }
 
   private RemoteMediaClient.Callback createRemoteMediaClientListener() {
     return new RemoteMediaClient.Callback() {
       @Override public void onStatusUpdated() {
-        Timber.d("onStatusUpdated");
+        CastyLog.d("onStatusUpdated");
         onMediaLoadedListener.onMediaLoaded();
         remoteMediaClient.unregisterCallback(this);
       }
 
       @Override public void onMetadataUpdated() {
-        Timber.d("onMetadataUpdated");
+        CastyLog.d("onMetadataUpdated");
 
         //no-op
       }
 
       @Override public void onQueueStatusUpdated() {
-        Timber.d("onQueueStatusUpdated");
+        CastyLog.d("onQueueStatusUpdated");
 
         //no-op
       }
 
       @Override public void onPreloadStatusUpdated() {
-        Timber.d("onPreloadStatusUpdated");
+        CastyLog.d("onPreloadStatusUpdated");
 
         //no-op
       }
 
       @Override public void onSendingRemoteMediaRequest() {
-        Timber.d("onSendingRemoteMediaRequest");
+        CastyLog.d("onSendingRemoteMediaRequest");
 
         //no-op
       }
 
       @Override public void onAdBreakStatusUpdated() {
-        Timber.d("onAdBreakStatusUpdated");
+        CastyLog.d("onAdBreakStatusUpdated");
 
         //no-op
       }
@@ -2,26 +2,64 @@ package pl.droidsonroids.casty;
 
 import androidx.annotation.NonNull;
 import com.google.android.gms.cast.MediaInfo;
+import com.google.android.gms.cast.framework.media.RemoteMediaClient;
+import java.io.IOException;
+import java.util.List;
 
 class CastyPlayerNoOp extends CastyPlayer {
     @Override
-    public void play() {
+    public void addProgressListener(@NonNull RemoteMediaClient.ProgressListener progressListener, long period) {
         //no-op
     }
 
     @Override
-    public void pause() {
+    public void removeProgressListener(RemoteMediaClient.ProgressListener progressListener) {
         //no-op
     }
 
     @Override
-    public void seek(long time) {
+    public void setResumeIndex(CastyResumeIndex resumeIndex) {
         //no-op
     }
 
     @Override
-    public void togglePlayPause() {
-        //no-op
+    public CastyQueue getQueue() {
+        return new CastyQueue();
+    }
+
+    @Override
+    public CastyCommand play() {
+        return CastyCommand.failed("play", CastyCommand.STATUS_NOT_CONNECTED);
+    }
+
+    @Override
+    public CastyCommand pause() {
+        return CastyCommand.failed("pause", CastyCommand.STATUS_NOT_CONNECTED);
+    }
+
+    @Override
+    public CastyCommand seek(long time) {
+        return CastyCommand.failed("seek", CastyCommand.STATUS_NOT_CONNECTED);
+    }
+
+    @Override
+    public CastyCommand setVolume(double volume) {
+        return CastyCommand.failed("setStreamVolume", CastyCommand.STATUS_NOT_CONNECTED);
+    }
+
+    @Override
+    public CastyCommand setActiveTracks(@NonNull long... trackIds) {
+        return CastyCommand.failed("setActiveMediaTracks", CastyCommand.STATUS_NOT_CONNECTED);
+    }
+
+    @Override
+    public CastyCommand setActiveTracks(String textLanguage, String audioLanguage) {
+        return CastyCommand.failed("setActiveMediaTracks", CastyCommand.STATUS_NOT_CONNECTED);
+    }
+
+    @Override
+    public CastyCommand togglePlayPause() {
+        return CastyCommand.failed("togglePlayPause", CastyCommand.STATUS_NOT_CONNECTED);
     }
 
     @Override
@@ -54,6 +92,16 @@ class CastyPlayerNoOp extends CastyPlayer {
         return false;
     }
 
+    @Override
+    public CastyCommand loadMedia(@NonNull MediaInfo mediaInfo, boolean autoPlay, long position) {
+        return CastyCommand.failed("load", CastyCommand.STATUS_NOT_CONNECTED);
+    }
+
+    @Override
+    public CastyCommand loadMediaInBackground(@NonNull MediaInfo mediaInfo, boolean autoPlay, long position) {
+        return CastyCommand.failed("load", CastyCommand.STATUS_NOT_CONNECTED);
+    }
+
     @Override
     public boolean loadMediaAndPlayInBackground(@NonNull MediaData mediaData) {
         return false;
@@ -68,4 +116,49 @@ class CastyPlayerNoOp extends CastyPlayer {
     public boolean loadMediaAndPlayInBackground(@NonNull MediaInfo mediaInfo, boolean autoPlay, long position) {
         return false;
     }
+
+    @Override
+    public void setCommandTimeout(long commandTimeout) {
+        //no-op
+    }
+
+    @Override
+    public void setCoalescingInterval(long coalescingInterval) {
+        //no-op
+    }
+
+    @Override
+    public void setQueuePreloadTime(double queuePreloadTime) {
+        //no-op
+    }
+
+    @Override
+    public CastyCommand loadQueue(@NonNull List<MediaData> mediaDataList, int startIndex, int repeatMode) {
+        return CastyCommand.failed("queueLoad", CastyCommand.STATUS_NOT_CONNECTED);
+    }
+
+    @Override
+    public CastyCommand loadQueueInBackground(@NonNull List<MediaData> mediaDataList, int startIndex) {
+        return CastyCommand.failed("queueLoad", CastyCommand.STATUS_NOT_CONNECTED);
+    }
+
+    @Override
+    public CastyCommand loadQueue(@NonNull CastyPlaylist playlist) {
+        try {
+            playlist.close();
+        } catch (IOException ignored) {
+            //no-op
+        }
+        return CastyCommand.failed("queueLoad", CastyCommand.STATUS_NOT_CONNECTED);
+    }
+
+    @Override
+    public CastyCommand appendToQueue(@NonNull MediaData mediaData) {
+        return CastyCommand.failed("queueAppendItem", CastyCommand.STATUS_NOT_CONNECTED);
+    }
+
+    @Override
+    public CastyCommand appendToQueue(@NonNull List<MediaData> mediaDataList) {
+        return CastyCommand.failed("queueInsertItems", CastyCommand.STATUS_NOT_CONNECTED);
+    }
 }
@@ -0,0 +1,426 @@
+package pl.droidsonroids.casty;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import com.google.android.gms.cast.MediaTrack;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Locale;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Playlist read incrementally from a stream, one {@link MediaData} at a time, so that memory use
+ * does not depend on the playlist size. Pass it to {@link CastyPlayer#loadQueue(CastyPlaylist)}
+ * to cast it, or read the media with {@link #next()}.
+ * <p>
+ * M3U and M3U8 playlists are read with the {@code #EXTINF} duration, title and {@code tvg-logo}
+ * artwork. Entries with the duration of -1 are live streams. JSON playlists are either an array of
+ * items or an object with an {@code items} array, where every item is an object with:
+ * <ul>
+ * <li>{@code url}, required</li>
+ * <li>{@code contentType}, guessed from the url extension if missing</li>
+ * <li>{@code streamType}: {@code "buffered"} (default), {@code "live"} or {@code "none"}</li>
+ * <li>{@code duration} and {@code position} in milliseconds, {@code autoPlay}</li>
+ * <li>{@code mediaType}: {@code "generic"} (default), {@code "movie"}, {@code "tvShow"},
+ * {@code "musicTrack"}, {@code "photo"} or {@code "user"}</li>
+ * <li>{@code title}, {@code subtitle} and {@code images}, an array of urls</li>
+ * <li>{@code subtitles}, an array of objects with {@code url} and {@code language}</li>
+ * <li>{@code metadata}, an object of {@code MediaMetadata} keys to string or number values</li>
+ * <li>{@code customData}, any object passed to the receiver application</li>
+ * </ul>
+ * Unknown fields and items without url are skipped.
+ */
+public final class CastyPlaylist implements Closeable {
+  private final Parser parser;
+
+  private CastyPlaylist(Parser parser) {
+    this.parser = parser;
+  }
+
+  /**
+   * @param inputStream M3U or M3U8 playlist, closed with this playlist
+   * @param baseUrl url relative entries are resolved against, usually the playlist url, may be
+   * null if all the entries are absolute
+   * @return the playlist
+   */
+  @NonNull public static CastyPlaylist fromM3u(@NonNull InputStream inputStream,
+      @Nullable String baseUrl) {
+    return new CastyPlaylist(new M3uParser(inputStream, baseUrl));
+  }
+
+  /**
+   * @param inputStream JSON playlist, closed with this playlist
+   * @return the playlist
+   */
+  @NonNull public static CastyPlaylist fromJson(@NonNull InputStream inputStream) {
+    return new CastyPlaylist(new JsonParser(inputStream));
+  }
+
+  /**
+   * Reads the next media of the playlist
+   *
+   * @return the media or null at the end of the playlist
+   * @throws IOException if the stream cannot be read or the playlist is malformed
+   */
+  @WorkerThread @Nullable public MediaData next() throws IOException {
+    return parser.next();
+  }
+
+  @Override public void close() throws IOException {
+    parser.close();
+  }
+
+  private static String guessContentType(String url) {
+    String path = url;
+    int queryStart = path.indexOf('?');
+    if (queryStart >= 0) path = path.substring(0, queryStart);
+    return CastyMediaServer.getMimeType(path.substring(path.lastIndexOf('/') + 1), null);
+  }
+
+  private interface Parser extends Closeable {
+    @Nullable MediaData next() throws IOException;
+  }
+
+  private static final class M3uParser implements Parser {
+    private final BufferedReader reader;
+    private final URL baseUrl;
+
+    M3uParser(InputStream inputStream, @Nullable String baseUrl) {
+      try {
+        reader = new BufferedReader(new InputStreamReader(inputStream, "UTF-8"));
+        this.baseUrl = baseUrl == null ? null : new URL(baseUrl);
+      } catch (IOException e) {
+        throw new IllegalArgumentException(e);
+      }
+    }
+
+    @Nullable @Override public MediaData next() throws IOException {
+      String info = null;
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        //byte order mark written by some editors
+        if (!line.isEmpty() && line.charAt(0) == '\uFEFF') line = line.substring(1);
+        if (line.startsWith("#EXTINF:")) {
+          info = line.substring("#EXTINF:".length());
+        } else if (!line.isEmpty() && !line.startsWith("#")) {
+          return createMediaData(resolve(line), info);
+        }
+      }
+      return null;
+    }
+
+    private String resolve(String url) {
+      if (baseUrl == null) return url;
+      try {
+        return new URL(baseUrl, url).toString();
+      } catch (MalformedURLException e) {
+        return url;
+      }
+    }
+
+    /**
+     * @param info {@code duration attributes,title}, e.g. {@code 215 tvg-logo="logo.png",Title}
+     */
+    private MediaData createMediaData(String url, @Nullable String info) {
+      MediaData.Builder builder =
+          new MediaData.Builder(url).setContentType(guessContentType(url));
+      long duration = MediaData.UNKNOWN_DURATION;
+      boolean live = false;
+      if (info != null) {
+        int titleStart = findTitleStart(info);
+        if (titleStart < info.length()) builder.setTitle(info.substring(titleStart).trim());
+        String attributes = info.substring(0, Math.max(0, titleStart - 1));
+        int durationEnd = attributes.indexOf(' ');
+        try {
+          double seconds = Double.parseDouble(
+              durationEnd < 0 ? attributes : attributes.substring(0, durationEnd));
+          if (seconds > 0) duration = (long) (seconds * 1000);
+          live = seconds < 0;
+        } catch (NumberFormatException e) {
+          //unknown duration
+        }
+        String logo = getAttribute(attributes, "tvg-logo");
+        if (logo != null && !logo.isEmpty()) builder.addPhotoUrl(resolve(logo));
+      }
+      return builder.setStreamType(live ? MediaData.STREAM_TYPE_LIVE
+          : MediaData.STREAM_TYPE_BUFFERED).setStreamDuration(duration).build();
+    }
+
+    private static int findTitleStart(String info) {
+      boolean quoted = false;
+      for (int i = 0; i < info.length(); i++) {
+        char c = info.charAt(i);
+        if (c == '"') {
+          quoted = !quoted;
+        } else if (c == ',' && !quoted) {
+          return i + 1;
+        }
+      }
+      return info.length() + 1;
+    }
+
+    @Nullable private static String getAttribute(String attributes, String name) {
+      int nameStart = attributes.indexOf(name + "=\"");
+      if (nameStart < 0) return null;
+      int valueStart = nameStart + name.length() + 2;
+      int valueEnd = attributes.indexOf('"', valueStart);
+      return valueEnd < 0 ? null : attributes.substring(valueStart, valueEnd);
+    }
+
+    @Override public void close() throws IOException {
+      reader.close();
+    }
+  }
+
+  private static final class JsonParser implements Parser {
+    private final JsonReader reader;
+    private boolean started;
+    private boolean finished;
+
+    JsonParser(InputStream inputStream) {
+      try {
+        reader = new JsonReader(new InputStreamReader(inputStream, "UTF-8"));
+      } catch (IOException e) {
+        throw new IllegalArgumentException(e);
+      }
+    }
+
+    @Nullable @Override public MediaData next() throws IOException {
+      if (!started) {
+        started = true;
+        finished = !startItems();
+      }
+      while (!finished) {
+        if (!reader.hasNext()) {
+          finished = true;
+          return null;
+        }
+        MediaData mediaData = readItem();
+        if (mediaData != null) return mediaData;
+      }
+      return null;
+    }
+
+    /**
+     * @return true if the reader is positioned at the first item
+     */
+    private boolean startItems() throws IOException {
+      if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+        reader.beginArray();
+        return true;
+      }
+      reader.beginObject();
+      while (reader.hasNext()) {
+        if (reader.nextName().equals("items") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+          reader.beginArray();
+          return true;
+        }
+        reader.skipValue();
+      }
+      return false;
+    }
+
+    @Nullable private MediaData readItem() throws IOException {
+      if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+        reader.skipValue();
+        return null;
+      }
+      String url = null;
+      String contentType = null;
+      Integer streamType = null;
+      //the url may follow the other fields, so they are collected in a template first
+      MediaData.Builder builder = new MediaData.Builder("");
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String name = reader.nextName();
+        if (reader.peek() == JsonToken.NULL) {
+          reader.skipValue();
+          continue;
+        }
+        switch (name) {
+          case "url":
+            url = reader.nextString();
+            break;
+          case "contentType":
+            contentType = reader.nextString();
+            break;
+          case "streamType":
+            streamType = parseStreamType(reader.nextString());
+            break;
+          case "duration":
+            builder.setStreamDuration(reader.nextLong());
+            break;
+          case "position":
+            builder.setPosition(reader.nextLong());
+            break;
+          case "autoPlay":
+            builder.setAutoPlay(reader.nextBoolean());
+            break;
+          case "mediaType":
+            builder.setMediaType(parseMediaType(reader.nextString()));
+            break;
+          case "title":
+            builder.setTitle(reader.nextString());
+            break;
+          case "subtitle":
+            builder.setSubtitle(reader.nextString());
+            break;
+          case "images":
+            reader.beginArray();
+            while (reader.hasNext()) {
+              builder.addPhotoUrl(reader.nextString());
+            }
+            reader.endArray();
+            break;
+          case "subtitles":
+            readSubtitles(builder);
+            break;
+          case "metadata":
+            readMetadata(builder);
+            break;
+          case "customData":
+            builder.setCustomData(readObject());
+            break;
+          default:
+            reader.skipValue();
+        }
+      }
+      reader.endObject();
+      if (url == null) return null;
+      return new MediaData.Builder(url, builder.build())
+          .setContentType(contentType == null ? guessContentType(url) : contentType)
+          .setStreamType(streamType == null ? MediaData.STREAM_TYPE_BUFFERED : streamType)
+          .build();
+    }
+
+    private void readSubtitles(MediaData.Builder builder) throws IOException {
+      reader.beginArray();
+      while (reader.hasNext()) {
+        String url = null;
+        String language = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+          String name = reader.nextName();
+          if (name.equals("url")) {
+            url = reader.nextString();
+          } else if (name.equals("language")) {
+            language = reader.nextString();
+          } else {
+            reader.skipValue();
+          }
+        }
+        reader.endObject();
+        if (url != null) builder.addTextTrack(url, language, null, MediaTrack.SUBTYPE_SUBTITLES);
+      }
+      reader.endArray();
+    }
+
+    private void readMetadata(MediaData.Builder builder) throws IOException {
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String key = reader.nextName();
+        JsonToken token = reader.peek();
+        if (token == JsonToken.STRING) {
+          builder.putString(key, reader.nextString());
+        } else if (token == JsonToken.NUMBER) {
+          String number = reader.nextString();
+          try {
+            builder.putInt(key, Integer.parseInt(number));
+          } catch (NumberFormatException e) {
+            builder.putDouble(key, Double.parseDouble(number));
+          }
+        } else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+    }
+
+    private JSONObject readObject() throws IOException {
+      JSONObject object = new JSONObject();
+      reader.beginObject();
+      try {
+        while (reader.hasNext()) {
+          String name = reader.nextName();
+          object.put(name, readValue());
+        }
+      } catch (JSONException e) {
+        throw new IOException(e);
+      }
+      reader.endObject();
+      return object;
+    }
+
+    private Object readValue() throws IOException {
+      switch (reader.peek()) {
+        case BEGIN_OBJECT:
+          return readObject();
+        case BEGIN_ARRAY:
+          JSONArray array = new JSONArray();
+          reader.beginArray();
+          while (reader.hasNext()) {
+            array.put(readValue());
+          }
+          reader.endArray();
+          return array;
+        case NUMBER:
+          String number = reader.nextString();
+          try {
+            return Long.parseLong(number);
+          } catch (NumberFormatException e) {
+            return Double.parseDouble(number);
+          }
+        case BOOLEAN:
+          return reader.nextBoolean();
+        case NULL:
+          reader.nextNull();
+          return JSONObject.NULL;
+        default:
+          return reader.nextString();
+      }
+    }
+
+    private static int parseStreamType(String streamType) {
+      switch (streamType.toLowerCase(Locale.US)) {
+        case "live":
+          return MediaData.STREAM_TYPE_LIVE;
+        case "none":
+          return MediaData.STREAM_TYPE_NONE;
+        default:
+          return MediaData.STREAM_TYPE_BUFFERED;
+      }
+    }
+
+    private static int parseMediaType(String mediaType) {
+      switch (mediaType) {
+        case "movie":
+          return MediaData.MEDIA_TYPE_MOVIE;
+        case "tvShow":
+          return MediaData.MEDIA_TYPE_TV_SHOW;
+        case "musicTrack":
+          return MediaData.MEDIA_TYPE_MUSIC_TRACK;
+        case "photo":
+          return MediaData.MEDIA_TYPE_PHOTO;
+        case "user":
+          return MediaData.MEDIA_TYPE_USER;
+        default:
+          return MediaData.MEDIA_TYPE_GENERIC;
+      }
+    }
+
+    @Override public void close() throws IOException {
+      reader.close();
+    }
+  }
+}
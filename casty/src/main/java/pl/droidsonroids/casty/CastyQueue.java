@@ -0,0 +1,412 @@
+package pl.droidsonroids.casty;
+
+import android.os.SystemClock;
+import androidx.annotation.MainThread;
+import androidx.annotation.Nullable;
+import com.google.android.gms.cast.MediaQueueItem;
+import com.google.android.gms.cast.framework.media.MediaQueue;
+import com.google.android.gms.cast.framework.media.RemoteMediaClient;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Receiver queue of the connected device for list UIs, given by {@link CastyPlayer#getQueue}.
+ * The ids of all the queue items are known up front, while the items themselves are fetched in
+ * pages by {@link MediaQueue} as they come into view. Items are kept for a bounded window around
+ * the range passed to {@link #setVisibleRange}, the least recently viewed ones are dropped first.
+ * Changes of the queue are reported to the {@link Listener} as insertions, removals, moves and
+ * updates of single items, so they can be passed on to a {@code RecyclerView.Adapter} as they are.
+ */
+@MainThread
+public final class CastyQueue {
+  /**
+   * Number of items fetched ahead of the visible range in the scroll direction, half of it is
+   * fetched behind
+   */
+  static final int PREFETCH_DISTANCE = 20;
+  /**
+   * Minimum number of kept items
+   */
+  static final int CACHE_CAPACITY = 100;
+  /**
+   * Reorders of more items are reported as a reload, they would not be animated anyway
+   */
+  static final int MAX_MOVES = 100;
+  /**
+   * Items whose fetch is not answered within this number of milliseconds are fetched again
+   */
+  private static final long FETCH_TIMEOUT = CastyPlayer.DEFAULT_COMMAND_TIMEOUT;
+  private static final int[] NO_ITEM_IDS = new int[0];
+
+  private final MediaQueue.Callback mediaQueueCallback = new MediaQueue.Callback() {
+    @Override public void itemsReloaded() {
+      reload();
+    }
+
+    @Override public void itemsInsertedInRange(int insertIndex, int insertCount) {
+      onItemsInserted(insertIndex, insertCount);
+    }
+
+    @Override public void itemsRemovedAtIndexes(int[] indexes) {
+      onItemsRemoved(indexes);
+    }
+
+    @Override public void itemsUpdatedAtIndexes(int[] indexes) {
+      onItemsUpdated(indexes);
+    }
+
+    @Override public void itemsReorderedAtIndexes(List<Integer> indexes, int insertBefore) {
+      onItemsReordered(indexes);
+    }
+  };
+  private final LinkedHashMap<Integer, MediaQueueItem> items =
+      new LinkedHashMap<Integer, MediaQueueItem>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, MediaQueueItem> eldest) {
+          return size() > capacity;
+        }
+      };
+  //elapsed realtime of the pending fetches by item id
+  private final Map<Integer, Long> fetchTimes = new HashMap<>();
+  private MediaQueue mediaQueue;
+  private Listener listener;
+  private int[] itemIds = NO_ITEM_IDS;
+  private int capacity = CACHE_CAPACITY;
+  private int firstVisibleIndex;
+  private int lastVisibleIndex = -1;
+  private boolean scrollingForward = true;
+
+  void attach(@Nullable RemoteMediaClient remoteMediaClient) {
+    MediaQueue mediaQueue = remoteMediaClient == null ? null : remoteMediaClient.getMediaQueue();
+    if (this.mediaQueue == mediaQueue) return;
+    if (this.mediaQueue != null) this.mediaQueue.unregisterCallback(mediaQueueCallback);
+    this.mediaQueue = mediaQueue;
+    if (mediaQueue != null) mediaQueue.registerCallback(mediaQueueCallback);
+    reload();
+  }
+
+  /**
+   * Sets the listener of the queue changes. Indexes passed to the listener refer to the queue
+   * after all the previously reported changes, like the notifications of
+   * {@code RecyclerView.Adapter}.
+   *
+   * @param listener the listener or null to remove it
+   */
+  public void setListener(@Nullable Listener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * @return number of the queue items, 0 if not connected
+   */
+  public int getItemCount() {
+    return itemIds.length;
+  }
+
+  /**
+   * @param index index of the item, from 0 to {@link #getItemCount()} exclusive
+   * @return id of the queue item, which stays the same when the item moves, e.g. for stable ids
+   * of a {@code RecyclerView.Adapter}
+   */
+  public int getItemId(int index) {
+    return itemIds[index];
+  }
+
+  /**
+   * Gives the item if it is already fetched, otherwise starts fetching it. The fetched item is
+   * reported by {@link Listener#onItemsChanged}.
+   *
+   * @param index index of the item, from 0 to {@link #getItemCount()} exclusive
+   * @return the item or null if it is not fetched yet
+   */
+  @Nullable public MediaQueueItem getItem(int index) {
+    int itemId = itemIds[index];
+    MediaQueueItem item = items.get(itemId);
+    if (item == null && mediaQueue != null) {
+      fetch(index, itemId, SystemClock.elapsedRealtime());
+      item = items.get(itemId);
+    }
+    return item;
+  }
+
+  /**
+   * Moves the window of kept items to the visible range and fetches the missing ones, first the
+   * visible items, then the ones ahead in the scroll direction. Call it whenever the list scrolls,
+   * e.g. with the first and last visible positions of the {@code LinearLayoutManager}.
+   *
+   * @param firstIndex index of the first visible item
+   * @param lastIndex index of the last visible item, inclusive
+   */
+  public void setVisibleRange(int firstIndex, int lastIndex) {
+    //nothing visible, e.g. RecyclerView.NO_POSITION
+    if (firstIndex < 0 || lastIndex < firstIndex) return;
+    if (firstIndex != firstVisibleIndex) scrollingForward = firstIndex > firstVisibleIndex;
+    firstVisibleIndex = firstIndex;
+    lastVisibleIndex = lastIndex;
+    //room for the window and for the late fetches of the previous one
+    capacity = Math.max(CACHE_CAPACITY,
+        2 * (lastIndex - firstIndex + 1 + PREFETCH_DISTANCE + PREFETCH_DISTANCE / 2));
+    prefetch();
+  }
+
+  private int getWindowStart() {
+    return Math.max(0,
+        firstVisibleIndex - (scrollingForward ? PREFETCH_DISTANCE / 2 : PREFETCH_DISTANCE));
+  }
+
+  private int getWindowEnd() {
+    return Math.min(itemIds.length,
+        lastVisibleIndex + 1 + (scrollingForward ? PREFETCH_DISTANCE : PREFETCH_DISTANCE / 2));
+  }
+
+  private void prefetch() {
+    if (mediaQueue == null || lastVisibleIndex < 0) return;
+    int start = getWindowStart();
+    int end = getWindowEnd();
+    int visibleEnd = Math.min(end, lastVisibleIndex + 1);
+    long now = SystemClock.elapsedRealtime();
+    for (int i = Math.max(start, firstVisibleIndex); i < visibleEnd; i++) {
+      touchOrFetch(i, now);
+    }
+    if (scrollingForward) {
+      for (int i = visibleEnd; i < end; i++) {
+        touchOrFetch(i, now);
+      }
+      for (int i = Math.min(firstVisibleIndex, end) - 1; i >= start; i--) {
+        touchOrFetch(i, now);
+      }
+    } else {
+      for (int i = Math.min(firstVisibleIndex, end) - 1; i >= start; i--) {
+        touchOrFetch(i, now);
+      }
+      for (int i = visibleEnd; i < end; i++) {
+        touchOrFetch(i, now);
+      }
+    }
+  }
+
+  private void touchOrFetch(int index, long now) {
+    int itemId = itemIds[index];
+    if (items.get(itemId) == null) fetch(index, itemId, now);
+  }
+
+  private void fetch(int index, int itemId, long now) {
+    Long fetchTime = fetchTimes.get(itemId);
+    if (fetchTime != null && now - fetchTime < FETCH_TIMEOUT) return;
+    //batched with the other fetches by MediaQueue, unless the item is in its own cache
+    MediaQueueItem item = mediaQueue.getItemAtIndex(index, true);
+    if (item != null) {
+      fetchTimes.remove(itemId);
+      items.put(itemId, item);
+    } else {
+      fetchTimes.put(itemId, now);
+    }
+  }
+
+  private void reload() {
+    items.clear();
+    fetchTimes.clear();
+    int[] newItemIds = mediaQueue == null ? null : mediaQueue.getItemIds();
+    itemIds = newItemIds == null ? NO_ITEM_IDS : newItemIds;
+    if (CastyLog.isLoggable()) CastyLog.d("Queue reloaded, size:[%s]", itemIds.length);
+    if (listener != null) listener.onQueueReloaded();
+    prefetch();
+  }
+
+  private void onItemsInserted(int insertIndex, int insertCount) {
+    int[] newItemIds = mediaQueue.getItemIds();
+    if (!isInsertion(itemIds, newItemIds, insertIndex, insertCount)) {
+      reload();
+      return;
+    }
+    itemIds = newItemIds;
+    if (listener != null) listener.onItemsInserted(insertIndex, insertCount);
+    prefetch();
+  }
+
+  private void onItemsRemoved(int[] indexes) {
+    int[] removedIndexes = indexes.clone();
+    Arrays.sort(removedIndexes);
+    int[] newItemIds = mediaQueue.getItemIds();
+    if (!isRemoval(itemIds, newItemIds, removedIndexes)) {
+      reload();
+      return;
+    }
+    for (int index : removedIndexes) {
+      items.remove(itemIds[index]);
+      fetchTimes.remove(itemIds[index]);
+    }
+    itemIds = newItemIds;
+    if (listener != null) {
+      //from the last range, so that the indexes of the preceding ones stay valid
+      int end = removedIndexes.length;
+      while (end > 0) {
+        int start = getRangeStart(removedIndexes, end - 1);
+        listener.onItemsRemoved(removedIndexes[start], end - start);
+        end = start;
+      }
+    }
+    prefetch();
+  }
+
+  private void onItemsUpdated(int[] indexes) {
+    int[] updatedIndexes = indexes.clone();
+    Arrays.sort(updatedIndexes);
+    if (updatedIndexes.length > 0 && (updatedIndexes[0] < 0
+        || updatedIndexes[updatedIndexes.length - 1] >= itemIds.length)) {
+      reload();
+      return;
+    }
+    int windowStart = getWindowStart();
+    int windowEnd = getWindowEnd();
+    for (int index : updatedIndexes) {
+      int itemId = itemIds[index];
+      boolean fetching = fetchTimes.remove(itemId) != null;
+      MediaQueueItem item = mediaQueue.getItemAtIndex(index, false);
+      if (item == null) {
+        items.remove(itemId);
+      } else if (fetching || items.containsKey(itemId)
+          || index >= windowStart && index < windowEnd) {
+        items.put(itemId, item);
+      }
+    }
+    if (listener != null) {
+      int end = updatedIndexes.length;
+      while (end > 0) {
+        int start = getRangeStart(updatedIndexes, end - 1);
+        listener.onItemsChanged(updatedIndexes[start], end - start);
+        end = start;
+      }
+    }
+  }
+
+  private void onItemsReordered(List<Integer> indexes) {
+    int[] newItemIds = mediaQueue.getItemIds();
+    int[] moves = getMoves(itemIds, newItemIds, indexes);
+    if (moves == null) {
+      reload();
+      return;
+    }
+    itemIds = newItemIds;
+    if (listener != null) {
+      for (int i = 0; i < moves.length; i += 2) {
+        listener.onItemMoved(moves[i], moves[i + 1]);
+      }
+    }
+    prefetch();
+  }
+
+  /**
+   * @return index of the first of the consecutive sorted indexes ending at the given one
+   */
+  private static int getRangeStart(int[] sortedIndexes, int end) {
+    int start = end;
+    while (start > 0 && sortedIndexes[start - 1] == sortedIndexes[start] - 1) {
+      start--;
+    }
+    return start;
+  }
+
+  private static boolean isInsertion(int[] oldItemIds, int[] newItemIds, int index, int count) {
+    if (newItemIds == null || index < 0 || index > oldItemIds.length
+        || newItemIds.length != oldItemIds.length + count) {
+      return false;
+    }
+    for (int i = 0; i < oldItemIds.length; i++) {
+      if (oldItemIds[i] != newItemIds[i < index ? i : i + count]) return false;
+    }
+    return true;
+  }
+
+  private static boolean isRemoval(int[] oldItemIds, int[] newItemIds, int[] sortedIndexes) {
+    if (newItemIds == null) return false;
+    int removed = 0;
+    int newIndex = 0;
+    for (int i = 0; i < oldItemIds.length; i++) {
+      if (removed < sortedIndexes.length && sortedIndexes[removed] == i) {
+        removed++;
+      } else if (newIndex >= newItemIds.length || oldItemIds[i] != newItemIds[newIndex++]) {
+        return false;
+      }
+    }
+    return removed == sortedIndexes.length && newIndex == newItemIds.length;
+  }
+
+  /**
+   * Finds single item moves, which turn the old queue into the new one by moving only the items
+   * at the given indexes. The moved items are placed one by one in the order of their new
+   * indexes, each among the items which are already in their final order.
+   *
+   * @return pairs of the from and to indexes or null if the new queue is not such a reorder
+   */
+  @Nullable static int[] getMoves(int[] oldItemIds, int[] newItemIds, List<Integer> indexes) {
+    int size = oldItemIds.length;
+    if (newItemIds == null || newItemIds.length != size || indexes.size() > MAX_MOVES) {
+      return null;
+    }
+    int[] currentItemIds = oldItemIds.clone();
+    //whether the item is still to be moved, shifted along with currentItemIds
+    boolean[] pending = new boolean[size];
+    int[] movedItemIds = new int[indexes.size()];
+    for (int i = 0; i < movedItemIds.length; i++) {
+      int index = indexes.get(i);
+      if (index < 0 || index >= size || pending[index]) return null;
+      pending[index] = true;
+      movedItemIds[i] = oldItemIds[index];
+    }
+    Arrays.sort(movedItemIds);
+    int[] moves = new int[movedItemIds.length * 2];
+    int moveCount = 0;
+    for (int target = 0; target < size; target++) {
+      int itemId = newItemIds[target];
+      if (Arrays.binarySearch(movedItemIds, itemId) < 0) continue;
+      int from = 0;
+      while (from < size && !(pending[from] && currentItemIds[from] == itemId)) {
+        from++;
+      }
+      if (from == size) return null;
+      System.arraycopy(currentItemIds, from + 1, currentItemIds, from, size - from - 1);
+      System.arraycopy(pending, from + 1, pending, from, size - from - 1);
+      //after as many settled items as precede the item in the new queue
+      int to = 0;
+      int settled = 0;
+      while (settled < target && to < size - 1) {
+        if (!pending[to++]) settled++;
+      }
+      System.arraycopy(currentItemIds, to, currentItemIds, to + 1, size - to - 1);
+      System.arraycopy(pending, to, pending, to + 1, size - to - 1);
+      currentItemIds[to] = itemId;
+      pending[to] = false;
+      if (from != to) {
+        moves[moveCount++] = from;
+        moves[moveCount++] = to;
+      }
+    }
+    if (!Arrays.equals(currentItemIds, newItemIds)) return null;
+    return Arrays.copyOf(moves, moveCount);
+  }
+
+  /**
+   * Changes of the queue, in the order of the {@code RecyclerView.Adapter} notifications
+   */
+  public interface Listener {
+    void onItemsInserted(int index, int count);
+
+    void onItemsRemoved(int index, int count);
+
+    void onItemMoved(int fromIndex, int toIndex);
+
+    /**
+     * Items in the range were updated or fetched
+     */
+    void onItemsChanged(int index, int count);
+
+    /**
+     * The whole queue changed, e.g. a new one was loaded or the device was disconnected
+     */
+    void onQueueReloaded();
+  }
+}
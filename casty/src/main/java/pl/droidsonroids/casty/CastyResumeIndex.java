@@ -0,0 +1,292 @@
+package pl.droidsonroids.casty;
+
+import android.content.Context;
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Resume positions of the played media keyed by {@link MediaData.Builder#setResumeKey}, the
+ * source url, file path or uri by default, recorded from the progress of {@link CastyPlayer} once
+ * it is set with {@link CastyPlayer#setResumeIndex}. The positions of the
+ * {@link #MAX_ENTRIES} most recently played media are kept in memory and in an append-only file of
+ * small binary records. A record is appended only when playback moves by
+ * {@link #PERSIST_DISTANCE}, not on every progress update, and the file is compacted when most of
+ * its records are outdated. The file is read in background and no call waits for it, until then
+ * only the positions recorded since the start of the process are known.
+ */
+@AnyThread
+public final class CastyResumeIndex {
+  /**
+   * Maximum number of remembered positions, the least recently played media are forgotten first
+   */
+  public static final int MAX_ENTRIES = 1000;
+  static final long PERSIST_DISTANCE = 10000L;
+  /**
+   * Positions before this number of milliseconds are not worth resuming from
+   */
+  static final long MIN_POSITION = 10000L;
+  /**
+   * Media played past this fraction of its duration is finished and starts over next time
+   */
+  private static final double FINISHED_FRACTION = 0.95d;
+  private static final int MAGIC = 0x43525831;
+  private static final int COMPACTION_SLACK = 64;
+  private static final int REMOVED = -1;
+
+  private static CastyResumeIndex instance;
+
+  private final File file;
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+  private final LinkedHashMap<String, Position> entries =
+      new LinkedHashMap<String, Position>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<String, Position> eldest) {
+          return size() > MAX_ENTRIES;
+        }
+      };
+  //guarded by this, the changes made before the file is read take precedence over its records
+  private boolean loaded;
+  private boolean clearedBeforeLoad;
+  private final Set<String> removedBeforeLoad = new HashSet<>();
+  //accessed only on the executor
+  private final ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream(128);
+  private FileOutputStream appendStream;
+  private int recordCount;
+
+  /**
+   * Gives the process-wide resume index. Positions are read from disk in background, so calling
+   * it early, e.g. in {@code Application.onCreate}, makes them known before the first load.
+   *
+   * @param context any Context
+   * @return the resume index
+   */
+  @NonNull public static synchronized CastyResumeIndex getInstance(@NonNull Context context) {
+    if (instance == null) {
+      instance = new CastyResumeIndex(new File(context.getFilesDir(), "casty-resume"));
+    }
+    return instance;
+  }
+
+  private CastyResumeIndex(File file) {
+    this.file = file;
+    executor.execute(new Runnable() {
+      @Override public void run() {
+        load();
+      }
+    });
+  }
+
+  /**
+   * Gives the position the media should resume from
+   *
+   * @param key resume key of the media, its url unless set otherwise
+   * @return position in milliseconds or 0 if the media should start from the beginning or the
+   * position is not read from disk yet
+   */
+  public synchronized long getPosition(@NonNull String key) {
+    Position entry = entries.get(key);
+    return entry == null ? 0 : entry.position;
+  }
+
+  /**
+   * Forgets the position, so the media starts from the beginning next time
+   *
+   * @param key resume key of the media, its url unless set otherwise
+   */
+  public void remove(@NonNull String key) {
+    synchronized (this) {
+      if (entries.remove(key) == null && loaded) return;
+      //the position may still be read from disk
+      if (!loaded) removedBeforeLoad.add(key);
+    }
+    append(key, REMOVED);
+  }
+
+  /**
+   * Forgets all the positions
+   */
+  public void clear() {
+    synchronized (this) {
+      entries.clear();
+      if (!loaded) {
+        clearedBeforeLoad = true;
+        removedBeforeLoad.clear();
+      }
+    }
+    executor.execute(new Runnable() {
+      @Override public void run() {
+        compact();
+      }
+    });
+  }
+
+  /**
+   * Records the progress of the played media
+   */
+  void update(@NonNull String key, long position, long duration) {
+    if (duration > 0 && position > duration * FINISHED_FRACTION) {
+      remove(key);
+      return;
+    }
+    //progress at the very beginning, e.g. before the seek to the resumed position
+    if (position < MIN_POSITION) return;
+    synchronized (this) {
+      Position entry = entries.get(key);
+      if (entry == null) {
+        entry = new Position(REMOVED);
+        entries.put(key, entry);
+      }
+      entry.position = position;
+      if (Math.abs(position - entry.persistedPosition) < PERSIST_DISTANCE) return;
+      entry.persistedPosition = position;
+    }
+    //appended after the file is read, the executor runs the tasks in order
+    append(key, position);
+  }
+
+  private void append(final String key, final long position) {
+    executor.execute(new Runnable() {
+      @Override public void run() {
+        if (appendStream == null) return;
+        try {
+          recordBuffer.reset();
+          writeRecord(new DataOutputStream(recordBuffer), key, position);
+          //single write, so that a crash leaves at most the last record torn
+          recordBuffer.writeTo(appendStream);
+          recordCount++;
+        } catch (IOException e) {
+          //index is best effort
+          return;
+        }
+        int size;
+        synchronized (CastyResumeIndex.this) {
+          size = entries.size();
+        }
+        if (recordCount > size * 2 + COMPACTION_SLACK) compact();
+      }
+    });
+  }
+
+  @WorkerThread private void load() {
+    Map<String, Integer> positions = new LinkedHashMap<>();
+    boolean corrupted = false;
+    DataInputStream inputStream = null;
+    try {
+      inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      if (inputStream.readInt() != MAGIC) throw new IOException("Not a resume index: " + file);
+      while (inputStream.available() > 0) {
+        String url = inputStream.readUTF();
+        int position = inputStream.readInt();
+        recordCount++;
+        //reinserted, so the iteration order stays from the least recently played
+        positions.remove(url);
+        if (position != REMOVED) positions.put(url, position);
+      }
+    } catch (IOException e) {
+      //missing file or torn last record, the records read so far are valid
+      corrupted = true;
+    } finally {
+      DiskImageCache.closeQuietly(inputStream);
+    }
+    synchronized (this) {
+      //positions recorded meanwhile are newer, so they are reinserted as the most recent ones
+      Map<String, Position> recorded = new LinkedHashMap<>(entries);
+      entries.clear();
+      if (!clearedBeforeLoad) {
+        for (Map.Entry<String, Integer> position : positions.entrySet()) {
+          String key = position.getKey();
+          if (removedBeforeLoad.contains(key) || recorded.containsKey(key)) continue;
+          entries.put(key, new Position(position.getValue()));
+        }
+      }
+      entries.putAll(recorded);
+      removedBeforeLoad.clear();
+      loaded = true;
+    }
+    if (corrupted || recordCount > positions.size() * 2 + COMPACTION_SLACK) {
+      compact();
+    } else {
+      openAppendStream();
+    }
+  }
+
+  /**
+   * Rewrites the file with a single record per remembered position
+   */
+  @WorkerThread private void compact() {
+    Map<String, Long> snapshot = new LinkedHashMap<>();
+    synchronized (this) {
+      for (Map.Entry<String, Position> entry : entries.entrySet()) {
+        Position value = entry.getValue();
+        value.persistedPosition = value.position;
+        snapshot.put(entry.getKey(), value.position);
+      }
+    }
+    DiskImageCache.closeQuietly(appendStream);
+    appendStream = null;
+    File tmpFile = new File(file.getPath() + ".tmp");
+    FileOutputStream fileStream = null;
+    try {
+      fileStream = new FileOutputStream(tmpFile);
+      DataOutputStream outputStream =
+          new DataOutputStream(new BufferedOutputStream(fileStream));
+      outputStream.writeInt(MAGIC);
+      for (Map.Entry<String, Long> position : snapshot.entrySet()) {
+        writeRecord(outputStream, position.getKey(), position.getValue());
+      }
+      outputStream.flush();
+      //the old file is replaced only by a complete new one
+      fileStream.getFD().sync();
+      fileStream.close();
+      fileStream = null;
+      if (tmpFile.renameTo(file)) recordCount = snapshot.size();
+    } catch (IOException e) {
+      //index is best effort
+    } finally {
+      DiskImageCache.closeQuietly(fileStream);
+      //noinspection ResultOfMethodCallIgnored
+      tmpFile.delete();
+    }
+    openAppendStream();
+  }
+
+  private void openAppendStream() {
+    if (!file.isFile()) return;
+    try {
+      appendStream = new FileOutputStream(file, true);
+    } catch (IOException e) {
+      appendStream = null;
+    }
+  }
+
+  private static void writeRecord(DataOutputStream outputStream, String key, long position)
+      throws IOException {
+    outputStream.writeUTF(key);
+    outputStream.writeInt((int) Math.min(position, Integer.MAX_VALUE));
+  }
+
+  private static final class Position {
+    long position;
+    long persistedPosition;
+
+    Position(long position) {
+      this.position = position;
+      persistedPosition = position;
+    }
+  }
+}
@@ -0,0 +1,299 @@
+package pl.droidsonroids.casty;
+
+import android.app.Activity;
+import android.app.Application;
+import android.os.Bundle;
+import android.os.SystemClock;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.google.android.gms.cast.framework.CastContext;
+import com.google.android.gms.cast.framework.CastSession;
+import com.google.android.gms.cast.framework.CastStateListener;
+import com.google.android.gms.cast.framework.SessionManagerListener;
+import com.google.android.gms.common.api.CommonStatusCodes;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+/**
+ * Application-scoped owner of the only {@link Application.ActivityLifecycleCallbacks},
+ * {@link CastStateListener} and {@link SessionManagerListener} Casty registers. Each
+ * {@link Casty} and Mini Controller attaches a lightweight {@link Handle}, which receives events
+ * while its activity is resumed and is dropped when the activity is destroyed. The
+ * {@link CastyPlayer} of a dropped handle is detached from the shared
+ * {@link com.google.android.gms.cast.framework.media.RemoteMediaClient}, so that it is not kept
+ * and updated by the client after its activity is gone.
+ */
+@MainThread
+final class CastySessionCore {
+  private static final Handle[] NO_HANDLES = new Handle[0];
+  private static final String SESSION_START_SECTION = "Casty session start";
+  private static CastySessionCore instance;
+
+  private final CastyFlightRecorder flightRecorder = CastyFlightRecorder.getInstance();
+  private Handle[] handles = NO_HANDLES;
+  private long sessionStartingTime = -1;
+  private int sessionStartingTraceCookie;
+
+  static CastySessionCore getInstance(@NonNull Activity activity) {
+    if (instance == null) {
+      instance = new CastySessionCore(activity.getApplication(),
+          CastyInitializer.getCastContext(activity));
+    }
+    return instance;
+  }
+
+  private CastySessionCore(Application application, CastContext castContext) {
+    application.registerActivityLifecycleCallbacks(createActivityCallbacks());
+    castContext.addCastStateListener(createCastStateListener());
+    castContext.getSessionManager()
+        .addSessionManagerListener(createSessionManagerListener(), CastSession.class);
+  }
+
+  /**
+   * @param castyPlayer player released when the handle is dropped, null if there is none
+   */
+  Handle attach(@NonNull Activity activity,
+      @Nullable SessionManagerListener<CastSession> sessionManagerListener,
+      @NonNull CastStateListener castStateListener, @NonNull Runnable onActivityResumed,
+      @Nullable CastyPlayer castyPlayer) {
+    Handle handle = new Handle(activity, sessionManagerListener, castStateListener,
+        onActivityResumed, castyPlayer);
+    handles = Arrays.copyOf(handles, handles.length + 1);
+    handles[handles.length - 1] = handle;
+    return handle;
+  }
+
+  void detach(Handle handle) {
+    int count = 0;
+    Handle[] newHandles = new Handle[handles.length];
+    for (Handle attached : handles) {
+      if (attached != handle && attached.activity.get() != null) {
+        newHandles[count++] = attached;
+      } else {
+        attached.release();
+      }
+    }
+    handles = count == 0 ? NO_HANDLES : Arrays.copyOf(newHandles, count);
+    //released even if it was dropped before, e.g. by release() after the activity was destroyed
+    handle.release();
+  }
+
+  /**
+   * @return number of the attached handles
+   */
+  int size() {
+    return handles.length;
+  }
+
+  private Application.ActivityLifecycleCallbacks createActivityCallbacks() {
+    return new Application.ActivityLifecycleCallbacks() {
+      @Override public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+        //no-op
+      }
+
+      @Override public void onActivityStarted(Activity activity) {
+        //no-op
+      }
+
+      @Override public void onActivityResumed(Activity activity) {
+        boolean traced = CastyTrace.begin("Casty.onActivityResumed");
+        for (Handle handle : handles) {
+          if (handle.activity.get() == activity) {
+            handle.resumed = true;
+            handle.onActivityResumed.run();
+          }
+        }
+        CastyTrace.end(traced);
+      }
+
+      @Override public void onActivityPaused(Activity activity) {
+        for (Handle handle : handles) {
+          if (handle.activity.get() == activity) handle.resumed = false;
+        }
+      }
+
+      @Override public void onActivityStopped(Activity activity) {
+        //no-op
+      }
+
+      @Override public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+        //no-op
+      }
+
+      @Override public void onActivityDestroyed(Activity activity) {
+        for (Handle handle : handles) {
+          if (handle.activity.get() == activity) detach(handle);
+        }
+      }
+    };
+  }
+
+  private CastStateListener createCastStateListener() {
+    return new CastStateListener() {
+      @Override public void onCastStateChanged(int state) {
+        flightRecorder.record(CastyFlightRecorder.CAST_STATE, state, 0L);
+        boolean traced = CastyTrace.begin("Casty.onCastStateChanged");
+        for (Handle handle : handles) {
+          if (handle.resumed) handle.castStateListener.onCastStateChanged(state);
+        }
+        CastyTrace.end(traced);
+      }
+    };
+  }
+
+  private SessionManagerListener<CastSession> createSessionManagerListener() {
+    return new SessionManagerListener<CastSession>() {
+      @Override public void onSessionStarting(CastSession castSession) {
+        flightRecorder.record(CastyFlightRecorder.SESSION_STARTING, 0, 0L);
+        sessionStartingTime = SystemClock.elapsedRealtime();
+        CastyTrace.endAsync(SESSION_START_SECTION, sessionStartingTraceCookie);
+        sessionStartingTraceCookie = CastyTrace.beginAsync(SESSION_START_SECTION);
+        boolean traced = CastyTrace.begin("Casty.onSessionStarting");
+        for (Handle handle : handles) {
+          if (handle.receivesSessionEvents()) {
+            handle.sessionManagerListener.onSessionStarting(castSession);
+          }
+        }
+        CastyTrace.end(traced);
+      }
+
+      @Override public void onSessionStarted(CastSession castSession, String sessionId) {
+        flightRecorder.record(CastyFlightRecorder.SESSION_STARTED, 0, 0L);
+        if (sessionStartingTime >= 0) {
+          CastyMetrics.getInstance()
+              .recordSessionStart(SystemClock.elapsedRealtime() - sessionStartingTime);
+          sessionStartingTime = -1;
+        }
+        CastyTrace.endAsync(SESSION_START_SECTION, sessionStartingTraceCookie);
+        sessionStartingTraceCookie = 0;
+        boolean traced = CastyTrace.begin("Casty.onSessionStarted");
+        for (Handle handle : handles) {
+          if (handle.receivesSessionEvents()) {
+            handle.sessionManagerListener.onSessionStarted(castSession, sessionId);
+          }
+        }
+        CastyTrace.end(traced);
+      }
+
+      @Override public void onSessionStartFailed(CastSession castSession, int error) {
+        flightRecorder.recordError(CastyFlightRecorder.SESSION_START_FAILED, null, error, 0L);
+        sessionStartingTime = -1;
+        CastyMetrics.getInstance().recordSessionStartFailure();
+        CastyTrace.endAsync(SESSION_START_SECTION, sessionStartingTraceCookie);
+        sessionStartingTraceCookie = 0;
+        boolean traced = CastyTrace.begin("Casty.onSessionStartFailed");
+        for (Handle handle : handles) {
+          if (handle.receivesSessionEvents()) {
+            handle.sessionManagerListener.onSessionStartFailed(castSession, error);
+          }
+        }
+        CastyTrace.end(traced);
+      }
+
+      @Override public void onSessionEnding(CastSession castSession) {
+        flightRecorder.record(CastyFlightRecorder.SESSION_ENDING, 0, 0L);
+        boolean traced = CastyTrace.begin("Casty.onSessionEnding");
+        for (Handle handle : handles) {
+          if (handle.receivesSessionEvents()) {
+            handle.sessionManagerListener.onSessionEnding(castSession);
+          }
+        }
+        CastyTrace.end(traced);
+      }
+
+      @Override public void onSessionEnded(CastSession castSession, int error) {
+        if (error == CommonStatusCodes.SUCCESS) {
+          flightRecorder.record(CastyFlightRecorder.SESSION_ENDED, error, 0L);
+        } else {
+          flightRecorder.recordError(CastyFlightRecorder.SESSION_ENDED, null, error, 0L);
+        }
+        boolean traced = CastyTrace.begin("Casty.onSessionEnded");
+        for (Handle handle : handles) {
+          if (handle.receivesSessionEvents()) {
+            handle.sessionManagerListener.onSessionEnded(castSession, error);
+          }
+        }
+        CastyTrace.end(traced);
+      }
+
+      @Override public void onSessionResuming(CastSession castSession, String sessionId) {
+        flightRecorder.record(CastyFlightRecorder.SESSION_RESUMING, 0, 0L);
+        boolean traced = CastyTrace.begin("Casty.onSessionResuming");
+        for (Handle handle : handles) {
+          if (handle.receivesSessionEvents()) {
+            handle.sessionManagerListener.onSessionResuming(castSession, sessionId);
+          }
+        }
+        CastyTrace.end(traced);
+      }
+
+      @Override public void onSessionResumed(CastSession castSession, boolean wasSuspended) {
+        flightRecorder.record(CastyFlightRecorder.SESSION_RESUMED, wasSuspended ? 1 : 0, 0L);
+        boolean traced = CastyTrace.begin("Casty.onSessionResumed");
+        for (Handle handle : handles) {
+          if (handle.receivesSessionEvents()) {
+            handle.sessionManagerListener.onSessionResumed(castSession, wasSuspended);
+          }
+        }
+        CastyTrace.end(traced);
+      }
+
+      @Override public void onSessionResumeFailed(CastSession castSession, int error) {
+        flightRecorder.recordError(CastyFlightRecorder.SESSION_RESUME_FAILED, null, error, 0L);
+        boolean traced = CastyTrace.begin("Casty.onSessionResumeFailed");
+        for (Handle handle : handles) {
+          if (handle.receivesSessionEvents()) {
+            handle.sessionManagerListener.onSessionResumeFailed(castSession, error);
+          }
+        }
+        CastyTrace.end(traced);
+      }
+
+      @Override public void onSessionSuspended(CastSession castSession, int reason) {
+        flightRecorder.record(CastyFlightRecorder.SESSION_SUSPENDED, reason, 0L);
+        boolean traced = CastyTrace.begin("Casty.onSessionSuspended");
+        for (Handle handle : handles) {
+          if (handle.receivesSessionEvents()) {
+            handle.sessionManagerListener.onSessionSuspended(castSession, reason);
+          }
+        }
+        CastyTrace.end(traced);
+      }
+    };
+  }
+
+  static final class Handle {
+    final WeakReference<Activity> activity;
+    final SessionManagerListener<CastSession> sessionManagerListener;
+    final CastStateListener castStateListener;
+    final Runnable onActivityResumed;
+    private CastyPlayer castyPlayer;
+    boolean resumed = true;
+
+    Handle(Activity activity, SessionManagerListener<CastSession> sessionManagerListener,
+        CastStateListener castStateListener, Runnable onActivityResumed,
+        CastyPlayer castyPlayer) {
+      this.activity = new WeakReference<>(activity);
+      this.sessionManagerListener = sessionManagerListener;
+      this.castStateListener = castStateListener;
+      this.onActivityResumed = onActivityResumed;
+      this.castyPlayer = castyPlayer;
+    }
+
+    /**
+     * Unregisters the player from the client, which would otherwise keep it alive
+     */
+    void release() {
+      resumed = false;
+      if (castyPlayer == null) return;
+      castyPlayer.setConnecting(false);
+      castyPlayer.setRemoteMediaClient(null);
+      castyPlayer = null;
+    }
+
+    boolean receivesSessionEvents() {
+      return resumed && sessionManagerListener != null;
+    }
+  }
+}
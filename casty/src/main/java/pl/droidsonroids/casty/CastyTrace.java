@@ -0,0 +1,66 @@
+package pl.droidsonroids.casty;
+
+import android.os.Build;
+import android.os.Trace;
+import androidx.annotation.NonNull;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opt-in {@link Trace} sections, see {@link Casty#setTracingEnabled(boolean)}. Synchronous
+ * sections need API 18, async slices, which span remote operations, need API 29. Section names
+ * are constants or are built only while tracing, so disabled tracing costs a field read.
+ */
+final class CastyTrace {
+  private static final AtomicInteger cookies = new AtomicInteger();
+  private static volatile boolean enabled;
+
+  private CastyTrace() {
+  }
+
+  static void setEnabled(boolean enabled) {
+    CastyTrace.enabled = enabled;
+  }
+
+  /**
+   * Begins a section on the current thread
+   *
+   * @return true if the section was begun, pass it to {@link #end(boolean)}
+   */
+  static boolean begin(@NonNull String sectionName) {
+    if (!enabled || Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2) return false;
+    Trace.beginSection(sectionName);
+    return true;
+  }
+
+  static void end(boolean begun) {
+    if (begun) Trace.endSection();
+  }
+
+  /**
+   * @return true if async slices are recorded right now, check it before building a section name
+   */
+  static boolean isAsyncEnabled() {
+    return enabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && Trace.isEnabled();
+  }
+
+  /**
+   * Begins an async slice, which may end on another thread
+   *
+   * @return cookie of the slice or 0 if it was not begun, pass it to {@link #endAsync}
+   */
+  static int beginAsync(@NonNull String sectionName) {
+    if (!isAsyncEnabled()) return 0;
+    int cookie;
+    do {
+      cookie = cookies.incrementAndGet();
+    } while (cookie == 0);
+    Trace.beginAsyncSection(sectionName, cookie);
+    return cookie;
+  }
+
+  static void endAsync(@NonNull String sectionName, int cookie) {
+    if (cookie != 0 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+      Trace.endAsyncSection(sectionName, cookie);
+    }
+  }
+}
@@ -0,0 +1,123 @@
+package pl.droidsonroids.casty;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.google.android.gms.cast.CastStatusCodes;
+import com.google.android.gms.cast.framework.media.RemoteMediaClient;
+import com.google.android.gms.common.api.CommonStatusCodes;
+import com.google.android.gms.common.api.PendingResult;
+
+/**
+ * Latest-wins command stage for commands like seek or volume, which are issued in bursts while
+ * the user drags a slider. At most one command is in flight, at most one waits for it and every
+ * new command replaces the waiting one, which then completes with
+ * {@link CastStatusCodes#REPLACED}. Commands are sent no more often than the minimum interval.
+ */
+@MainThread
+class CoalescingCommandQueue implements CastyCommand.OnCompleteListener, Runnable {
+  private final String name;
+  private final Dispatcher dispatcher;
+  private final Handler handler = new Handler(Looper.getMainLooper());
+
+  private long minInterval;
+  private long timeout;
+
+  private CastyCommand inFlight;
+  private CastyCommand inFlightSent;
+  private CastyCommand queued;
+  private double queuedValue;
+  private long lastSendTime = Long.MIN_VALUE / 2;
+  private boolean drainScheduled;
+
+  CoalescingCommandQueue(@NonNull String name, @NonNull Dispatcher dispatcher, long minInterval,
+      long timeout) {
+    this.name = name;
+    this.dispatcher = dispatcher;
+    this.minInterval = minInterval;
+    this.timeout = timeout;
+  }
+
+  void setMinInterval(long minInterval) {
+    this.minInterval = minInterval;
+  }
+
+  void setTimeout(long timeout) {
+    this.timeout = timeout;
+  }
+
+  /**
+   * @param value target of the command, e.g. seek position or volume level
+   * @return handle completed when the receiver executes this value or a newer one replaces it
+   */
+  CastyCommand submit(double value) {
+    if (queued != null) queued.complete(CastStatusCodes.REPLACED);
+    queued = CastyCommand.pending(name);
+    queuedValue = value;
+    CastyCommand command = queued;
+    drain();
+    return command;
+  }
+
+  /**
+   * Drops the waiting command and abandons the one in flight, e.g. when the device disconnects
+   */
+  void reset() {
+    handler.removeCallbacks(this);
+    drainScheduled = false;
+    if (queued != null) queued.complete(CastyCommand.STATUS_NOT_CONNECTED);
+    if (inFlight != null) inFlight.complete(CommonStatusCodes.INTERRUPTED);
+    queued = null;
+    inFlight = null;
+    inFlightSent = null;
+  }
+
+  @Override public void run() {
+    drainScheduled = false;
+    drain();
+  }
+
+  private void drain() {
+    //canceled by the app while waiting, it must not reach the receiver
+    if (queued != null && queued.isDone()) queued = null;
+    if (inFlight != null || queued == null || drainScheduled) return;
+    long wait = lastSendTime + minInterval - SystemClock.elapsedRealtime();
+    if (wait > 0) {
+      drainScheduled = true;
+      handler.postDelayed(this, wait);
+      return;
+    }
+    CastyCommand command = queued;
+    queued = null;
+    PendingResult<RemoteMediaClient.MediaChannelResult> pendingResult =
+        dispatcher.dispatch(queuedValue);
+    if (pendingResult == null) {
+      command.complete(CastyCommand.STATUS_NOT_CONNECTED);
+      return;
+    }
+    lastSendTime = SystemClock.elapsedRealtime();
+    command.markSent();
+    inFlight = command;
+    inFlightSent = CastyCommand.send(name, pendingResult, timeout);
+    inFlightSent.setOnCompleteListener(this);
+  }
+
+  @Override public void onComplete(@NonNull CastyCommand sent) {
+    if (sent != inFlightSent) return;
+    CastyCommand command = inFlight;
+    inFlight = null;
+    inFlightSent = null;
+    command.completeWith(sent);
+    drain();
+  }
+
+  interface Dispatcher {
+    /**
+     * @return the pending result of the sent command or null if it could not be sent
+     */
+    @Nullable PendingResult<RemoteMediaClient.MediaChannelResult> dispatch(double value);
+  }
+}
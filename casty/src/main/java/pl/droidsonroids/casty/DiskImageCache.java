@@ -0,0 +1,112 @@
+package pl.droidsonroids.casty;
+
+import android.graphics.Bitmap;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Size bounded directory of encoded bitmaps, the least recently used files are deleted first.
+ */
+@WorkerThread
+class DiskImageCache {
+  private final File directory;
+  private final long maxSize;
+  private long size = -1;
+
+  DiskImageCache(File directory, long maxSize) {
+    this.directory = directory;
+    this.maxSize = maxSize;
+  }
+
+  @Nullable synchronized File get(String key) {
+    File file = new File(directory, fileName(key));
+    if (!file.isFile()) return null;
+    //noinspection ResultOfMethodCallIgnored
+    file.setLastModified(System.currentTimeMillis());
+    return file;
+  }
+
+  synchronized void put(String key, Bitmap bitmap) {
+    if (!directory.isDirectory() && !directory.mkdirs()) return;
+    ensureSize();
+    File file = new File(directory, fileName(key));
+    File tmpFile = new File(directory, file.getName() + ".tmp");
+    OutputStream outputStream = null;
+    try {
+      outputStream = new FileOutputStream(tmpFile);
+      Bitmap.CompressFormat format =
+          bitmap.hasAlpha() ? Bitmap.CompressFormat.PNG : Bitmap.CompressFormat.JPEG;
+      if (!bitmap.compress(format, 90, outputStream)) return;
+      outputStream.close();
+      outputStream = null;
+      long oldLength = file.length();
+      if (!tmpFile.renameTo(file)) return;
+      size += file.length() - oldLength;
+      trim();
+    } catch (IOException e) {
+      //cache is best effort
+    } finally {
+      closeQuietly(outputStream);
+      //noinspection ResultOfMethodCallIgnored
+      tmpFile.delete();
+    }
+  }
+
+  private void ensureSize() {
+    if (size >= 0) return;
+    size = 0;
+    File[] files = directory.listFiles();
+    if (files == null) return;
+    for (File file : files) {
+      size += file.length();
+    }
+  }
+
+  private void trim() {
+    while (size > maxSize) {
+      File[] files = directory.listFiles();
+      if (files == null || files.length == 0) {
+        size = 0;
+        return;
+      }
+      File oldest = files[0];
+      for (File file : files) {
+        if (file.lastModified() < oldest.lastModified()) oldest = file;
+      }
+      long length = oldest.length();
+      if (!oldest.delete()) return;
+      size -= length;
+    }
+  }
+
+  private static String fileName(String key) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes("UTF-8"));
+      StringBuilder builder = new StringBuilder(digest.length * 2);
+      for (byte b : digest) {
+        builder.append(Character.forDigit((b >> 4) & 0xf, 16))
+            .append(Character.forDigit(b & 0xf, 16));
+      }
+      return builder.toString();
+    } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+      return Integer.toHexString(key.hashCode());
+    }
+  }
+
+  static void closeQuietly(@Nullable Closeable closeable) {
+    if (closeable == null) return;
+    try {
+      closeable.close();
+    } catch (IOException ignored) {
+      //no-op
+    }
+  }
+}
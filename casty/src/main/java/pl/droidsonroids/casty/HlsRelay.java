@@ -0,0 +1,326 @@
+package pl.droidsonroids.casty;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Relay of a single HLS stream through {@link CastyMediaServer}. Playlists are rewritten line by
+ * line while they are downloaded, so that variant playlists and segments are requested from the
+ * relay too. Every segment request prefetches the following segments of the same playlist in
+ * parallel into the shared {@link SegmentCache}, so a slow segment of the origin is downloaded
+ * while the receiver still plays the previous ones. Byte range requests, e.g. of the
+ * {@code EXT-X-BYTERANGE} segments, are forwarded to the origin, so that only the range is
+ * downloaded. Only the urls found in the relayed playlists are served, so the relay cannot be used
+ * to reach other hosts.
+ */
+@WorkerThread
+class HlsRelay {
+  static final String PLAYLIST_MIME_TYPE = "application/vnd.apple.mpegurl";
+  static final String PLAYLIST_PATH = "p";
+  static final String SEGMENT_PATH = "s";
+  private static final Pattern URI_ATTRIBUTE = Pattern.compile("URI=\"([^\"]*)\"");
+  private static final String BYTE_RANGE_TAG = "#EXT-X-BYTERANGE:";
+
+  private final String originUrl;
+  private final String pathPrefix;
+  private final SegmentCache cache;
+  private volatile int prefetchCount;
+  //by the cache keys of the segments
+  private final Map<String, SegmentPosition> positions = new HashMap<>();
+  private final Map<String, List<Segment>> segmentsByPlaylist = new HashMap<>();
+  //urls found while rewriting, the only ones which are relayed
+  private final Set<String> playlistUrls = new HashSet<>();
+  private final Map<String, Set<String>> segmentUrlsByPlaylist = new HashMap<>();
+
+  /**
+   * @param originUrl url of the relayed playlist
+   * @param pathPrefix server path of this relay, ending with a slash
+   */
+  HlsRelay(@NonNull String originUrl, @NonNull String pathPrefix, @NonNull SegmentCache cache,
+      int prefetchCount) {
+    this.originUrl = originUrl;
+    this.pathPrefix = pathPrefix;
+    this.cache = cache;
+    this.prefetchCount = prefetchCount;
+    playlistUrls.add(originUrl);
+  }
+
+  @NonNull String getOriginUrl() {
+    return originUrl;
+  }
+
+  void setPrefetchCount(int prefetchCount) {
+    this.prefetchCount = prefetchCount;
+  }
+
+  static boolean isHls(@NonNull String url, @Nullable String contentType) {
+    if (contentType != null) {
+      String type = contentType.toLowerCase(Locale.US);
+      return type.equals("application/x-mpegurl") || type.equals(PLAYLIST_MIME_TYPE)
+          || type.equals("audio/mpegurl") || type.equals("audio/x-mpegurl");
+    }
+    return getName(url).toLowerCase(Locale.US).endsWith(".m3u8");
+  }
+
+  @NonNull String getPlaylistPath(@NonNull String url) {
+    return getPath(PLAYLIST_PATH, url);
+  }
+
+  @NonNull String getSegmentPath(@NonNull String url) {
+    return getPath(SEGMENT_PATH, url);
+  }
+
+  private String getPath(String kind, String url) {
+    //the name only helps receivers which look at the extension
+    return pathPrefix + kind + '/' + encode(getName(url)) + "?u=" + encode(url);
+  }
+
+  private static String getName(String url) {
+    int queryStart = url.indexOf('?');
+    String path = queryStart < 0 ? url : url.substring(0, queryStart);
+    return path.substring(path.lastIndexOf('/') + 1);
+  }
+
+  /**
+   * @param kind {@link #PLAYLIST_PATH} or {@link #SEGMENT_PATH}
+   * @param url origin url
+   * @return resource relaying the url or null if the kind is unknown or the url was not found in
+   * the relayed playlists
+   */
+  @Nullable MediaServerConnection.Resource find(@NonNull String kind, @NonNull final String url) {
+    if (kind.equals(PLAYLIST_PATH) && isPlaylist(url)) {
+      return new MediaServerConnection.Resource() {
+        @Override public boolean respond(@NonNull MediaServerConnection connection, boolean head,
+            @Nullable String range, boolean keepAlive) throws IOException {
+          return respondWithPlaylist(connection, url, head, keepAlive);
+        }
+      };
+    } else if (kind.equals(SEGMENT_PATH) && isSegment(url)) {
+      return new MediaServerConnection.Resource() {
+        @Override public boolean respond(@NonNull MediaServerConnection connection, boolean head,
+            @Nullable String range, boolean keepAlive) throws IOException {
+          return respondWithSegment(connection, url, head, range, keepAlive);
+        }
+      };
+    }
+    return null;
+  }
+
+  private synchronized boolean isPlaylist(String url) {
+    return playlistUrls.contains(url);
+  }
+
+  private synchronized boolean isSegment(String url) {
+    for (Set<String> segmentUrls : segmentUrlsByPlaylist.values()) {
+      if (segmentUrls.contains(url)) return true;
+    }
+    return false;
+  }
+
+  private boolean respondWithPlaylist(MediaServerConnection connection, String url, boolean head,
+      boolean keepAlive) throws IOException {
+    HttpURLConnection origin = (HttpURLConnection) new URL(url).openConnection();
+    origin.setConnectTimeout(SegmentCache.TIMEOUT);
+    origin.setReadTimeout(SegmentCache.TIMEOUT);
+    try {
+      int responseCode = origin.getResponseCode();
+      if (responseCode / 100 != 2) {
+        return connection.respondWithStatus("502 Bad Gateway", keepAlive);
+      }
+      if (head) return connection.respondWithStatus("200 OK", keepAlive);
+      BufferedReader reader =
+          new BufferedReader(new InputStreamReader(origin.getInputStream(), "UTF-8"));
+      Writer writer = new OutputStreamWriter(
+          connection.startStreamingResponse(PLAYLIST_MIME_TYPE, keepAlive), "UTF-8");
+      //relative urls are relative to the playlist after redirects
+      rewrite(reader, origin.getURL(), url, writer);
+      writer.close();
+      return keepAlive;
+    } finally {
+      origin.disconnect();
+    }
+  }
+
+  private boolean respondWithSegment(MediaServerConnection connection, String url, boolean head,
+      @Nullable String range, boolean keepAlive) throws IOException {
+    String mimeType = CastyMediaServer.getMimeType(getName(url), null);
+    //a closed range is likely a byte range segment of a resource too large to download whole
+    long[] bounds = range == null ? null : MediaServerConnection.parseClosedRange(range);
+    long start = bounds == null ? -1 : bounds[0];
+    long end = bounds == null ? -1 : bounds[1];
+    prefetchAfter(SegmentCache.getKey(url, start, end));
+    byte[] data;
+    try {
+      data = cache.get(url, start, end);
+    } catch (IOException e) {
+      return connection.respondWithStatus("502 Bad Gateway", keepAlive);
+    }
+    if (bounds != null) return connection.respondWithRange(head, mimeType, data, start, keepAlive);
+    return connection.respondWithBytes(head, mimeType, data, range, keepAlive);
+  }
+
+  /**
+   * Rewrites the playlist, see RFC 8216. Lines following {@code EXT-X-STREAM-INF} and the
+   * renditions are playlists, other url lines and {@code EXT-X-MAP} are segments. Keys are left
+   * at the origin, only their urls are made absolute. {@code EXT-X-BYTERANGE} tags are kept, the
+   * receiver requests these segments with the Range header.
+   */
+  void rewrite(@NonNull BufferedReader reader, @NonNull URL base, @NonNull String playlistUrl,
+      @NonNull Writer writer) throws IOException {
+    List<Segment> segments = new ArrayList<>();
+    Set<String> segmentUrls = new HashSet<>();
+    List<String> variantUrls = new ArrayList<>();
+    boolean variantNext = false;
+    long rangeLength = -1;
+    long rangeOffset = -1;
+    Segment previousRange = null;
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (line.startsWith("#")) {
+        if (line.startsWith("#EXT-X-STREAM-INF")) variantNext = true;
+        if (line.startsWith(BYTE_RANGE_TAG)) {
+          //length[@offset]
+          String value = line.substring(BYTE_RANGE_TAG.length()).trim();
+          int at = value.indexOf('@');
+          try {
+            rangeLength = Long.parseLong(at < 0 ? value : value.substring(0, at));
+            rangeOffset = at < 0 ? -1 : Long.parseLong(value.substring(at + 1));
+          } catch (NumberFormatException e) {
+            rangeLength = -1;
+          }
+        }
+        if (line.indexOf("URI=\"") > 0) {
+          line = rewriteUriAttribute(line, base, segmentUrls, variantUrls);
+        }
+      } else if (!line.trim().isEmpty()) {
+        String url = new URL(base, line.trim()).toString();
+        if (variantNext) {
+          variantUrls.add(url);
+          line = getPlaylistPath(url);
+          variantNext = false;
+        } else if (rangeLength > 0) {
+          //without an offset the range follows the previous one of the same resource
+          long start = rangeOffset >= 0 ? rangeOffset
+              : previousRange != null && previousRange.url.equals(url) ? previousRange.end + 1 : 0;
+          previousRange = new Segment(url, start, start + rangeLength - 1);
+          segments.add(previousRange);
+          segmentUrls.add(url);
+          line = getSegmentPath(url);
+        } else {
+          segments.add(new Segment(url, -1, -1));
+          segmentUrls.add(url);
+          line = getSegmentPath(url);
+        }
+        rangeLength = -1;
+      }
+      writer.write(line);
+      writer.write('\n');
+    }
+    update(playlistUrl, segments, segmentUrls, variantUrls);
+  }
+
+  private String rewriteUriAttribute(String line, URL base, Set<String> segmentUrls,
+      List<String> variantUrls) throws IOException {
+    Matcher matcher = URI_ATTRIBUTE.matcher(line);
+    StringBuffer buffer = new StringBuffer(line.length() + 64);
+    while (matcher.find()) {
+      String url = new URL(base, matcher.group(1)).toString();
+      String rewritten;
+      if (line.startsWith("#EXT-X-MEDIA") || line.startsWith("#EXT-X-I-FRAME-STREAM-INF")) {
+        variantUrls.add(url);
+        rewritten = getPlaylistPath(url);
+      } else if (line.startsWith("#EXT-X-MAP")) {
+        segmentUrls.add(url);
+        rewritten = getSegmentPath(url);
+      } else {
+        rewritten = url;
+      }
+      matcher.appendReplacement(buffer, Matcher.quoteReplacement("URI=\"" + rewritten + '"'));
+    }
+    matcher.appendTail(buffer);
+    return buffer.toString();
+  }
+
+  private synchronized void update(String playlistUrl, List<Segment> segments,
+      Set<String> segmentUrls, List<String> variantUrls) {
+    playlistUrls.addAll(variantUrls);
+    //live playlists are reloaded, forget the segments which slid out of them
+    segmentUrlsByPlaylist.put(playlistUrl, segmentUrls);
+    List<Segment> previousSegments = segmentsByPlaylist.put(playlistUrl, segments);
+    if (previousSegments != null) {
+      for (Segment segment : previousSegments) {
+        SegmentPosition position = positions.get(segment.key);
+        if (position != null && position.segments == previousSegments) {
+          positions.remove(segment.key);
+        }
+      }
+    }
+    for (int i = 0; i < segments.size(); i++) {
+      positions.put(segments.get(i).key, new SegmentPosition(segments, i));
+    }
+  }
+
+  private synchronized void prefetchAfter(String key) {
+    SegmentPosition position = positions.get(key);
+    if (position == null) return;
+    int end = Math.min(position.segments.size(), position.index + 1 + prefetchCount);
+    for (int i = position.index + 1; i < end; i++) {
+      Segment segment = position.segments.get(i);
+      cache.prefetch(segment.url, segment.start, segment.end);
+    }
+  }
+
+  private static String encode(String text) {
+    try {
+      return URLEncoder.encode(text, "UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Media segment, a byte range of the resource if the start is not negative
+   */
+  private static final class Segment {
+    final String url;
+    final long start;
+    final long end;
+    final String key;
+
+    Segment(String url, long start, long end) {
+      this.url = url;
+      this.start = start;
+      this.end = end;
+      key = SegmentCache.getKey(url, start, end);
+    }
+  }
+
+  private static final class SegmentPosition {
+    final List<Segment> segments;
+    final int index;
+
+    SegmentPosition(List<Segment> segments, int index) {
+      this.segments = segments;
+      this.index = index;
+    }
+  }
+}
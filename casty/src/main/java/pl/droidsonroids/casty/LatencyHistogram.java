@@ -0,0 +1,153 @@
+package pl.droidsonroids.casty;
+
+import androidx.annotation.NonNull;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Fixed-size histogram of durations in milliseconds. Values below 16 ms are counted exactly,
+ * larger ones in 8 buckets per power of two, so percentiles are accurate to 12.5%. Recording is
+ * lock-free and does not allocate.
+ */
+public final class LatencyHistogram {
+  private static final int EXACT_BUCKETS = 16;
+  private static final int EXACT_BITS = 4;
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int MAX_EXPONENT = 31;
+  static final int BUCKET_COUNT = EXACT_BUCKETS + (MAX_EXPONENT - EXACT_BITS + 1) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong sum = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  LatencyHistogram() {
+  }
+
+  void record(long value) {
+    if (value < 0) value = 0;
+    counts.incrementAndGet(bucketOf(value));
+    count.incrementAndGet();
+    sum.addAndGet(value);
+    long currentMax;
+    do {
+      currentMax = max.get();
+    } while (value > currentMax && !max.compareAndSet(currentMax, value));
+  }
+
+  void reset() {
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      counts.set(i, 0L);
+    }
+    count.set(0L);
+    sum.set(0L);
+    max.set(0L);
+  }
+
+  @NonNull Snapshot snapshot() {
+    long[] bucketCounts = new long[BUCKET_COUNT];
+    long total = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      bucketCounts[i] = counts.get(i);
+      total += bucketCounts[i];
+    }
+    return new Snapshot(bucketCounts, total, sum.get(), max.get());
+  }
+
+  static int bucketOf(long value) {
+    if (value < EXACT_BUCKETS) return (int) value;
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    if (exponent > MAX_EXPONENT) return BUCKET_COUNT - 1;
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return EXACT_BUCKETS + (exponent - EXACT_BITS) * SUB_BUCKETS + subBucket;
+  }
+
+  static long upperBoundOf(int bucket) {
+    if (bucket < EXACT_BUCKETS) return bucket;
+    int exponent = (bucket - EXACT_BUCKETS) / SUB_BUCKETS + EXACT_BITS;
+    int subBucket = (bucket - EXACT_BUCKETS) % SUB_BUCKETS;
+    long width = 1L << (exponent - SUB_BUCKET_BITS);
+    return (1L << exponent) + (subBucket + 1) * width - 1;
+  }
+
+  /**
+   * Immutable copy of the histogram
+   */
+  public static final class Snapshot {
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+    private final long max;
+
+    Snapshot(long[] counts, long count, long sum, long max) {
+      this.counts = counts;
+      this.count = count;
+      this.sum = sum;
+      this.max = max;
+    }
+
+    /**
+     * @return number of recorded values
+     */
+    public long getCount() {
+      return count;
+    }
+
+    /**
+     * @return mean of the recorded values in milliseconds, 0 if there are none
+     */
+    public double getMean() {
+      return count == 0 ? 0d : (double) sum / count;
+    }
+
+    /**
+     * @return the largest recorded value in milliseconds
+     */
+    public long getMax() {
+      return max;
+    }
+
+    /**
+     * Gives the value below which the given fraction of the recorded values falls
+     *
+     * @param percentile fraction between 0 and 1, e.g. 0.95
+     * @return the upper bound of the bucket containing the percentile in milliseconds, 0 if
+     * there are no values
+     */
+    public long getPercentile(double percentile) {
+      if (count == 0) return 0L;
+      long rank = Math.max(1L, (long) Math.ceil(percentile * count));
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= rank) return Math.min(upperBoundOf(i), max);
+      }
+      return max;
+    }
+
+    /**
+     * @return the count, mean, maximum and common percentiles as JSON
+     */
+    @NonNull public JSONObject toJson() {
+      JSONObject json = new JSONObject();
+      try {
+        json.put("count", count)
+            .put("mean", getMean())
+            .put("max", max)
+            .put("p50", getPercentile(0.5d))
+            .put("p90", getPercentile(0.9d))
+            .put("p99", getPercentile(0.99d));
+      } catch (JSONException e) {
+        throw new IllegalStateException(e);
+      }
+      return json;
+    }
+
+    @Override public String toString() {
+      return toJson().toString();
+    }
+  }
+}
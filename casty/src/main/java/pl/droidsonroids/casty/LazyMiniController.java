@@ -0,0 +1,149 @@
+package pl.droidsonroids.casty;
+
+import android.app.Activity;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.LinearLayout;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.fragment.app.Fragment;
+import androidx.fragment.app.FragmentActivity;
+import androidx.fragment.app.FragmentManager;
+import androidx.fragment.app.FragmentTransaction;
+import com.google.android.gms.cast.framework.CastContext;
+import com.google.android.gms.cast.framework.CastState;
+import com.google.android.gms.cast.framework.CastStateListener;
+import com.google.android.gms.cast.framework.media.widget.MiniControllerFragment;
+import java.lang.ref.WeakReference;
+
+/**
+ * Mini Controller which costs nothing until a device is connected. The activity layout is left
+ * untouched until the cast state becomes {@link CastState#CONNECTED}, then the root view is moved
+ * above a container and {@link MiniControllerFragment} is added to it. The fragment and its views
+ * are released when the device disconnects. A fragment already added to the container is reused
+ * instead of adding another one. A fragment restored by the {@link FragmentManager} after a
+ * configuration change, before the container was created again, has no view and is replaced.
+ */
+@MainThread
+class LazyMiniController implements CastStateListener, Runnable {
+  private static final String TAG = "Casty";
+  private static final String FRAGMENT_TAG = "casty_mini_controller";
+
+  private final WeakReference<FragmentActivity> activity;
+  private final CastContext castContext;
+  private ViewGroup container;
+  private MiniControllerFragment fragment;
+
+  private LazyMiniController(FragmentActivity activity, CastContext castContext) {
+    this.activity = new WeakReference<>(activity);
+    this.castContext = castContext;
+  }
+
+  static void install(@NonNull Activity activity) {
+    if (!(activity instanceof FragmentActivity)) {
+      Log.w(TAG, "Mini Controller requires a FragmentActivity, it won't be added.");
+      return;
+    }
+    View contentView = activity.findViewById(android.R.id.content);
+    if (contentView.getTag(R.id.casty_mini_controller_container) != null) return;
+    CastContext castContext = CastyInitializer.getCastContext(activity);
+    LazyMiniController miniController =
+        new LazyMiniController((FragmentActivity) activity, castContext);
+    contentView.setTag(R.id.casty_mini_controller_container, miniController);
+    CastySessionCore.getInstance(activity)
+        .attach(activity, null, miniController, miniController, null);
+    miniController.onCastStateChanged(castContext.getCastState());
+  }
+
+  /**
+   * Synchronizes with the cast state changes missed while the activity was paused
+   */
+  @Override public void run() {
+    onCastStateChanged(castContext.getCastState());
+  }
+
+  @Override public void onCastStateChanged(int state) {
+    if (state == CastState.CONNECTED) {
+      show();
+    } else if (state != CastState.CONNECTING) {
+      hide();
+    }
+  }
+
+  private void show() {
+    FragmentActivity activity = this.activity.get();
+    if (fragment != null || activity == null) return;
+    FragmentManager fragmentManager = activity.getSupportFragmentManager();
+    if (fragmentManager.isStateSaved()) return;
+    if (container == null) container = createContainer(activity);
+    if (container == null) return;
+    boolean traced = CastyTrace.begin("Casty.showMiniController");
+    container.setVisibility(View.VISIBLE);
+    fragment = findFragment(fragmentManager);
+    if (fragment == null || !isInContainer(fragment)) {
+      FragmentTransaction transaction = fragmentManager.beginTransaction();
+      //restored before the container existed, so it has no view to show
+      if (fragment != null) transaction.remove(fragment);
+      fragment = new MiniControllerFragment();
+      transaction.add(R.id.casty_mini_controller_container, fragment, FRAGMENT_TAG)
+          .commitNowAllowingStateLoss();
+    }
+    CastyTrace.end(traced);
+  }
+
+  private void hide() {
+    FragmentActivity activity = this.activity.get();
+    if (activity == null) return;
+    FragmentManager fragmentManager = activity.getSupportFragmentManager();
+    if (fragment == null) fragment = findFragment(fragmentManager);
+    if (fragment == null) return;
+    fragmentManager.beginTransaction().remove(fragment).commitAllowingStateLoss();
+    fragment = null;
+    if (container != null) container.setVisibility(View.GONE);
+  }
+
+  private boolean isInContainer(Fragment fragment) {
+    View view = fragment.getView();
+    return view != null && view.getParent() == container;
+  }
+
+  @Nullable private static MiniControllerFragment findFragment(FragmentManager fragmentManager) {
+    Fragment fragment = fragmentManager.findFragmentByTag(FRAGMENT_TAG);
+    if (fragment == null) {
+      fragment = fragmentManager.findFragmentById(R.id.casty_mini_controller_container);
+    }
+    return fragment instanceof MiniControllerFragment ? (MiniControllerFragment) fragment : null;
+  }
+
+  private static ViewGroup createContainer(Activity activity) {
+    ViewGroup contentView = (ViewGroup) activity.findViewById(android.R.id.content);
+    View rootView = contentView.getChildAt(0);
+    if (rootView == null) return null;
+    LinearLayout linearLayout = new LinearLayout(activity);
+    LinearLayout.LayoutParams linearLayoutParams =
+        new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+            ViewGroup.LayoutParams.MATCH_PARENT);
+    linearLayout.setOrientation(LinearLayout.VERTICAL);
+    linearLayout.setLayoutParams(linearLayoutParams);
+
+    contentView.removeView(rootView);
+
+    ViewGroup.LayoutParams oldRootParams = rootView.getLayoutParams();
+    LinearLayout.LayoutParams rootParams =
+        new LinearLayout.LayoutParams(oldRootParams.width, 0, 1f);
+    rootView.setLayoutParams(rootParams);
+
+    FrameLayout container = new FrameLayout(activity);
+    container.setId(R.id.casty_mini_controller_container);
+    container.setLayoutParams(new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+        ViewGroup.LayoutParams.WRAP_CONTENT));
+
+    linearLayout.addView(rootView);
+    linearLayout.addView(container);
+    contentView.addView(linearLayout);
+    return container;
+  }
+}
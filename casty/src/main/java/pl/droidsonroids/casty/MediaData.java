@@ -7,17 +7,20 @@ import androidx.annotation.IntDef;
 
 import com.google.android.gms.cast.MediaInfo;
 import com.google.android.gms.cast.MediaMetadata;
+import com.google.android.gms.cast.MediaQueueItem;
 import com.google.android.gms.cast.MediaTrack;
 import com.google.android.gms.common.images.WebImage;
 
-import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Media information class
@@ -49,93 +52,138 @@ public class MediaData {
   public static final long UNKNOWN_DURATION = -1L;
 
   private final String url;
-  private int streamType = STREAM_TYPE_NONE;
-  private String contentType;
-  private long streamDuration = UNKNOWN_DURATION;
+  private final String resumeKey;
+  private final int streamType;
+  private final String contentType;
+  private final long streamDuration;
 
-  private int mediaType = MEDIA_TYPE_GENERIC;
-  private String title;
-  private String subtitle;
+  private final int mediaType;
+  private final String title;
+  private final String subtitle;
 
-  boolean autoPlay = true;
-  long position;
+  final boolean autoPlay;
+  final long position;
 
-  JSONObject customData;
+  private final JSONObject customData;
+  private final MediaMetadata mediaMetadata;
+  private final Map<String, Object> metadataValues;
 
   private final List<String> imageUrls;
   private final List<MediaTrack> mediaTracks;
-
-  private MediaData(String url) {
-    this.url = url;
-    imageUrls = new ArrayList<>();
-    mediaTracks = new ArrayList<>();
-  }
-
-  private void setStreamType(int streamType) {
-    this.streamType = streamType;
+  private volatile MediaInfo mediaInfo;
+
+  private MediaData(Builder builder) {
+    url = builder.url;
+    resumeKey = builder.resumeKey != null ? builder.resumeKey : builder.url;
+    streamType = builder.streamType;
+    contentType = builder.contentType;
+    streamDuration = builder.streamDuration;
+    mediaType = builder.mediaType;
+    title = builder.title;
+    subtitle = builder.subtitle;
+    autoPlay = builder.autoPlay;
+    position = builder.position;
+    customData = builder.customData;
+    mediaMetadata = builder.mediaMetadata;
+    metadataValues = builder.metadataValues;
+    imageUrls = builder.imageUrls;
+    mediaTracks = builder.mediaTracks;
   }
 
-  private void setContentType(String contentType) {
-    this.contentType = contentType;
+  String getUrl() {
+    return url;
   }
 
-  private void setStreamDuration(long streamDuration) {
-    this.streamDuration = streamDuration;
+  /**
+   * @return stable id of the media source, which the resume position is recorded under
+   */
+  String getResumeKey() {
+    return resumeKey;
   }
 
-  private void setTitle(String title) {
-    this.title = title;
+  String getContentType() {
+    return contentType;
   }
 
-  private void setSubtitle(String subtitle) {
-    this.subtitle = subtitle;
+  int getStreamType() {
+    return streamType;
   }
 
-  private void setMediaType(int mediaType) {
-    this.mediaType = mediaType;
+  /**
+   * @return copy of this media played from another url, e.g. through a relay, which keeps the
+   * resume key of this media
+   */
+  MediaData copyWithUrl(String url) {
+    return new Builder(url, this).setResumeKey(resumeKey).build();
   }
 
-  private void setAutoPlay(boolean autoPlay) {
-    this.autoPlay = autoPlay;
-  }
-
-  private void setPosition(long position) {
-    this.position = position;
+  List<String> getImageUrls() {
+    return imageUrls;
   }
 
+  /**
+   * Gives the {@link MediaInfo} of this media, built on the first call. It is reused by all the
+   * loads and queue items of this media.
+   */
   MediaInfo createMediaInfo() {
-    MediaMetadata mediaMetadata = new MediaMetadata(mediaType);
-
-    if (!TextUtils.isEmpty(title)) mediaMetadata.putString(MediaMetadata.KEY_TITLE, title);
-    if (!TextUtils.isEmpty(subtitle)) mediaMetadata.putString(MediaMetadata.KEY_SUBTITLE, subtitle);
-
-    for (String imageUrl : imageUrls) {
-      mediaMetadata.addImage(new WebImage(Uri.parse(imageUrl)));
-    }
-
-    if (customData != null) {
-      Iterator<String> keysIterator = customData.keys();
-      while (keysIterator.hasNext()) {
-        String key = keysIterator.next();
-        try {
-          mediaMetadata.putString(key, customData.getString(key));
-        } catch (JSONException e) {
-          e.printStackTrace();
-        }
-      }
+    MediaInfo mediaInfo = this.mediaInfo;
+    if (mediaInfo != null) return mediaInfo;
+    boolean traced = CastyTrace.begin("Casty.createMediaInfo");
+    try {
+      //racing threads build equal instances, either of them can be kept
+      mediaInfo = buildMediaInfo();
+      this.mediaInfo = mediaInfo;
+      return mediaInfo;
+    } finally {
+      CastyTrace.end(traced);
     }
+  }
 
-
+  private MediaInfo buildMediaInfo() {
+    //custom data is passed to the receiver as it is, without copying its values
     return new MediaInfo.Builder(url).setStreamType(streamType)
         .setContentType(contentType)
         .setStreamDuration(streamDuration)
         .setMetadata(mediaMetadata)
         .setMediaTracks(mediaTracks)
+        .setCustomData(customData)
         .build();
   }
 
+  MediaQueueItem createMediaQueueItem(double preloadTime) {
+    MediaQueueItem.Builder builder =
+        new MediaQueueItem.Builder(createMediaInfo()).setAutoplay(autoPlay)
+            .setPreloadTime(preloadTime);
+    if (position > 0) builder.setStartTime(position / 1000d);
+    return builder.build();
+  }
+
+  /**
+   * Builder of immutable {@link MediaData}. Every {@link #build()} gives a new instance, so the
+   * builder can be reused as a template of many similar media. The image urls, subtitle tracks and
+   * metadata are shared by all the built instances until the builder changes them.
+   */
   public static class Builder {
-    private final MediaData mediaData;
+    private final String url;
+    private String resumeKey;
+    private int streamType = STREAM_TYPE_NONE;
+    private String contentType;
+    private long streamDuration = UNKNOWN_DURATION;
+    private int mediaType = MEDIA_TYPE_GENERIC;
+    private String title;
+    private String subtitle;
+    private boolean autoPlay = true;
+    private long position;
+    private JSONObject customData;
+    //collections handed to a built instance are copied before the next change
+    private List<String> imageUrls = new ArrayList<>();
+    private List<MediaTrack> mediaTracks = new ArrayList<>();
+    private Map<String, Object> metadataValues = Collections.emptyMap();
+    private boolean imageUrlsShared;
+    private boolean mediaTracksShared;
+    private boolean metadataValuesShared = true;
+    //null when the metadata changed since it was last built
+    private MediaMetadata mediaMetadata;
 
     /**
      * Create the MediaData builder
@@ -143,7 +191,34 @@ public class MediaData {
      * @param url String url of media data
      */
     public Builder(String url) {
-      mediaData = new MediaData(url);
+      this.url = url;
+    }
+
+    /**
+     * Create the MediaData builder of a media similar to the template, e.g. another episode of a
+     * series. All the properties but the resume key are copied from the template, whose image
+     * urls, subtitle tracks and metadata are shared until they are changed.
+     *
+     * @param url String url of media data
+     * @param template media to copy the properties from
+     */
+    public Builder(String url, MediaData template) {
+      this.url = url;
+      streamType = template.streamType;
+      contentType = template.contentType;
+      streamDuration = template.streamDuration;
+      autoPlay = template.autoPlay;
+      position = template.position;
+      customData = template.customData;
+      imageUrls = template.imageUrls;
+      imageUrlsShared = true;
+      mediaTracks = template.mediaTracks;
+      mediaTracksShared = true;
+      mediaType = template.mediaType;
+      title = template.title;
+      subtitle = template.subtitle;
+      metadataValues = template.metadataValues;
+      mediaMetadata = template.mediaMetadata;
     }
 
     /**
@@ -154,7 +229,7 @@ public class MediaData {
      * @return this instance for chain calls
      */
     public Builder setStreamType(@StreamType int streamType) {
-      mediaData.setStreamType(streamType);
+      this.streamType = streamType;
       return this;
     }
 
@@ -165,7 +240,7 @@ public class MediaData {
      * @return this instance for chain calls
      */
     public Builder setContentType(String contentType) {
-      mediaData.setContentType(contentType);
+      this.contentType = contentType;
       return this;
     }
 
@@ -176,7 +251,7 @@ public class MediaData {
      * @return this instance for chain calls
      */
     public Builder setStreamDuration(long streamDuration) {
-      mediaData.setStreamDuration(streamDuration);
+      this.streamDuration = streamDuration;
       return this;
     }
 
@@ -187,7 +262,8 @@ public class MediaData {
      * @return this instance for chain calls
      */
     public Builder setTitle(String title) {
-      mediaData.setTitle(title);
+      this.title = title;
+      mediaMetadata = null;
       return this;
     }
 
@@ -198,7 +274,8 @@ public class MediaData {
      * @return this instance for chain calls
      */
     public Builder setSubtitle(String subtitle) {
-      mediaData.setSubtitle(subtitle);
+      this.subtitle = subtitle;
+      mediaMetadata = null;
       return this;
     }
 
@@ -211,7 +288,8 @@ public class MediaData {
      * @return this instance for chain calls
      */
     public Builder setMediaType(@MediaType int mediaType) {
-      mediaData.setMediaType(mediaType);
+      this.mediaType = mediaType;
+      mediaMetadata = null;
       return this;
     }
 
@@ -222,19 +300,83 @@ public class MediaData {
      * @return this instance for chain calls
      */
     public Builder addPhotoUrl(String photoUrl) {
-      mediaData.imageUrls.add(photoUrl);
+      if (imageUrlsShared) {
+        imageUrls = new ArrayList<>(imageUrls);
+        imageUrlsShared = false;
+      }
+      imageUrls.add(photoUrl);
+      mediaMetadata = null;
       return this;
     }
 
-    public Builder addSubtitle(String url, String language) {
-      final MediaTrack subtitleTrack =
-          new MediaTrack.Builder(Math.abs(url.hashCode()), MediaTrack.TYPE_TEXT).setLanguage("en-US")
-              //new MediaTrack.Builder(Math.abs(url.hashCode()), MediaTrack.TYPE_TEXT).setLanguage(language)
-              .setName(language)
-              .setSubtype(MediaTrack.SUBTYPE_NONE)
-              .setContentId(url)
-              .build();
-      mediaData.mediaTracks.add(subtitleTrack);
+    /**
+     * Adds the subtitles with a name but no language, so they cannot be activated by language
+     *
+     * @param url url of the subtitles, e.g. WebVTT
+     * @param name name shown by the receiver, e.g. "English"
+     * @return this instance for chain calls
+     * @deprecated use {@link #addTextTrack}, which sets the BCP 47 language of the subtitles
+     */
+    @Deprecated public Builder addSubtitle(String url, String name) {
+      return addTextTrack(url, null, name, MediaTrack.SUBTYPE_SUBTITLES);
+    }
+
+    /**
+     * Adds the text track. Tracks are numbered from 1 in the order of adding, after the tracks of
+     * the template, so that the ids stay the same for each build. Adding a track with the same url
+     * again replaces it and keeps its id.
+     *
+     * @param url url of the text track, e.g. WebVTT
+     * @param language BCP 47 language tag, e.g. "en-US"
+     * @param name name shown by the receiver or null to derive it from the language
+     * @param subtype role of the track, e.g. {@link MediaTrack#SUBTYPE_SUBTITLES} or
+     * {@link MediaTrack#SUBTYPE_CAPTIONS}
+     * @return this instance for chain calls
+     */
+    public Builder addTextTrack(String url, String language, String name, int subtype) {
+      return addTrack(MediaTrack.TYPE_TEXT, url, language, name, subtype);
+    }
+
+    /**
+     * Describes the audio track of the stream, e.g. an alternative HLS audio rendition, so that
+     * it can be activated by language. Ids are assigned like to the text tracks.
+     *
+     * @param contentId id of the track in the stream, e.g. the rendition name
+     * @param language BCP 47 language tag, e.g. "en-US"
+     * @param name name shown by the receiver or null to derive it from the language
+     * @return this instance for chain calls
+     */
+    public Builder addAudioTrack(String contentId, String language, String name) {
+      return addTrack(MediaTrack.TYPE_AUDIO, contentId, language, name, MediaTrack.SUBTYPE_NONE);
+    }
+
+    private Builder addTrack(int type, String contentId, String language, String name,
+        int subtype) {
+      int index = 0;
+      long id = 1;
+      while (index < mediaTracks.size()) {
+        MediaTrack track = mediaTracks.get(index);
+        if (track.getType() == type && contentId.equals(track.getContentId())) {
+          id = track.getId();
+          break;
+        }
+        //after the largest id, so that it never collides
+        id = Math.max(id, track.getId() + 1);
+        index++;
+      }
+      MediaTrack.Builder trackBuilder = new MediaTrack.Builder(id, type).setLanguage(language)
+          .setSubtype(subtype)
+          .setContentId(contentId);
+      if (name != null) trackBuilder.setName(name);
+      if (mediaTracksShared) {
+        mediaTracks = new ArrayList<>(mediaTracks);
+        mediaTracksShared = false;
+      }
+      if (index < mediaTracks.size()) {
+        mediaTracks.set(index, trackBuilder.build());
+      } else {
+        mediaTracks.add(trackBuilder.build());
+      }
       return this;
     }
 
@@ -245,7 +387,7 @@ public class MediaData {
      * @return this instance for chain calls
      */
     public Builder setAutoPlay(boolean autoPlay) {
-      mediaData.autoPlay = autoPlay;
+      this.autoPlay = autoPlay;
       return this;
     }
 
@@ -256,23 +398,241 @@ public class MediaData {
      * @return this instance for chain calls
      */
     public Builder setPosition(long position) {
-      mediaData.position = position;
+      this.position = position;
       return this;
     }
 
     /**
-     * Sets the custom data
+     * Sets the key the resume position of this media is recorded under by
+     * {@link CastyResumeIndex}, the url by default. Set it when the url changes between plays of
+     * the same media, e.g. because it contains an expiring token.
      *
-     * @param position Start position of video in milliseconds
+     * @param resumeKey stable id of the media, e.g. its id in the app catalog
+     * @return this instance for chain calls
+     */
+    public Builder setResumeKey(String resumeKey) {
+      this.resumeKey = resumeKey;
+      return this;
+    }
+
+    /**
+     * Sets the custom data, passed to the receiver application as it is
+     *
+     * @param customData any JSON object, not modified afterwards
      * @return this instance for chain calls
      */
     public Builder setCustomData(JSONObject customData) {
-      mediaData.customData = customData;
+      this.customData = customData;
+      return this;
+    }
+
+    /**
+     * Puts a text metadata value
+     *
+     * @param key one of the {@code MediaMetadata.KEY_*} constants or a custom key
+     * @param value any String
+     * @return this instance for chain calls
+     */
+    public Builder putString(String key, String value) {
+      return putMetadataValue(key, value);
+    }
+
+    /**
+     * Puts an integer metadata value
+     *
+     * @param key one of the integer {@code MediaMetadata.KEY_*} constants or a custom key
+     * @param value any int
+     * @return this instance for chain calls
+     */
+    public Builder putInt(String key, int value) {
+      return putMetadataValue(key, value);
+    }
+
+    /**
+     * Puts a floating point metadata value
+     *
+     * @param key one of the double {@code MediaMetadata.KEY_*} constants or a custom key
+     * @param value any double
+     * @return this instance for chain calls
+     */
+    public Builder putDouble(String key, double value) {
+      return putMetadataValue(key, value);
+    }
+
+    /**
+     * Puts a date metadata value
+     *
+     * @param key one of the date {@code MediaMetadata.KEY_*} constants or a custom key
+     * @param value date, not modified afterwards
+     * @return this instance for chain calls
+     */
+    public Builder putDate(String key, Calendar value) {
+      return putMetadataValue(key, value);
+    }
+
+    /**
+     * Sets the studio of a movie
+     *
+     * @return this instance for chain calls
+     */
+    public Builder setStudio(String studio) {
+      return putString(MediaMetadata.KEY_STUDIO, studio);
+    }
+
+    /**
+     * Sets the release date of a movie or a music track
+     *
+     * @return this instance for chain calls
+     */
+    public Builder setReleaseDate(Calendar releaseDate) {
+      return putDate(MediaMetadata.KEY_RELEASE_DATE, releaseDate);
+    }
+
+    /**
+     * Sets the series title of a TV show episode
+     *
+     * @return this instance for chain calls
+     */
+    public Builder setSeriesTitle(String seriesTitle) {
+      return putString(MediaMetadata.KEY_SERIES_TITLE, seriesTitle);
+    }
+
+    /**
+     * Sets the season number of a TV show episode
+     *
+     * @return this instance for chain calls
+     */
+    public Builder setSeasonNumber(int seasonNumber) {
+      return putInt(MediaMetadata.KEY_SEASON_NUMBER, seasonNumber);
+    }
+
+    /**
+     * Sets the episode number of a TV show episode
+     *
+     * @return this instance for chain calls
+     */
+    public Builder setEpisodeNumber(int episodeNumber) {
+      return putInt(MediaMetadata.KEY_EPISODE_NUMBER, episodeNumber);
+    }
+
+    /**
+     * Sets the original broadcast date of a TV show episode
+     *
+     * @return this instance for chain calls
+     */
+    public Builder setBroadcastDate(Calendar broadcastDate) {
+      return putDate(MediaMetadata.KEY_BROADCAST_DATE, broadcastDate);
+    }
+
+    /**
+     * Sets the artist of a music track
+     *
+     * @return this instance for chain calls
+     */
+    public Builder setArtist(String artist) {
+      return putString(MediaMetadata.KEY_ARTIST, artist);
+    }
+
+    /**
+     * Sets the album title of a music track
+     *
+     * @return this instance for chain calls
+     */
+    public Builder setAlbumTitle(String albumTitle) {
+      return putString(MediaMetadata.KEY_ALBUM_TITLE, albumTitle);
+    }
+
+    /**
+     * Sets the album artist of a music track
+     *
+     * @return this instance for chain calls
+     */
+    public Builder setAlbumArtist(String albumArtist) {
+      return putString(MediaMetadata.KEY_ALBUM_ARTIST, albumArtist);
+    }
+
+    /**
+     * Sets the composer of a music track
+     *
+     * @return this instance for chain calls
+     */
+    public Builder setComposer(String composer) {
+      return putString(MediaMetadata.KEY_COMPOSER, composer);
+    }
+
+    /**
+     * Sets the track number of a music track within its album
+     *
+     * @return this instance for chain calls
+     */
+    public Builder setTrackNumber(int trackNumber) {
+      return putInt(MediaMetadata.KEY_TRACK_NUMBER, trackNumber);
+    }
+
+    /**
+     * Sets the disc number of a music track within its album
+     *
+     * @return this instance for chain calls
+     */
+    public Builder setDiscNumber(int discNumber) {
+      return putInt(MediaMetadata.KEY_DISC_NUMBER, discNumber);
+    }
+
+    private Builder putMetadataValue(String key, Object value) {
+      if (metadataValuesShared) {
+        metadataValues = new LinkedHashMap<>(metadataValues);
+        metadataValuesShared = false;
+      }
+      metadataValues.put(key, value);
+      mediaMetadata = null;
       return this;
     }
 
+    /**
+     * Builds the media, including its {@link MediaMetadata}, so that loading it does not build
+     * the metadata again. Further changes of this builder do not affect the built media.
+     *
+     * @return the media
+     */
     public MediaData build() {
-      return this.mediaData;
+      if (mediaMetadata == null) mediaMetadata = createMediaMetadata();
+      if (!imageUrlsShared) {
+        imageUrls = Collections.unmodifiableList(imageUrls);
+        imageUrlsShared = true;
+      }
+      if (!mediaTracksShared) {
+        mediaTracks = Collections.unmodifiableList(mediaTracks);
+        mediaTracksShared = true;
+      }
+      metadataValuesShared = true;
+      return new MediaData(this);
+    }
+
+    private MediaMetadata createMediaMetadata() {
+      MediaMetadata mediaMetadata = new MediaMetadata(mediaType);
+
+      if (!TextUtils.isEmpty(title)) mediaMetadata.putString(MediaMetadata.KEY_TITLE, title);
+      if (!TextUtils.isEmpty(subtitle)) {
+        mediaMetadata.putString(MediaMetadata.KEY_SUBTITLE, subtitle);
+      }
+
+      for (String imageUrl : imageUrls) {
+        mediaMetadata.addImage(new WebImage(Uri.parse(imageUrl)));
+      }
+
+      for (Map.Entry<String, Object> entry : metadataValues.entrySet()) {
+        Object value = entry.getValue();
+        if (value instanceof Integer) {
+          mediaMetadata.putInt(entry.getKey(), (Integer) value);
+        } else if (value instanceof Double) {
+          mediaMetadata.putDouble(entry.getKey(), (Double) value);
+        } else if (value instanceof Calendar) {
+          mediaMetadata.putDate(entry.getKey(), (Calendar) value);
+        } else {
+          mediaMetadata.putString(entry.getKey(), (String) value);
+        }
+      }
+      return mediaMetadata;
     }
   }
 }
@@ -0,0 +1,369 @@
+package pl.droidsonroids.casty;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * HTTP/1.1 exchange of {@link CastyMediaServer} with a single receiver connection. Requests are
+ * handled one after another until the receiver closes the connection or stays idle, each by the
+ * {@link Resource} it targets. Bodies of regular files are sent with
+ * {@link FileChannel#transferTo}, without copying them through the Java heap.
+ */
+@WorkerThread
+class MediaServerConnection {
+  private static final int IDLE_TIMEOUT = 30000;
+  private static final int MAX_LINE_LENGTH = 8192;
+  private static final int MAX_HEADER_COUNT = 100;
+  private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+  static final long[] UNSATISFIABLE = new long[0];
+
+  private final CastyMediaServer server;
+  private final SocketChannel channel;
+  private final StringBuilder lineBuilder = new StringBuilder();
+  private ByteBuffer streamBuffer;
+
+  MediaServerConnection(@NonNull CastyMediaServer server, @NonNull SocketChannel channel) {
+    this.server = server;
+    this.channel = channel;
+  }
+
+  void run() {
+    try {
+      Socket socket = channel.socket();
+      socket.setSoTimeout(IDLE_TIMEOUT);
+      socket.setTcpNoDelay(true);
+      //the stream of a blocking channel honors the timeout, reads of the channel itself do not
+      InputStream inputStream = new BufferedInputStream(socket.getInputStream());
+      //noinspection StatementWithEmptyBody
+      while (handleRequest(inputStream)) {
+      }
+    } catch (IOException ignored) {
+      //the receiver closed the connection or stayed idle
+    }
+  }
+
+  /**
+   * @return true if the connection stays open for the next request
+   */
+  private boolean handleRequest(InputStream inputStream) throws IOException {
+    String requestLine = readLine(inputStream);
+    if (requestLine == null) return false;
+    String[] parts = requestLine.split(" ");
+    if (parts.length != 3 || !parts[2].startsWith("HTTP/")) {
+      return respondWithStatus("400 Bad Request", false);
+    }
+    String method = parts[0];
+    String range = null;
+    String connection = null;
+    for (int i = 0; ; i++) {
+      String line = readLine(inputStream);
+      if (line == null) return false;
+      if (line.isEmpty()) break;
+      if (i == MAX_HEADER_COUNT) {
+        return respondWithStatus("431 Request Header Fields Too Large", false);
+      }
+      int colon = line.indexOf(':');
+      if (colon <= 0) continue;
+      String name = line.substring(0, colon).trim();
+      if (name.equalsIgnoreCase("Range")) {
+        range = line.substring(colon + 1).trim();
+      } else if (name.equalsIgnoreCase("Connection")) {
+        connection = line.substring(colon + 1).trim();
+      }
+    }
+    boolean keepAlive = parts[2].equals("HTTP/1.0") ? "keep-alive".equalsIgnoreCase(connection)
+        : !"close".equalsIgnoreCase(connection);
+
+    if (method.equals("OPTIONS")) {
+      return respondWithStatus("204 No Content", keepAlive);
+    }
+    if (!method.equals("GET") && !method.equals("HEAD")) {
+      return respondWithStatus("405 Method Not Allowed", keepAlive);
+    }
+    Resource resource = server.find(parts[1]);
+    if (resource == null) return respondWithStatus("404 Not Found", keepAlive);
+    return resource.respond(this, method.equals("HEAD"), range, keepAlive);
+  }
+
+  /**
+   * Responds without a body
+   *
+   * @return true if the connection stays open for the next request
+   */
+  boolean respondWithStatus(@NonNull String status, boolean keepAlive) throws IOException {
+    writeHeaders(status, 0, null, null, keepAlive);
+    return keepAlive;
+  }
+
+  /**
+   * Responds with the requested range of the content
+   *
+   * @return true if the connection stays open for the next request
+   */
+  boolean respondWithContent(boolean head, @NonNull String mimeType,
+      @NonNull CastyMediaServer.Content content, @Nullable String range, boolean keepAlive)
+      throws IOException {
+    if (content.length < 0) {
+      //length is unknown, so the end of the body is the end of the connection
+      writeHeaders("200 OK", -1, mimeType, null, false);
+      if (!head) stream(content.channel);
+      return false;
+    }
+    long[] bounds = range == null ? null : parseRange(range, content.length);
+    if (bounds == UNSATISFIABLE) {
+      writeHeaders("416 Range Not Satisfiable", 0, null, "bytes */" + content.length, keepAlive);
+      return keepAlive;
+    }
+    long start = bounds == null ? 0 : bounds[0];
+    long count = bounds == null ? content.length : bounds[1] - bounds[0] + 1;
+    if (bounds == null) {
+      writeHeaders("200 OK", count, mimeType, null, keepAlive);
+    } else {
+      writeHeaders("206 Partial Content", count, mimeType,
+          "bytes " + bounds[0] + '-' + bounds[1] + '/' + content.length, keepAlive);
+    }
+    if (!head) transfer(content.channel, start, count);
+    return keepAlive;
+  }
+
+  /**
+   * Responds with the requested range of the data
+   *
+   * @return true if the connection stays open for the next request
+   */
+  boolean respondWithBytes(boolean head, @NonNull String mimeType, @NonNull byte[] data,
+      @Nullable String range, boolean keepAlive) throws IOException {
+    long[] bounds = range == null ? null : parseRange(range, data.length);
+    if (bounds == UNSATISFIABLE) {
+      writeHeaders("416 Range Not Satisfiable", 0, null, "bytes */" + data.length, keepAlive);
+      return keepAlive;
+    }
+    int start = bounds == null ? 0 : (int) bounds[0];
+    int count = bounds == null ? data.length : (int) (bounds[1] - bounds[0] + 1);
+    if (bounds == null) {
+      writeHeaders("200 OK", count, mimeType, null, keepAlive);
+    } else {
+      writeHeaders("206 Partial Content", count, mimeType,
+          "bytes " + bounds[0] + '-' + bounds[1] + '/' + data.length, keepAlive);
+    }
+    if (!head) writeFully(ByteBuffer.wrap(data, start, count));
+    return keepAlive;
+  }
+
+  /**
+   * Responds with a range of a resource whose length is not known, e.g. downloaded from the origin
+   * of a relayed stream
+   *
+   * @param data the range
+   * @param start offset of the range in the resource
+   * @return true if the connection stays open for the next request
+   */
+  boolean respondWithRange(boolean head, @NonNull String mimeType, @NonNull byte[] data,
+      long start, boolean keepAlive) throws IOException {
+    if (data.length == 0) return respondWithStatus("416 Range Not Satisfiable", keepAlive);
+    writeHeaders("206 Partial Content", data.length, mimeType,
+        "bytes " + start + '-' + (start + data.length - 1) + "/*", keepAlive);
+    if (!head) writeFully(ByteBuffer.wrap(data));
+    return keepAlive;
+  }
+
+  /**
+   * Starts a response whose length is not known up front. With keep-alive the body is chunked,
+   * otherwise it ends with the connection.
+   *
+   * @return stream of the body, which must be closed to finish the response
+   */
+  OutputStream startStreamingResponse(@NonNull String mimeType, boolean keepAlive)
+      throws IOException {
+    writeHeaders("200 OK", -1, mimeType, null, keepAlive);
+    return new BodyOutputStream(keepAlive);
+  }
+
+  /**
+   * Parses a single byte range, see RFC 7233
+   *
+   * @return start and end inclusive, {@link #UNSATISFIABLE} or null if the whole content should
+   * be sent, e.g. when there are multiple ranges
+   */
+  @Nullable static long[] parseRange(@NonNull String range, long length) {
+    if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) return null;
+    int dash = range.indexOf('-');
+    if (dash < 0) return null;
+    String first = range.substring("bytes=".length(), dash).trim();
+    String last = range.substring(dash + 1).trim();
+    try {
+      if (first.isEmpty()) {
+        //suffix range, the last bytes
+        long suffix = Long.parseLong(last);
+        if (suffix <= 0 || length == 0) return UNSATISFIABLE;
+        return new long[] { Math.max(0, length - suffix), length - 1 };
+      }
+      long start = Long.parseLong(first);
+      long end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+      if (start < 0 || end < 0) return null;
+      if (start >= length) return UNSATISFIABLE;
+      if (end < start) return null;
+      return new long[] { start, end };
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Parses a single byte range with both the first and the last byte, see RFC 7233
+   *
+   * @return start and end inclusive or null if the range is not closed, e.g. a suffix range
+   */
+  @Nullable static long[] parseClosedRange(@NonNull String range) {
+    if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) return null;
+    int dash = range.indexOf('-');
+    if (dash < 0) return null;
+    try {
+      long start = Long.parseLong(range.substring("bytes=".length(), dash).trim());
+      long end = Long.parseLong(range.substring(dash + 1).trim());
+      return start < 0 || end < start ? null : new long[] { start, end };
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private void transfer(FileChannel fileChannel, long position, long count) throws IOException {
+    while (count > 0) {
+      long sent = fileChannel.transferTo(position, count, channel);
+      if (sent <= 0 && position >= fileChannel.size()) {
+        //truncated while being sent
+        throw new EOFException();
+      }
+      position += sent;
+      count -= sent;
+    }
+  }
+
+  private void stream(FileChannel fileChannel) throws IOException {
+    if (streamBuffer == null) streamBuffer = ByteBuffer.allocateDirect(STREAM_BUFFER_SIZE);
+    streamBuffer.clear();
+    while (fileChannel.read(streamBuffer) >= 0) {
+      streamBuffer.flip();
+      writeFully(streamBuffer);
+      streamBuffer.clear();
+    }
+  }
+
+  private void writeHeaders(String status, long contentLength, @Nullable String contentType,
+      @Nullable String contentRange, boolean keepAlive) throws IOException {
+    StringBuilder builder = new StringBuilder(256);
+    builder.append("HTTP/1.1 ").append(status).append("\r\n");
+    //the receiver is a web page from another origin
+    builder.append("Access-Control-Allow-Origin: *\r\n");
+    builder.append("Access-Control-Allow-Methods: GET, HEAD, OPTIONS\r\n");
+    builder.append("Access-Control-Allow-Headers: Range\r\n");
+    builder.append("Access-Control-Expose-Headers: Content-Length, Content-Range\r\n");
+    builder.append("Accept-Ranges: bytes\r\n");
+    if (contentType != null) builder.append("Content-Type: ").append(contentType).append("\r\n");
+    if (contentLength >= 0) {
+      builder.append("Content-Length: ").append(contentLength).append("\r\n");
+    } else if (keepAlive) {
+      builder.append("Transfer-Encoding: chunked\r\n");
+    }
+    if (contentRange != null) {
+      builder.append("Content-Range: ").append(contentRange).append("\r\n");
+    }
+    builder.append("Connection: ").append(keepAlive ? "keep-alive" : "close").append("\r\n\r\n");
+    writeAscii(builder);
+  }
+
+  private void writeAscii(CharSequence text) throws IOException {
+    byte[] bytes = new byte[text.length()];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) text.charAt(i);
+    }
+    writeFully(ByteBuffer.wrap(bytes));
+  }
+
+  private void writeFully(ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  /**
+   * Body of a streaming response, written in chunks of up to {@link #STREAM_BUFFER_SIZE} bytes
+   */
+  private final class BodyOutputStream extends OutputStream {
+    private final boolean chunked;
+    private final byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+    private int count;
+
+    BodyOutputStream(boolean chunked) {
+      this.chunked = chunked;
+    }
+
+    @Override public void write(int b) throws IOException {
+      if (count == buffer.length) flush();
+      buffer[count++] = (byte) b;
+    }
+
+    @Override public void write(@NonNull byte[] bytes, int offset, int length) throws IOException {
+      while (length > 0) {
+        if (count == buffer.length) flush();
+        int copied = Math.min(length, buffer.length - count);
+        System.arraycopy(bytes, offset, buffer, count, copied);
+        count += copied;
+        offset += copied;
+        length -= copied;
+      }
+    }
+
+    @Override public void flush() throws IOException {
+      if (count == 0) return;
+      if (chunked) writeAscii(Integer.toHexString(count) + "\r\n");
+      writeFully(ByteBuffer.wrap(buffer, 0, count));
+      if (chunked) writeAscii("\r\n");
+      count = 0;
+    }
+
+    @Override public void close() throws IOException {
+      flush();
+      if (chunked) writeAscii("0\r\n\r\n");
+    }
+  }
+
+  interface Resource {
+    /**
+     * Writes the whole response to the request
+     *
+     * @param head true if only the headers are requested
+     * @param range value of the Range header or null
+     * @param keepAlive true if the receiver wants to reuse the connection
+     * @return true if the connection stays open for the next request
+     */
+    boolean respond(@NonNull MediaServerConnection connection, boolean head,
+        @Nullable String range, boolean keepAlive) throws IOException;
+  }
+
+  /**
+   * @return the line without CRLF or null if the connection was closed before it
+   */
+  @Nullable private String readLine(InputStream inputStream) throws IOException {
+    lineBuilder.setLength(0);
+    int b;
+    while ((b = inputStream.read()) != '\n') {
+      if (b < 0) return lineBuilder.length() == 0 ? null : lineBuilder.toString();
+      if (b != '\r') lineBuilder.append((char) b);
+      if (lineBuilder.length() > MAX_LINE_LENGTH) {
+        throw new IOException("Line too long");
+      }
+    }
+    return lineBuilder.toString();
+  }
+}
@@ -0,0 +1,107 @@
+package pl.droidsonroids.casty;
+
+import android.os.SystemClock;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import com.google.android.gms.cast.CastStatusCodes;
+import com.google.android.gms.common.api.CommonStatusCodes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Commands issued while a session is starting, replayed in order once the
+ * {@link com.google.android.gms.cast.framework.media.RemoteMediaClient} is attached. A newer command
+ * of the same kind replaces the buffered one and a load replaces everything buffered before it,
+ * the replaced commands complete with {@link CastStatusCodes#REPLACED}. Commands older than
+ * {@link #MAX_AGE} complete with {@link CommonStatusCodes#TIMEOUT} instead of being replayed.
+ */
+@MainThread
+class PendingCommandBuffer {
+  static final int CAPACITY = 8;
+  static final long MAX_AGE = 15000L;
+
+  private final ArrayDeque<Entry> entries = new ArrayDeque<>(CAPACITY);
+
+  /**
+   * @param name command name, buffered commands with the same name are replaced
+   * @param replacesAll true if the command makes all the buffered ones obsolete, e.g. a load
+   * @param replayer sends the command once connected
+   * @return handle completed with the result of the replayed command
+   */
+  CastyCommand add(@NonNull String name, boolean replacesAll, @NonNull Replayer replayer) {
+    long now = SystemClock.elapsedRealtime();
+    Iterator<Entry> iterator = entries.iterator();
+    while (iterator.hasNext()) {
+      Entry entry = iterator.next();
+      if (now - entry.addTime > MAX_AGE) {
+        iterator.remove();
+        entry.command.complete(CommonStatusCodes.TIMEOUT);
+      } else if (replacesAll || entry.command.getName().equals(name)) {
+        iterator.remove();
+        entry.command.complete(CastStatusCodes.REPLACED);
+      }
+    }
+    if (entries.size() == CAPACITY) {
+      entries.removeFirst().command.complete(CastyCommand.STATUS_NOT_CONNECTED);
+    }
+    CastyCommand command = CastyCommand.pending(name);
+    entries.addLast(new Entry(command, replayer, now));
+    return command;
+  }
+
+  /**
+   * Replays the buffered commands in the order they were issued
+   */
+  void flush() {
+    if (entries.isEmpty()) return;
+    //a replayed command may be buffered again if the connection is lost meanwhile
+    List<Entry> flushed = new ArrayList<>(entries);
+    entries.clear();
+    long now = SystemClock.elapsedRealtime();
+    for (final Entry entry : flushed) {
+      if (now - entry.addTime > MAX_AGE) {
+        entry.command.complete(CommonStatusCodes.TIMEOUT);
+        continue;
+      }
+      CastyCommand replayed = entry.replayer.replay();
+      if (replayed.isSent()) entry.command.markSent();
+      replayed.setOnCompleteListener(new CastyCommand.OnCompleteListener() {
+        @Override public void onComplete(@NonNull CastyCommand command) {
+          entry.command.completeWith(command);
+        }
+      });
+    }
+  }
+
+  /**
+   * Drops the buffered commands, e.g. when the session fails to start
+   *
+   * @param statusCode status code the dropped commands complete with
+   */
+  void clear(int statusCode) {
+    while (!entries.isEmpty()) {
+      entries.removeFirst().command.complete(statusCode);
+    }
+  }
+
+  interface Replayer {
+    /**
+     * @return the command sent to the connected device
+     */
+    CastyCommand replay();
+  }
+
+  private static final class Entry {
+    final CastyCommand command;
+    final Replayer replayer;
+    final long addTime;
+
+    Entry(CastyCommand command, Replayer replayer, long addTime) {
+      this.command = command;
+      this.replayer = replayer;
+      this.addTime = addTime;
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package pl.droidsonroids.casty;
+
+import android.os.SystemClock;
+import androidx.annotation.NonNull;
+
+/**
+ * Local playback clock, which extrapolates the stream position from the latest status update, so
+ * the position can be read every frame without querying the receiver. Extrapolation stops while
+ * the media is paused or buffering. Small differences between the extrapolated and the reported
+ * position are corrected gradually instead of making the position jump.
+ */
+public final class PlaybackClock {
+  /**
+   * Differences above this threshold, e.g. after a seek, are applied immediately
+   */
+  private static final long MAX_CORRECTION = 1000L;
+  /**
+   * Twice the maximum correction, so the corrected position never goes backwards while playing
+   */
+  private static final long CORRECTION_TIME = 2 * MAX_CORRECTION;
+
+  private volatile Anchor anchor = Anchor.STOPPED;
+
+  PlaybackClock() {
+  }
+
+  void update(@NonNull PlayerState playerState) {
+    Anchor previous = anchor;
+    long time = playerState.getUpdateTime();
+    long position = playerState.getPosition();
+    double rate = playerState.getPlaybackRate() > 0 ? playerState.getPlaybackRate() : 1d;
+    long correction = 0;
+    if (previous.running && playerState.isPlaying()) {
+      long error = previous.positionAt(time) - position;
+      if (Math.abs(error) <= MAX_CORRECTION) correction = error;
+    }
+    anchor = new Anchor(position, time, rate, playerState.isPlaying(), playerState.getDuration(),
+        correction);
+  }
+
+  /**
+   * Gives the current stream position. Cheap enough to be called on every frame.
+   *
+   * @return the stream position in milliseconds
+   */
+  public long getPosition() {
+    return anchor.positionAt(SystemClock.elapsedRealtime());
+  }
+
+  /**
+   * @return true if the position is advancing
+   */
+  public boolean isRunning() {
+    return anchor.running;
+  }
+
+  private static final class Anchor {
+    static final Anchor STOPPED = new Anchor(0L, 0L, 1d, false, MediaData.UNKNOWN_DURATION, 0L);
+
+    final long position;
+    final long time;
+    final double rate;
+    final boolean running;
+    final long duration;
+    final long correction;
+
+    Anchor(long position, long time, double rate, boolean running, long duration,
+        long correction) {
+      this.position = position;
+      this.time = time;
+      this.rate = rate;
+      this.running = running;
+      this.duration = duration;
+      this.correction = correction;
+    }
+
+    long positionAt(long now) {
+      if (!running) return position;
+      long elapsed = Math.max(0L, now - time);
+      long result = position + (long) (elapsed * rate);
+      if (correction != 0 && elapsed < CORRECTION_TIME) {
+        result += correction * (CORRECTION_TIME - elapsed) / CORRECTION_TIME;
+      }
+      if (duration > 0 && result > duration) result = duration;
+      return Math.max(0L, result);
+    }
+  }
+}
@@ -0,0 +1,149 @@
+package pl.droidsonroids.casty;
+
+import android.os.SystemClock;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.google.android.gms.cast.MediaInfo;
+import com.google.android.gms.cast.MediaStatus;
+
+/**
+ * Immutable snapshot of the receiver media status, taken once per status update. Reading it does
+ * not query {@link com.google.android.gms.cast.framework.media.RemoteMediaClient} and is safe from
+ * any thread.
+ */
+public final class PlayerState {
+  private static final long[] NO_TRACKS = new long[0];
+
+  static final PlayerState EMPTY = new PlayerState(MediaStatus.PLAYER_STATE_UNKNOWN,
+      MediaStatus.IDLE_REASON_NONE, 0, MediaData.UNKNOWN_DURATION, 0d, NO_TRACKS, 0d, false, null, 0L);
+
+  private final int playerState;
+  private final int idleReason;
+  private final long position;
+  private final long duration;
+  private final double playbackRate;
+  private final long[] activeTrackIds;
+  private final double volume;
+  private final boolean muted;
+  private final String contentId;
+  private final long updateTime;
+
+  private PlayerState(int playerState, int idleReason, long position, long duration,
+      double playbackRate, long[] activeTrackIds, double volume, boolean muted, String contentId,
+      long updateTime) {
+    this.playerState = playerState;
+    this.idleReason = idleReason;
+    this.position = position;
+    this.duration = duration;
+    this.playbackRate = playbackRate;
+    this.activeTrackIds = activeTrackIds;
+    this.volume = volume;
+    this.muted = muted;
+    this.contentId = contentId;
+    this.updateTime = updateTime;
+  }
+
+  @NonNull static PlayerState from(@Nullable MediaStatus mediaStatus) {
+    if (mediaStatus == null) return EMPTY;
+    MediaInfo mediaInfo = mediaStatus.getMediaInfo();
+    long[] activeTrackIds = mediaStatus.getActiveTrackIds();
+    return new PlayerState(mediaStatus.getPlayerState(), mediaStatus.getIdleReason(),
+        mediaStatus.getStreamPosition(),
+        mediaInfo == null ? MediaData.UNKNOWN_DURATION : mediaInfo.getStreamDuration(),
+        mediaStatus.getPlaybackRate(),
+        activeTrackIds == null ? NO_TRACKS : activeTrackIds.clone(),
+        mediaStatus.getStreamVolume(), mediaStatus.isMute(),
+        mediaInfo == null ? null : mediaInfo.getContentId(), SystemClock.elapsedRealtime());
+  }
+
+  /**
+   * @return one of the {@code MediaStatus.PLAYER_STATE_*} constants
+   */
+  public int getPlayerState() {
+    return playerState;
+  }
+
+  /**
+   * @return one of the {@code MediaStatus.IDLE_REASON_*} constants, meaningful only when idle
+   */
+  public int getIdleReason() {
+    return idleReason;
+  }
+
+  public boolean isPlaying() {
+    return playerState == MediaStatus.PLAYER_STATE_PLAYING;
+  }
+
+  public boolean isPaused() {
+    return playerState == MediaStatus.PLAYER_STATE_PAUSED;
+  }
+
+  public boolean isBuffering() {
+    return playerState == MediaStatus.PLAYER_STATE_BUFFERING;
+  }
+
+  /**
+   * @return true if the receiver is playing, paused or buffering media
+   */
+  public boolean hasMedia() {
+    return isPlaying() || isPaused() || isBuffering();
+  }
+
+  /**
+   * @return stream position in milliseconds at the time of {@link #getUpdateTime()}
+   */
+  public long getPosition() {
+    return position;
+  }
+
+  /**
+   * @return stream duration in milliseconds or {@link MediaData#UNKNOWN_DURATION}
+   */
+  public long getDuration() {
+    return duration;
+  }
+
+  public double getPlaybackRate() {
+    return playbackRate;
+  }
+
+  public int getActiveTrackCount() {
+    return activeTrackIds.length;
+  }
+
+  public long getActiveTrackId(int index) {
+    return activeTrackIds[index];
+  }
+
+  public boolean isTrackActive(long trackId) {
+    for (long activeTrackId : activeTrackIds) {
+      if (activeTrackId == trackId) return true;
+    }
+    return false;
+  }
+
+  /**
+   * @return stream volume between 0 and 1
+   */
+  public double getVolume() {
+    return volume;
+  }
+
+  public boolean isMuted() {
+    return muted;
+  }
+
+  /**
+   * @return content url of the media or null if there is none
+   */
+  @Nullable public String getContentId() {
+    return contentId;
+  }
+
+  /**
+   * @return {@link SystemClock#elapsedRealtime()} of the status update this snapshot was taken at
+   */
+  public long getUpdateTime() {
+    return updateTime;
+  }
+}
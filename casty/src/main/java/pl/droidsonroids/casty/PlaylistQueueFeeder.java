@@ -0,0 +1,125 @@
+package pl.droidsonroids.casty;
+
+import android.os.Handler;
+import android.os.Looper;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Feeds a {@link CastyPlaylist} to the receiver queue in small batches read in background. At most
+ * {@link #WINDOW} media after the played one are materialized and queued, the next batch is read
+ * when fewer than half of them are left.
+ */
+@MainThread
+class PlaylistQueueFeeder {
+  static final int WINDOW = 10;
+
+  private final CastyPlaylist playlist;
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  //urls of the queued media which have not been played yet
+  private final ArrayDeque<String> queuedUrls = new ArrayDeque<>(WINDOW);
+  private boolean reading;
+  private boolean finished;
+  private boolean closed;
+
+  PlaylistQueueFeeder(@NonNull CastyPlaylist playlist) {
+    this.playlist = playlist;
+  }
+
+  /**
+   * Reads media up to the window size in background
+   *
+   * @param listener invoked on the main thread, unless the feeder is closed meanwhile
+   */
+  void read(@NonNull final OnItemsReadListener listener) {
+    if (reading || finished || closed) return;
+    reading = true;
+    final int count = WINDOW - queuedUrls.size();
+    executor.execute(new Runnable() {
+      @Override public void run() {
+        final List<MediaData> items = new ArrayList<>(count);
+        boolean end = false;
+        try {
+          while (items.size() < count && !end) {
+            MediaData mediaData = playlist.next();
+            if (mediaData == null) {
+              end = true;
+            } else {
+              items.add(mediaData);
+            }
+          }
+        } catch (IOException e) {
+          if (CastyLog.isLoggable()) CastyLog.d("Playlist read failed: %s", e);
+          end = true;
+        }
+        final boolean endReached = end;
+        mainHandler.post(new Runnable() {
+          @Override public void run() {
+            reading = false;
+            if (closed) return;
+            for (MediaData item : items) {
+              queuedUrls.addLast(item.getUrl());
+            }
+            if (endReached) finish();
+            listener.onItemsRead(items);
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * Forgets the queued media up to the played one
+   *
+   * @param contentId url of the played media
+   */
+  void onPlaying(@Nullable String contentId) {
+    if (contentId == null || !queuedUrls.contains(contentId)) return;
+    while (!queuedUrls.removeFirst().equals(contentId)) {
+      //skipped by the user
+    }
+  }
+
+  boolean needsMore() {
+    return !reading && !finished && !closed && queuedUrls.size() < WINDOW / 2;
+  }
+
+  /**
+   * Stops feeding and closes the playlist
+   */
+  void close() {
+    closed = true;
+    finish();
+  }
+
+  private void finish() {
+    if (finished) return;
+    finished = true;
+    //after the read in progress, if any
+    executor.execute(new Runnable() {
+      @Override public void run() {
+        try {
+          playlist.close();
+        } catch (IOException ignored) {
+          //no-op
+        }
+      }
+    });
+    executor.shutdown();
+  }
+
+  interface OnItemsReadListener {
+    /**
+     * @param items media read, empty at the end of the playlist
+     */
+    void onItemsRead(@NonNull List<MediaData> items);
+  }
+}
@@ -0,0 +1,110 @@
+package pl.droidsonroids.casty;
+
+import android.os.SystemClock;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import com.google.android.gms.cast.framework.media.RemoteMediaClient;
+import java.util.Arrays;
+
+/**
+ * Single progress source registered with {@link RemoteMediaClient}, which fans out progress
+ * updates to any number of subscribers, each with its own period. The hub itself is registered
+ * at the fastest period currently subscribed, so adding or removing subscribers does not touch
+ * the client registration unless that period changes.
+ */
+@MainThread
+class ProgressListenerHub implements RemoteMediaClient.ProgressListener {
+  private static final Subscription[] EMPTY = new Subscription[0];
+
+  private Subscription[] subscriptions = EMPTY;
+  private RemoteMediaClient remoteMediaClient;
+  private long registeredPeriod;
+
+  void attach(RemoteMediaClient remoteMediaClient) {
+    if (this.remoteMediaClient == remoteMediaClient) return;
+    unregister();
+    this.remoteMediaClient = remoteMediaClient;
+    updateRegistration();
+  }
+
+  void add(@NonNull RemoteMediaClient.ProgressListener listener, long period) {
+    if (period <= 0) throw new IllegalArgumentException("period must be positive: " + period);
+    int index = indexOf(listener);
+    if (index >= 0) {
+      subscriptions[index].period = period;
+    } else {
+      subscriptions = Arrays.copyOf(subscriptions, subscriptions.length + 1);
+      subscriptions[subscriptions.length - 1] = new Subscription(listener, period);
+    }
+    updateRegistration();
+  }
+
+  void remove(RemoteMediaClient.ProgressListener listener) {
+    int index = indexOf(listener);
+    if (index < 0) return;
+    Subscription[] newSubscriptions = new Subscription[subscriptions.length - 1];
+    System.arraycopy(subscriptions, 0, newSubscriptions, 0, index);
+    System.arraycopy(subscriptions, index + 1, newSubscriptions, index,
+        newSubscriptions.length - index);
+    subscriptions = newSubscriptions;
+    updateRegistration();
+  }
+
+  int size() {
+    return subscriptions.length;
+  }
+
+  @Override public void onProgressUpdated(long progressMs, long durationMs) {
+    long now = SystemClock.elapsedRealtime();
+    // Ticks arrive roughly every registeredPeriod, so allow half of it as slack, otherwise a
+    // subscriber whose period is a multiple of the tick would regularly miss a tick.
+    long slack = registeredPeriod / 2;
+    Subscription[] snapshot = subscriptions;
+    for (Subscription subscription : snapshot) {
+      if (now - subscription.lastDispatchTime + slack >= subscription.period) {
+        subscription.lastDispatchTime = now;
+        subscription.listener.onProgressUpdated(progressMs, durationMs);
+      }
+    }
+  }
+
+  private int indexOf(RemoteMediaClient.ProgressListener listener) {
+    for (int i = 0; i < subscriptions.length; i++) {
+      if (subscriptions[i].listener == listener) return i;
+    }
+    return -1;
+  }
+
+  private void updateRegistration() {
+    long fastestPeriod = 0;
+    for (Subscription subscription : subscriptions) {
+      if (fastestPeriod == 0 || subscription.period < fastestPeriod) {
+        fastestPeriod = subscription.period;
+      }
+    }
+    if (fastestPeriod == registeredPeriod) return;
+    unregister();
+    if (remoteMediaClient != null && fastestPeriod > 0) {
+      remoteMediaClient.addProgressListener(this, fastestPeriod);
+      registeredPeriod = fastestPeriod;
+    }
+  }
+
+  private void unregister() {
+    if (remoteMediaClient != null && registeredPeriod > 0) {
+      remoteMediaClient.removeProgressListener(this);
+    }
+    registeredPeriod = 0;
+  }
+
+  private static final class Subscription {
+    final RemoteMediaClient.ProgressListener listener;
+    long period;
+    long lastDispatchTime = Long.MIN_VALUE / 2;
+
+    Subscription(RemoteMediaClient.ProgressListener listener, long period) {
+      this.listener = listener;
+      this.period = period;
+    }
+  }
+}
@@ -0,0 +1,206 @@
+package pl.droidsonroids.casty;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Size bounded memory cache of media segments downloaded by {@link HlsRelay}, the least recently
+ * used segments are evicted first. A segment requested while it is being prefetched waits for
+ * that download instead of starting another one. Segments which are byte ranges of a larger
+ * resource, see {@code EXT-X-BYTERANGE}, are requested from the origin as ranges and cached
+ * separately.
+ */
+@WorkerThread
+class SegmentCache {
+  static final int TIMEOUT = 15000;
+
+  private final long maxSize;
+  private final ExecutorService prefetchExecutor;
+  private final LinkedHashMap<String, byte[]> segments = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<String, FutureTask<byte[]>> downloads = new HashMap<>();
+  private long size;
+  private long hitCount;
+  private long missCount;
+
+  SegmentCache(long maxSize, int prefetchThreads) {
+    this.maxSize = maxSize;
+    prefetchExecutor = Executors.newFixedThreadPool(prefetchThreads);
+  }
+
+  /**
+   * @param start first byte of the segment or -1 if it is the whole resource
+   * @param end last byte of the segment, inclusive
+   * @return key of the segment in the cache
+   */
+  static String getKey(@NonNull String url, long start, long end) {
+    return start < 0 ? url : url + "#bytes=" + start + '-' + end;
+  }
+
+  /**
+   * Gives the cached resource, waits for its download in progress or downloads it
+   */
+  @NonNull byte[] get(@NonNull String url) throws IOException {
+    return get(url, -1, -1);
+  }
+
+  /**
+   * Gives the cached segment, waits for its download in progress or downloads it
+   *
+   * @param start first byte of the segment or -1 for the whole resource
+   * @param end last byte of the segment, inclusive
+   */
+  @NonNull byte[] get(@NonNull String url, long start, long end) throws IOException {
+    String key = getKey(url, start, end);
+    FutureTask<byte[]> download;
+    boolean started = false;
+    synchronized (this) {
+      byte[] data = segments.get(key);
+      if (data != null) {
+        hitCount++;
+        return data;
+      }
+      missCount++;
+      download = downloads.get(key);
+      if (download == null) {
+        download = createDownload(key, url, start, end);
+        downloads.put(key, download);
+        started = true;
+      }
+    }
+    if (started) download.run();
+    try {
+      return download.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /**
+   * Downloads the segment in background unless it is cached or being downloaded
+   *
+   * @param start first byte of the segment or -1 for the whole resource
+   * @param end last byte of the segment, inclusive
+   */
+  synchronized void prefetch(@NonNull String url, long start, long end) {
+    String key = getKey(url, start, end);
+    if (segments.containsKey(key) || downloads.containsKey(key)) return;
+    FutureTask<byte[]> download = createDownload(key, url, start, end);
+    downloads.put(key, download);
+    prefetchExecutor.execute(download);
+  }
+
+  synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  synchronized long getMissCount() {
+    return missCount;
+  }
+
+  synchronized void clear() {
+    segments.clear();
+    size = 0;
+  }
+
+  private FutureTask<byte[]> createDownload(final String key, final String url, final long start,
+      final long end) {
+    return new FutureTask<>(new Callable<byte[]>() {
+      @Override public byte[] call() throws IOException {
+        byte[] data = null;
+        try {
+          data = download(url, start, end);
+          return data;
+        } finally {
+          synchronized (SegmentCache.this) {
+            downloads.remove(key);
+            if (data != null) put(key, data);
+          }
+        }
+      }
+    });
+  }
+
+  private void put(String key, byte[] data) {
+    //a segment larger than this would evict most of the prefetched ones
+    if (data.length > maxSize / 4) return;
+    byte[] previous = segments.put(key, data);
+    if (previous != null) size -= previous.length;
+    size += data.length;
+    Iterator<byte[]> iterator = segments.values().iterator();
+    while (size > maxSize && iterator.hasNext()) {
+      size -= iterator.next().length;
+      iterator.remove();
+    }
+  }
+
+  private static byte[] download(String url, long start, long end) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+    connection.setConnectTimeout(TIMEOUT);
+    connection.setReadTimeout(TIMEOUT);
+    if (start >= 0) connection.setRequestProperty("Range", "bytes=" + start + '-' + end);
+    InputStream inputStream = null;
+    try {
+      int responseCode = connection.getResponseCode();
+      if (responseCode / 100 != 2) throw new IOException("HTTP " + responseCode + " for " + url);
+      inputStream = connection.getInputStream();
+      int length = connection.getContentLength();
+      if (start >= 0 && responseCode != HttpURLConnection.HTTP_PARTIAL) {
+        //the origin ignored the range, read only up to its end
+        skipFully(inputStream, start, url);
+        length = (int) (end - start + 1);
+      }
+      if (length >= 0) {
+        byte[] data = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+          int read = inputStream.read(data, offset, length - offset);
+          if (read < 0) throw new EOFException(url);
+          offset += read;
+        }
+        return data;
+      }
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = inputStream.read(buffer)) != -1) {
+        outputStream.write(buffer, 0, read);
+      }
+      return outputStream.toByteArray();
+    } finally {
+      DiskImageCache.closeQuietly(inputStream);
+      connection.disconnect();
+    }
+  }
+
+  private static void skipFully(InputStream inputStream, long count, String url)
+      throws IOException {
+    while (count > 0) {
+      long skipped = inputStream.skip(count);
+      if (skipped <= 0) {
+        if (inputStream.read() < 0) throw new EOFException(url);
+        skipped = 1;
+      }
+      count -= skipped;
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package pl.droidsonroids.casty;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.google.android.gms.cast.MediaTrack;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Resolves languages to the ids of the media tracks, so that all the active tracks can be
+ * switched with a single request
+ */
+final class TrackSelection {
+  private static final int NO_MATCH = 0;
+  private static final int PRIMARY_LANGUAGE_MATCH = 1;
+  private static final int EXACT_MATCH = 2;
+
+  private TrackSelection() {
+  }
+
+  /**
+   * Gives the ids of the tracks to activate
+   *
+   * @param tracks tracks of the played media
+   * @param activeTrackIds ids of the currently active tracks, may be null
+   * @param textLanguage language of the text track to activate or null to disable text tracks
+   * @param audioLanguage language of the audio track to activate or null to keep the active one
+   * @return the ids or null if there is no track in one of the requested languages
+   */
+  @Nullable static long[] select(@NonNull List<MediaTrack> tracks, @Nullable long[] activeTrackIds,
+      @Nullable String textLanguage, @Nullable String audioLanguage) {
+    MediaTrack textTrack = null;
+    MediaTrack audioTrack = null;
+    if (textLanguage != null) {
+      textTrack = find(tracks, MediaTrack.TYPE_TEXT, textLanguage);
+      if (textTrack == null) return null;
+    }
+    if (audioLanguage != null) {
+      audioTrack = find(tracks, MediaTrack.TYPE_AUDIO, audioLanguage);
+      if (audioTrack == null) return null;
+    }
+    long[] trackIds = new long[(activeTrackIds == null ? 0 : activeTrackIds.length) + 2];
+    int count = 0;
+    if (activeTrackIds != null) {
+      for (long activeTrackId : activeTrackIds) {
+        //tracks of the other types, e.g. video, stay active
+        int type = getType(tracks, activeTrackId);
+        if (type == MediaTrack.TYPE_TEXT || type == MediaTrack.TYPE_AUDIO && audioTrack != null) {
+          continue;
+        }
+        trackIds[count++] = activeTrackId;
+      }
+    }
+    if (textTrack != null) trackIds[count++] = textTrack.getId();
+    if (audioTrack != null) trackIds[count++] = audioTrack.getId();
+    return Arrays.copyOf(trackIds, count);
+  }
+
+  /**
+   * @return the first track of the type in the language, preferably with the same region
+   */
+  @Nullable private static MediaTrack find(List<MediaTrack> tracks, int type, String language) {
+    MediaTrack found = null;
+    int foundMatch = NO_MATCH;
+    for (MediaTrack track : tracks) {
+      if (track.getType() != type) continue;
+      int match = match(track.getLanguage(), language);
+      if (match > foundMatch) {
+        found = track;
+        foundMatch = match;
+      }
+    }
+    return found;
+  }
+
+  private static int getType(List<MediaTrack> tracks, long trackId) {
+    for (MediaTrack track : tracks) {
+      if (track.getId() == trackId) return track.getType();
+    }
+    return MediaTrack.TYPE_UNKNOWN;
+  }
+
+  /**
+   * Compares BCP 47 language tags, e.g. "en" matches "en-US" only by the primary language
+   */
+  private static int match(@Nullable String trackLanguage, String language) {
+    if (trackLanguage == null) return NO_MATCH;
+    String normalizedTrackLanguage = trackLanguage.replace('_', '-');
+    String normalizedLanguage = language.replace('_', '-');
+    if (normalizedTrackLanguage.equalsIgnoreCase(normalizedLanguage)) return EXACT_MATCH;
+    return getPrimaryLanguage(normalizedTrackLanguage)
+        .equalsIgnoreCase(getPrimaryLanguage(normalizedLanguage)) ? PRIMARY_LANGUAGE_MATCH
+        : NO_MATCH;
+  }
+
+  private static String getPrimaryLanguage(String language) {
+    int separatorIndex = language.indexOf('-');
+    return separatorIndex < 0 ? language : language.substring(0, separatorIndex);
+  }
+}